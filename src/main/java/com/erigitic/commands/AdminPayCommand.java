@@ -85,16 +85,16 @@ public class AdminPayCommand implements CommandExecutor {
                 messageValues.put("amount", amountText.toPlain());
 
                 if (!amountStr.contains("-")) {
-                    src.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.adminpay.send.sender", messageValues));
+                    src.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(src, "command.adminpay.send.sender", messageValues));
 
                     if (recipient.isOnline()) {
-                        recipient.getPlayer().get().sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.adminpay.send.recipient", messageValues));
+                        recipient.getPlayer().get().sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(recipient.getPlayer().get(), "command.adminpay.send.recipient", messageValues));
                     }
                 } else {
-                    src.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.adminpay.remove.sender", messageValues));
+                    src.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(src, "command.adminpay.remove.sender", messageValues));
 
                     if (recipient.isOnline()) {
-                        recipient.getPlayer().get().sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.adminpay.remove.recipient", messageValues));
+                        recipient.getPlayer().get().sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(recipient.getPlayer().get(), "command.adminpay.remove.recipient", messageValues));
                     }
                 }
 
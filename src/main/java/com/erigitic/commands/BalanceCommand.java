@@ -72,14 +72,14 @@ public class BalanceCommand implements CommandExecutor {
                     messageValues.put("currency", currency.getName());
                     messageValues.put("amount", currency.format(playerAccount.getBalance(currency)).toPlain());
 
-                    sender.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.balance.other", messageValues));
+                    sender.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(sender, "command.balance.other", messageValues));
                 } else {
                     throw new CommandException(Text.of(TextColors.RED, "[TE] The specified currency does not exist!"));
                 }
             } else {
                 messageValues.put("amount", TotalEconomy.getTotalEconomy().getDefaultCurrency().format(playerAccount.getBalance(TotalEconomy.getTotalEconomy().getDefaultCurrency())).toPlain());
 
-                sender.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.balance.default", messageValues));
+                sender.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(sender, "command.balance.default", messageValues));
             }
 
             return CommandResult.success();
@@ -25,13 +25,24 @@
 
 package com.erigitic.commands;
 
+import com.erigitic.config.AccountManager;
+import com.erigitic.config.UserOption;
+import com.erigitic.jobs.BoostManager;
 import com.erigitic.jobs.JobBasedRequirement;
+import com.erigitic.jobs.JobLeaderboard;
+import com.erigitic.jobs.JobManager;
+import com.erigitic.jobs.JobSignRegistry;
 import com.erigitic.jobs.TEAction;
 import com.erigitic.jobs.TEActionReward;
 import com.erigitic.jobs.TEJob;
 import com.erigitic.jobs.TEJobSet;
 import com.erigitic.main.TotalEconomy;
+import com.erigitic.util.MessageManager;
+import com.erigitic.util.PositionUtils;
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -53,6 +64,7 @@ import org.spongepowered.api.service.pagination.PaginationList;
 import org.spongepowered.api.service.pagination.PaginationService;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.world.World;
 
 public class JobCommand implements CommandExecutor {
 
@@ -61,12 +73,32 @@ public class JobCommand implements CommandExecutor {
         Info jobInfoCommand = new Info();
         Reload jobReloadCommand = new Reload();
         Toggle jobToggleCommand = new Toggle();
+        SignList jobSignListCommand = new SignList();
+        SignRepair jobSignRepairCommand = new SignRepair();
+        Top jobTopCommand = new Top();
+        BoostAdd jobBoostAddCommand = new BoostAdd();
+        BoostList jobBoostListCommand = new BoostList();
+        BoostRemove jobBoostRemoveCommand = new BoostRemove();
 
         return CommandSpec.builder()
                 .child(jobSetCommand.commandSpec(), "set", "s")
                 .child(jobInfoCommand.commandSpec(), "info", "i")
                 .child(jobReloadCommand.commandSpec(), "reload")
                 .child(jobToggleCommand.commandSpec(), "toggle", "t")
+                .child(jobTopCommand.commandSpec(), "top")
+                .child(CommandSpec.builder()
+                        .description(Text.of("List and repair job signs"))
+                        .permission("totaleconomy.command.job.signs")
+                        .child(jobSignListCommand.commandSpec(), "list", "l")
+                        .child(jobSignRepairCommand.commandSpec(), "repair")
+                        .build(), "signs")
+                .child(CommandSpec.builder()
+                        .description(Text.of("Manage job reward boosts"))
+                        .permission("totaleconomy.command.job.boost")
+                        .child(jobBoostAddCommand.commandSpec(), "add", "a")
+                        .child(jobBoostListCommand.commandSpec(), "list", "l")
+                        .child(jobBoostRemoveCommand.commandSpec(), "remove", "r")
+                        .build(), "boost")
                 .description(Text.of("Display job information"))
                 .permission("totaleconomy.command.job")
                 .arguments(GenericArguments.none())
@@ -86,9 +118,9 @@ public class JobCommand implements CommandExecutor {
             messageValues.put("curexp", String.valueOf(TotalEconomy.getTotalEconomy().getJobManager().getJobExp(jobName, player)));
             messageValues.put("exptolevel", String.valueOf(TotalEconomy.getTotalEconomy().getJobManager().getExpToLevel(player)));
 
-            player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.job.current", messageValues));
-            player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.job.level", messageValues));
-            player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.job.exp", messageValues));
+            player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.job.current", messageValues));
+            player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.job.level", messageValues));
+            player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.job.exp", messageValues));
             player.sendMessage(Text.of(TextColors.GRAY, "Available Jobs: ", TextColors.GOLD, TotalEconomy.getTotalEconomy().getJobManager().getJobList()));
 
             return CommandResult.success();
@@ -155,7 +187,7 @@ public class JobCommand implements CommandExecutor {
                 Map<String, String> messageValues = new HashMap<>();
                 messageValues.put("job", TotalEconomy.getTotalEconomy().getJobManager().titleize(jobName));
 
-                user.getPlayer().get().sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.job.set", messageValues));
+                user.getPlayer().get().sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(user.getPlayer().get(), "command.job.set", messageValues));
             }
 
             // Only send additional feedback if CommandSource isn't the target.
@@ -260,7 +292,12 @@ public class JobCommand implements CommandExecutor {
             rewardCurrencyOpt = TotalEconomy.getTotalEconomy().getTECurrencyRegistryModule().getById("totaleconomy:" + reward.getCurrencyId());
         }
 
-        return Text.of("(", reward.getExpReward(), " EXP) (", rewardCurrencyOpt.orElse(TotalEconomy.getTotalEconomy().getDefaultCurrency()).format(new BigDecimal(reward.getMoneyReward())), ")");
+        Text expText = Text.of(reward.getExpFormula().orElse(String.valueOf(reward.getExpReward())));
+        Text moneyText = reward.getMoneyFormula().isPresent()
+                ? Text.of(reward.getMoneyFormula().get())
+                : rewardCurrencyOpt.orElse(TotalEconomy.getTotalEconomy().getDefaultCurrency()).format(new BigDecimal(reward.getMoneyReward()));
+
+        return Text.of("(", expText, " EXP) (", moneyText, ")");
     }
 
     private class Reload implements CommandExecutor {
@@ -276,11 +313,17 @@ public class JobCommand implements CommandExecutor {
 
         @Override
         public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
-            if (TotalEconomy.getTotalEconomy().getJobManager().reloadJobsAndSets()) {
-                src.sendMessage(Text.of(TextColors.GRAY, "[TE] Sets and jobs reloaded."));
-            } else {
-                throw new CommandException(Text.of(TextColors.RED, "[TE] Failed to reload sets and/or jobs!"));
-            }
+            TotalEconomy.getTotalEconomy().getJobManager().reloadJobsAndSets().thenAccept(success ->
+                    Sponge.getScheduler().createTaskBuilder()
+                            .execute(() -> {
+                                if (success) {
+                                    src.sendMessage(Text.of(TextColors.GRAY, "[TE] Sets and jobs reloaded."));
+                                } else {
+                                    src.sendMessage(Text.of(TextColors.RED, "[TE] Failed to reload sets and/or jobs!"));
+                                }
+                            })
+                            .submit(TotalEconomy.getTotalEconomy())
+            );
 
             return CommandResult.success();
         }
@@ -288,9 +331,6 @@ public class JobCommand implements CommandExecutor {
 
     private class Toggle implements CommandExecutor {
 
-        private final String[] TOGGLE_PLAYER_OPTIONS = {"block-break-info", "block-place-info", "entity-kill-info", "entity-fish-info"};
-        private final List<String> TOGGLE_PLAYER_OPTIONS_LIST = Arrays.asList(TOGGLE_PLAYER_OPTIONS);
-
         public CommandSpec commandSpec() {
             return CommandSpec.builder()
                     .description(Text.of("Toggle job notifications on/off"))
@@ -318,18 +358,18 @@ public class JobCommand implements CommandExecutor {
                     return CommandResult.success();
                 } else {
                     String option = optionOpt.get();
-                    int i = TOGGLE_PLAYER_OPTIONS_LIST.indexOf(option);
+                    Optional<UserOption> userOptionOpt = UserOption.fromId("totaleconomy:" + option);
 
-                    if (i < 0) {
+                    if (!userOptionOpt.isPresent()) {
                         throw new CommandException(Text.of("[TE] Unknown option: ", option));
                     }
 
-                    String value = TotalEconomy.getTotalEconomy().getAccountManager().getUserOption("totaleconomy:" + option, sender).orElse("0");
-                    value = value.equals("0") ? "1" : "0";
+                    AccountManager accountManager = TotalEconomy.getTotalEconomy().getAccountManager();
+                    boolean enabled = accountManager.isUserOptionEnabled(sender, userOptionOpt.get());
 
-                    TotalEconomy.getTotalEconomy().getAccountManager().setUserOption("totaleconomy:" + option, sender, value);
+                    accountManager.setUserOption(sender, userOptionOpt.get(), !enabled);
 
-                    src.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("jobs.toggle"));
+                    src.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(src, "jobs.toggle"));
 
                     return CommandResult.success();
                 }
@@ -339,4 +379,252 @@ public class JobCommand implements CommandExecutor {
             }
         }
     }
-}
\ No newline at end of file
+
+    private class SignList implements CommandExecutor {
+
+        private PaginationService paginationService = Sponge.getServiceManager().provideUnchecked(PaginationService.class);
+
+        public CommandSpec commandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("List all job signs"))
+                    .permission("totaleconomy.command.job.signs")
+                    .executor(this)
+                    .arguments(GenericArguments.none())
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            JobManager jobManager = TotalEconomy.getTotalEconomy().getJobManager();
+            List<Text> lines = new ArrayList<>();
+
+            jobManager.getJobSignRegistry().getWorldSigns().forEach((worldUniqueId, signs) -> {
+                String worldName = Sponge.getServer().getWorld(worldUniqueId).map(World::getName).orElse(worldUniqueId.toString());
+
+                signs.forEach((position, jobName) -> lines.add(Text.of(
+                        TextColors.GRAY, "[", worldName, "] ",
+                        PositionUtils.unpackX(position), ", ", PositionUtils.unpackY(position), ", ", PositionUtils.unpackZ(position), " ",
+                        jobManager.jobExists(jobName) ? TextColors.GOLD : TextColors.RED, jobManager.titleize(jobName)
+                )));
+            });
+
+            paginationService.builder()
+                    .title(Text.of(TextColors.GOLD, "Job Signs"))
+                    .contents(lines)
+                    .sendTo(src);
+
+            return CommandResult.success();
+        }
+    }
+
+    private class SignRepair implements CommandExecutor {
+
+        public CommandSpec commandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Remove or correct stale job signs and register missing ones in loaded chunks"))
+                    .permission("totaleconomy.command.job.signs")
+                    .executor(this)
+                    .arguments(GenericArguments.none())
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            JobSignRegistry.RepairResult result = TotalEconomy.getTotalEconomy().getJobManager().getJobSignRegistry().repair();
+
+            src.sendMessage(Text.of(TextColors.GRAY, "[TE] Job signs repaired. Removed: ", TextColors.GOLD, result.getRemoved(),
+                    TextColors.GRAY, " Updated: ", TextColors.GOLD, result.getUpdated(),
+                    TextColors.GRAY, " Added: ", TextColors.GOLD, result.getAdded(),
+                    TextColors.GRAY, " Skipped (chunk not loaded): ", TextColors.GOLD, result.getSkipped()));
+
+            return CommandResult.success();
+        }
+    }
+
+    private class BoostAdd implements CommandExecutor {
+
+        public CommandSpec commandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Add a reward boost. Target: * | job | job:action | *:action. Start: now | 2h | 2018-06-01T18:00. End: 2d | 2018-06-03T23:59"))
+                    .permission("totaleconomy.command.job.boost")
+                    .executor(this)
+                    .arguments(
+                            GenericArguments.string(Text.of("id")),
+                            GenericArguments.doubleNum(Text.of("factor")),
+                            GenericArguments.string(Text.of("target")),
+                            GenericArguments.string(Text.of("start")),
+                            GenericArguments.string(Text.of("end"))
+                    )
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            String id = args.<String>getOne("id").get();
+            double factor = args.<Double>getOne("factor").get();
+            String[] target = args.<String>getOne("target").get().split(":", 2);
+            String job = target[0];
+            String action = target.length > 1 ? target[1] : BoostManager.ANY;
+            long start;
+            long end;
+
+            if (factor < 0) {
+                throw new CommandException(Text.of(TextColors.RED, "[TE] The factor can't be negative!"));
+            }
+
+            if (!job.equals(BoostManager.ANY) && !TotalEconomy.getTotalEconomy().getJobManager().jobExists(job)) {
+                throw new CommandException(Text.of(TextColors.RED, "[TE] Unknown job: ", job));
+            }
+
+            if (!Arrays.asList(BoostManager.ANY, "break", "place", "kill", "catch").contains(action.toLowerCase())) {
+                throw new CommandException(Text.of(TextColors.RED, "[TE] Unknown action: ", action));
+            }
+
+            try {
+                start = BoostManager.parseTime(args.<String>getOne("start").get(), System.currentTimeMillis());
+                end = BoostManager.parseTime(args.<String>getOne("end").get(), start);
+            } catch (IllegalArgumentException e) {
+                throw new CommandException(Text.of(TextColors.RED, "[TE] ", e.getMessage()));
+            }
+
+            if (end <= start) {
+                throw new CommandException(Text.of(TextColors.RED, "[TE] The boost has to end after it starts!"));
+            }
+
+            TotalEconomy.getTotalEconomy().getJobManager().getBoostManager().addBoost(new BoostManager.Boost(id, job, action, factor, start, end));
+
+            src.sendMessage(Text.of(TextColors.GRAY, "[TE] Boost ", TextColors.GOLD, id, TextColors.GRAY, " added."));
+
+            return CommandResult.success();
+        }
+    }
+
+    private class BoostList implements CommandExecutor {
+
+        private PaginationService paginationService = Sponge.getServiceManager().provideUnchecked(PaginationService.class);
+        private DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+        public CommandSpec commandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("List the active and upcoming reward boosts"))
+                    .permission("totaleconomy.command.job.boost")
+                    .executor(this)
+                    .arguments(GenericArguments.none())
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            List<Text> lines = new ArrayList<>();
+
+            for (BoostManager.Boost boost : TotalEconomy.getTotalEconomy().getJobManager().getBoostManager().getBoosts()) {
+                lines.add(Text.of(
+                        boost.isActive() ? TextColors.GREEN : TextColors.GRAY, boost.getId(), " ",
+                        TextColors.GOLD, "x", boost.getFactor(), " ",
+                        TextColors.GRAY, boost.getJob(), ":", boost.getAction(), " ",
+                        dateTimeFormatter.format(Instant.ofEpochMilli(boost.getStart())), " - ",
+                        dateTimeFormatter.format(Instant.ofEpochMilli(boost.getEnd()))
+                ));
+            }
+
+            paginationService.builder()
+                    .title(Text.of(TextColors.GOLD, "Job Boosts"))
+                    .contents(lines)
+                    .sendTo(src);
+
+            return CommandResult.success();
+        }
+    }
+
+    private class BoostRemove implements CommandExecutor {
+
+        public CommandSpec commandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Remove a reward boost"))
+                    .permission("totaleconomy.command.job.boost")
+                    .executor(this)
+                    .arguments(GenericArguments.string(Text.of("id")))
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            String id = args.<String>getOne("id").get();
+
+            if (!TotalEconomy.getTotalEconomy().getJobManager().getBoostManager().removeBoost(id)) {
+                throw new CommandException(Text.of(TextColors.RED, "[TE] Unknown boost: ", id));
+            }
+
+            src.sendMessage(Text.of(TextColors.GRAY, "[TE] Boost ", TextColors.GOLD, id, TextColors.GRAY, " removed."));
+
+            return CommandResult.success();
+        }
+    }
+
+    private class Top implements CommandExecutor {
+
+        private static final int PAGE_SIZE = 10;
+
+        public CommandSpec commandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Show the players with the highest level in a job"))
+                    .permission("totaleconomy.command.job.top")
+                    .executor(this)
+                    .arguments(
+                            GenericArguments.string(Text.of("jobName")),
+                            GenericArguments.optional(GenericArguments.integer(Text.of("page")))
+                    )
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            JobManager jobManager = TotalEconomy.getTotalEconomy().getJobManager();
+            MessageManager messageManager = TotalEconomy.getTotalEconomy().getMessageManager();
+            String jobName = args.<String>getOne("jobName").get().toLowerCase();
+            int page = Math.max(1, args.<Integer>getOne("page").orElse(1));
+
+            if (!jobManager.jobExists(jobName)) {
+                throw new CommandException(messageManager.getMessage(src, "jobs.notfound"));
+            }
+
+            JobLeaderboard leaderboard = jobManager.getLeaderboard();
+            int pages = Math.max(1, (leaderboard.getSize(jobName) + PAGE_SIZE - 1) / PAGE_SIZE);
+            List<JobLeaderboard.Entry> entries = leaderboard.getTop(jobName, (page - 1) * PAGE_SIZE, PAGE_SIZE);
+
+            Map<String, String> headerValues = new HashMap<>();
+            headerValues.put("job", jobManager.titleize(jobName));
+            headerValues.put("page", String.valueOf(page));
+            headerValues.put("pages", String.valueOf(pages));
+
+            src.sendMessage(messageManager.getMessage(src, "command.job.top.header", headerValues));
+
+            int rank = (page - 1) * PAGE_SIZE;
+
+            for (JobLeaderboard.Entry entry : entries) {
+                String name = TotalEconomy.getTotalEconomy().getUserStorageService().get(entry.getUniqueId())
+                        .map(User::getName)
+                        .orElse(entry.getUniqueId().toString());
+
+                Map<String, String> entryValues = new HashMap<>();
+                entryValues.put("rank", String.valueOf(++rank));
+                entryValues.put("player", name);
+                entryValues.put("level", String.valueOf(entry.getLevel()));
+                entryValues.put("exp", String.valueOf(entry.getExp()));
+
+                src.sendMessage(messageManager.getMessage(src, "command.job.top.entry", entryValues));
+            }
+
+            if (src instanceof Player) {
+                leaderboard.getRank(jobName, ((Player) src).getUniqueId()).ifPresent(ownRank -> {
+                    Map<String, String> rankValues = new HashMap<>();
+                    rankValues.put("rank", String.valueOf(ownRank));
+
+                    src.sendMessage(messageManager.getMessage(src, "command.job.top.rank", rankValues));
+                });
+            }
+
+            return CommandResult.success();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.commands;
+
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.market.MarketManager;
+import com.erigitic.market.MarketOrder;
+import com.erigitic.market.OrderBook;
+import com.erigitic.shops.ShopItem;
+import com.erigitic.util.MessageManager;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.args.GenericArguments;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.command.spec.CommandSpec;
+import org.spongepowered.api.data.type.HandTypes;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.event.cause.EventContext;
+import org.spongepowered.api.item.ItemType;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.text.Text;
+
+public class MarketCommand implements CommandExecutor {
+
+    public CommandSpec commandSpec() {
+        Bid marketBidCommand = new Bid();
+        Ask marketAskCommand = new Ask();
+        Cancel marketCancelCommand = new Cancel();
+        Orders marketOrdersCommand = new Orders();
+        Book marketBookCommand = new Book();
+        Claim marketClaimCommand = new Claim();
+
+        return CommandSpec.builder()
+                .child(marketBidCommand.getCommandSpec(), "buy", "bid")
+                .child(marketAskCommand.getCommandSpec(), "sell", "ask")
+                .child(marketCancelCommand.getCommandSpec(), "cancel")
+                .child(marketOrdersCommand.getCommandSpec(), "orders")
+                .child(marketBookCommand.getCommandSpec(), "book")
+                .child(marketClaimCommand.getCommandSpec(), "claim")
+                .permission("totaleconomy.command.market")
+                .executor(this)
+                .build();
+    }
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+        return CommandResult.success();
+    }
+
+    private Player getPlayer(CommandSource src) throws CommandException {
+        if (!(src instanceof Player)) {
+            throw new CommandException(Text.of("[TE] This command can only be run by a player!"));
+        }
+
+        return (Player) src;
+    }
+
+    /**
+     * Get the item a command is about. This is the held item unless another item is given, so items with variants can
+     * be chosen by holding one.
+     */
+    private ItemStack getItem(Player player, CommandContext args) throws CommandException {
+        Optional<ItemStack> itemInHandOpt = player.getItemInHand(HandTypes.MAIN_HAND);
+        Optional<ItemType> itemTypeOpt = args.getOne(Text.of("item"));
+
+        if (itemInHandOpt.isPresent() && (!itemTypeOpt.isPresent() || itemTypeOpt.get().equals(itemInHandOpt.get().getType()))) {
+            return itemInHandOpt.get();
+        } else if (itemTypeOpt.isPresent()) {
+            return ItemStack.of(itemTypeOpt.get(), 1);
+        }
+
+        throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.market.noitem"));
+    }
+
+    private CommandResult placeOrder(Player player, MarketOrder.Side side, ItemStack item, CommandContext args) {
+        MarketManager marketManager = TotalEconomy.getTotalEconomy().getMarketManager();
+        int quantity = args.<Integer>getOne(Text.of("quantity")).get();
+        long price = ShopItem.toMinorUnits(args.<BigDecimal>getOne(Text.of("price")).get(), TotalEconomy.getTotalEconomy().getDefaultCurrency());
+
+        Cause cause = Cause.builder()
+                .append(player)
+                .append(TotalEconomy.getTotalEconomy().getPluginContainer())
+                .build(EventContext.empty());
+
+        MarketManager.Status status = marketManager.placeOrder(player, side, item, quantity, price, cause);
+
+        if (status != MarketManager.Status.SUCCESS) {
+            marketManager.sendFailure(player, status);
+        }
+
+        return CommandResult.success();
+    }
+
+    private class Bid implements CommandExecutor {
+
+        public CommandSpec getCommandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Place an order to buy the held or given item"))
+                    .permission("totaleconomy.command.market.buy")
+                    .executor(this)
+                    .arguments(
+                            GenericArguments.integer(Text.of("quantity")),
+                            GenericArguments.bigDecimal(Text.of("price")),
+                            GenericArguments.optional(GenericArguments.catalogedElement(Text.of("item"), ItemType.class))
+                    )
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            Player player = getPlayer(src);
+
+            return placeOrder(player, MarketOrder.Side.BID, getItem(player, args), args);
+        }
+    }
+
+    private class Ask implements CommandExecutor {
+
+        public CommandSpec getCommandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Place an order to sell the held item"))
+                    .permission("totaleconomy.command.market.sell")
+                    .executor(this)
+                    .arguments(
+                            GenericArguments.integer(Text.of("quantity")),
+                            GenericArguments.bigDecimal(Text.of("price"))
+                    )
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            Player player = getPlayer(src);
+            Optional<ItemStack> itemInHandOpt = player.getItemInHand(HandTypes.MAIN_HAND);
+
+            if (!itemInHandOpt.isPresent()) {
+                throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.market.noitem"));
+            }
+
+            return placeOrder(player, MarketOrder.Side.ASK, itemInHandOpt.get(), args);
+        }
+    }
+
+    private class Cancel implements CommandExecutor {
+
+        public CommandSpec getCommandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Cancel one of your market orders"))
+                    .permission("totaleconomy.command.market.cancel")
+                    .executor(this)
+                    .arguments(GenericArguments.longNum(Text.of("id")))
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            Player player = getPlayer(src);
+            MarketManager marketManager = TotalEconomy.getTotalEconomy().getMarketManager();
+            long id = args.<Long>getOne(Text.of("id")).get();
+
+            MarketManager.Status status = marketManager.cancelOrder(player, id);
+
+            if (status == MarketManager.Status.SUCCESS) {
+                Map<String, String> messageValues = new HashMap<>();
+                messageValues.put("id", String.valueOf(id));
+
+                player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.market.cancel", messageValues));
+            } else {
+                marketManager.sendFailure(player, status);
+            }
+
+            return CommandResult.success();
+        }
+    }
+
+    private class Orders implements CommandExecutor {
+
+        public CommandSpec getCommandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("List your open market orders"))
+                    .permission("totaleconomy.command.market.orders")
+                    .executor(this)
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            Player player = getPlayer(src);
+            MarketManager marketManager = TotalEconomy.getTotalEconomy().getMarketManager();
+            MessageManager messageManager = TotalEconomy.getTotalEconomy().getMessageManager();
+            List<MarketOrder> orders = marketManager.getOrders(player.getUniqueId());
+
+            src.sendMessage(messageManager.getMessage(player, "command.market.orders.header"));
+
+            if (orders.isEmpty()) {
+                src.sendMessage(messageManager.getMessage(player, "command.market.none"));
+            }
+
+            for (MarketOrder order : orders) {
+                Map<String, String> messageValues = new HashMap<>();
+                messageValues.put("id", String.valueOf(order.getId()));
+                messageValues.put("remaining", String.valueOf(order.getRemaining()));
+                messageValues.put("quantity", String.valueOf(order.getQuantity()));
+                messageValues.put("item", marketManager.getItemName(order.getItem()));
+                messageValues.put("price", marketManager.formatPrice(order.getPrice()));
+
+                String key = order.getSide() == MarketOrder.Side.BID ? "command.market.orders.bid" : "command.market.orders.ask";
+                src.sendMessage(messageManager.getMessage(player, key, messageValues));
+            }
+
+            return CommandResult.success();
+        }
+    }
+
+    private class Book implements CommandExecutor {
+
+        private static final int DEPTH = 5;
+
+        public CommandSpec getCommandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Show the best buy and sell prices of the held or given item"))
+                    .permission("totaleconomy.command.market.book")
+                    .executor(this)
+                    .arguments(GenericArguments.optional(GenericArguments.catalogedElement(Text.of("item"), ItemType.class)))
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            Player player = getPlayer(src);
+            MarketManager marketManager = TotalEconomy.getTotalEconomy().getMarketManager();
+            MessageManager messageManager = TotalEconomy.getTotalEconomy().getMessageManager();
+            ItemStack item = getItem(player, args);
+            Optional<OrderBook> bookOpt = marketManager.getBook(item);
+
+            Map<String, String> headerValues = new HashMap<>();
+            headerValues.put("item", marketManager.getItemName(item.createSnapshot()));
+
+            src.sendMessage(messageManager.getMessage(player, "command.market.book.header", headerValues));
+
+            if (!bookOpt.isPresent()) {
+                src.sendMessage(messageManager.getMessage(player, "command.market.none"));
+
+                return CommandResult.success();
+            }
+
+            src.sendMessage(messageManager.getMessage(player, "command.market.book.asks"));
+            sendLevels(player, marketManager, bookOpt.get(), MarketOrder.Side.ASK);
+
+            src.sendMessage(messageManager.getMessage(player, "command.market.book.bids"));
+            sendLevels(player, marketManager, bookOpt.get(), MarketOrder.Side.BID);
+
+            return CommandResult.success();
+        }
+
+        private void sendLevels(Player player, MarketManager marketManager, OrderBook book, MarketOrder.Side side) {
+            for (Map.Entry<Long, Long> level : book.getDepth(side, DEPTH)) {
+                Map<String, String> messageValues = new HashMap<>();
+                messageValues.put("quantity", String.valueOf(level.getValue()));
+                messageValues.put("price", marketManager.formatPrice(level.getKey()));
+
+                player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.market.book.level", messageValues));
+            }
+        }
+    }
+
+    private class Claim implements CommandExecutor {
+
+        public CommandSpec getCommandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Collect the items you bought or got back from the market"))
+                    .permission("totaleconomy.command.market.claim")
+                    .executor(this)
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            Player player = getPlayer(src);
+            MarketManager marketManager = TotalEconomy.getTotalEconomy().getMarketManager();
+
+            if (!marketManager.hasClaims(player.getUniqueId())) {
+                throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.market.claim.none"));
+            }
+
+            marketManager.deliver(player);
+
+            return CommandResult.success();
+        }
+    }
+}
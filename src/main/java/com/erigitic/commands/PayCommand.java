@@ -94,9 +94,9 @@ public class PayCommand implements CommandExecutor {
                     messageValues.put("recipient", recipient.getName());
                     messageValues.put("amount", amountText.toPlain());
 
-                    sender.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.pay.sender", messageValues));
+                    sender.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(sender, "command.pay.sender", messageValues));
 
-                    recipient.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.pay.recipient", messageValues));
+                    recipient.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(recipient, "command.pay.recipient", messageValues));
 
                     return CommandResult.success();
                 } else if (transferResult.getResult() == ResultType.ACCOUNT_NO_FUNDS) {
@@ -84,7 +84,7 @@ public class SetBalanceCommand implements CommandExecutor {
                 messageValues.put("recipient", recipient.getName());
                 messageValues.put("amount", amountText.toPlain());
 
-                src.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.setbalance", messageValues));
+                src.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(src, "command.setbalance", messageValues));
 
                 return CommandResult.success();
             } else {
@@ -27,18 +27,29 @@ package com.erigitic.commands;
 
 import com.erigitic.config.TEAccount;
 import com.erigitic.main.TotalEconomy;
+import com.erigitic.shops.RegisteredShop;
 import com.erigitic.shops.Shop;
 import com.erigitic.shops.ShopItem;
+import com.erigitic.shops.ShopListing;
+import com.erigitic.shops.ShopManager;
+import com.erigitic.shops.ShopPurchasePipeline;
+import com.erigitic.shops.ShopSearchIndex;
+import com.erigitic.shops.ShopSession;
+import com.erigitic.shops.ShopStats;
 import com.erigitic.shops.data.ShopData;
 import com.erigitic.shops.data.ShopItemData;
 import com.erigitic.shops.data.ShopKeys;
 import com.erigitic.util.InventoryUtils;
+import com.erigitic.util.MessageManager;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
@@ -54,26 +65,38 @@ import org.spongepowered.api.command.spec.CommandSpec;
 import org.spongepowered.api.data.key.Keys;
 import org.spongepowered.api.data.type.HandTypes;
 import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.event.cause.EventContext;
+import org.spongepowered.api.item.ItemType;
 import org.spongepowered.api.item.inventory.Inventory;
 import org.spongepowered.api.item.inventory.ItemStack;
 import org.spongepowered.api.item.inventory.ItemStackSnapshot;
 import org.spongepowered.api.service.economy.transaction.ResultType;
 import org.spongepowered.api.service.economy.transaction.TransactionResult;
+import org.spongepowered.api.service.pagination.PaginationService;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.text.format.TextStyles;
+import org.spongepowered.api.world.World;
 
 public class ShopCommand implements CommandExecutor {
 
     public CommandSpec commandSpec() {
         Stock shopStockCommand = new Stock();
         Buy shopBuyCommand = new Buy();
+        ShopList shopListCommand = new ShopList();
+        Find shopFindCommand = new Find();
+        Purchase shopPurchaseCommand = new Purchase();
+        Stats shopStatsCommand = new Stats();
 
         return CommandSpec.builder()
                 .child(shopStockCommand.getCommandSpec(), "stock", "s")
                 .child(shopBuyCommand.getCommandSpec(), "buy", "b")
+                .child(shopListCommand.getCommandSpec(), "list", "l")
+                .child(shopFindCommand.getCommandSpec(), "find", "f")
+                .child(shopPurchaseCommand.getCommandSpec(), "purchase", "p")
+                .child(shopStatsCommand.getCommandSpec(), "stats")
                 .permission("totaleconomy.command.shop")
                 .executor(this)
                 .build();
@@ -103,7 +126,7 @@ public class ShopCommand implements CommandExecutor {
                     .executor(this)
                     .arguments(
                             GenericArguments.integer(Text.of("quantity")),
-                            GenericArguments.doubleNum(Text.of("price"))
+                            GenericArguments.bigDecimal(Text.of("price"))
                     )
                     .build();
         }
@@ -129,7 +152,11 @@ public class ShopCommand implements CommandExecutor {
                             ItemStack itemInHand = itemInHandOpt.get();
 
                             int quantity = args.<Integer>getOne(Text.of("quantity")).get();
-                            double price = clampPrice(args.<Double>getOne(Text.of("price")).get(), TotalEconomy.getTotalEconomy().getShopManager().getMinPrice(), TotalEconomy.getTotalEconomy().getShopManager().getMaxPrice());
+                            long price = clampPrice(
+                                    ShopItem.toMinorUnits(args.<BigDecimal>getOne(Text.of("price")).get(), TotalEconomy.getTotalEconomy().getDefaultCurrency()),
+                                    TotalEconomy.getTotalEconomy().getShopManager().getMinPrice(),
+                                    TotalEconomy.getTotalEconomy().getShopManager().getMaxPrice()
+                            );
 
                             if (quantity > itemInHand.getMaxStackQuantity()) {
                                 quantity = itemInHand.getMaxStackQuantity();
@@ -145,21 +172,22 @@ public class ShopCommand implements CommandExecutor {
 
                                 if (rejectedItems.size() <= 0) {
                                     InventoryUtils.removeItem(playerInventory, itemInHand, quantity);
+                                    TotalEconomy.getTotalEconomy().getShopManager().getSearchIndex().addStock(chest.getLocation(), preparedItem, price, quantity);
 
                                     Map<String, String> messageValues = new HashMap<>();
                                     messageValues.put("quantity", String.valueOf(quantity));
                                     messageValues.put("item", preparedItem.get(Keys.DISPLAY_NAME).orElse(Text.of(preparedItem.getTranslation())).toPlain());
-                                    messageValues.put("price", TotalEconomy.getTotalEconomy().getDefaultCurrency().format(BigDecimal.valueOf(price), 2).toPlain());
+                                    messageValues.put("price", TotalEconomy.getTotalEconomy().getDefaultCurrency().format(ShopItem.toAmount(price, TotalEconomy.getTotalEconomy().getDefaultCurrency()), 2).toPlain());
 
-                                    player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.stock.success", messageValues));
+                                    player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.stock.success", messageValues));
                                 } else {
-                                    throw new CommandException(Text.of(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.stock.noslots")));
+                                    throw new CommandException(Text.of(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.stock.noslots")));
                                 }
                             } else {
-                                throw new CommandException(Text.of(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.stock.insufficientitems")));
+                                throw new CommandException(Text.of(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.stock.insufficientitems")));
                             }
                         } else {
-                            throw new CommandException((Text.of(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.stock.notowner"))));
+                            throw new CommandException((Text.of(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.stock.notowner"))));
                         }
                     }
                 }
@@ -173,10 +201,10 @@ public class ShopCommand implements CommandExecutor {
          *
          * @param itemStack The ItemStack to prepare
          * @param quantity The quantity being stocked
-         * @param price The price of the ItemStack being stocked
+         * @param price The price of the ItemStack being stocked, in minor units
          * @return ItemStack An ItemStack that is prepared to be stocked in a shop
          */
-        private ItemStack prepareItemStackForShop(ItemStack itemStack, int quantity, double price) {
+        private ItemStack prepareItemStackForShop(ItemStack itemStack, int quantity, long price) {
             ShopItem shopItem = new ShopItem(price);
             ItemStack preparedItem = itemStack.copy();
 
@@ -187,7 +215,7 @@ public class ShopCommand implements CommandExecutor {
             return preparedItem;
         }
 
-        private double clampPrice(double price, double minValue, double maxValue) {
+        private long clampPrice(long price, long minValue, long maxValue) {
             if (price < minValue) {
                 return minValue;
             } else if (price > maxValue) {
@@ -224,7 +252,7 @@ public class ShopCommand implements CommandExecutor {
 
                     // If double chest, throw exception
                     if (chest.getDoubleChestInventory().isPresent()) {
-                        throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.buy.doublechest"));
+                        throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.buy.doublechest"));
                     }
 
                     if (!chest.get(ShopKeys.SINGLE_SHOP).isPresent()) {
@@ -251,25 +279,26 @@ public class ShopCommand implements CommandExecutor {
 
                                         chest.offer(Keys.DISPLAY_NAME, Text.of(TextStyles.BOLD, TextColors.BLUE, shop.getTitle()));
                                         chest.offer(new ShopData(shop));
+                                        TotalEconomy.getTotalEconomy().getShopManager().getShopRegistry().register(chest.getLocation(), shop);
 
-                                        player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.buy.success"));
+                                        player.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.buy.success"));
                                     } else {
                                         Map<String, String> messageValues = new HashMap<>();
                                         messageValues.put("price", TotalEconomy.getTotalEconomy().getDefaultCurrency().format(BigDecimal.valueOf(TotalEconomy.getTotalEconomy().getShopManager().getChestShopPrice())).toPlain());
 
-                                        throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.buy.insufficientfunds", messageValues));
+                                        throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.buy.insufficientfunds", messageValues));
                                     }
                                 } else { // Chest is not empty
-                                    throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.buy.notempty"));
+                                    throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.buy.notempty"));
                                 }
                             } else { // Chest was placed by someone other than the player executing the command
-                                throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.buy.notowner"));
+                                throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.buy.notowner"));
                             }
                         } else { // Chest was placed by someone other than the player executing the command
-                            throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.buy.notowner"));
+                            throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.buy.notowner"));
                         }
                     } else { // Chest has already been purchased
-                        throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.shop.buy.alreadypurchased"));
+                        throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.buy.alreadypurchased"));
                     }
                 }
             }
@@ -293,4 +322,242 @@ public class ShopCommand implements CommandExecutor {
             return shop;
         }
     }
+
+    private class ShopList implements CommandExecutor {
+
+        private PaginationService paginationService = Sponge.getServiceManager().provideUnchecked(PaginationService.class);
+
+        public CommandSpec getCommandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("List the chest shops of a player"))
+                    .permission("totaleconomy.command.shop.list")
+                    .executor(this)
+                    .arguments(
+                            GenericArguments.optional(GenericArguments.requiringPermission(GenericArguments.user(Text.of("player")), "totaleconomy.command.shop.list.others"))
+                    )
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            Optional<User> userOpt = args.getOne(Text.of("player"));
+
+            if (!userOpt.isPresent() && !(src instanceof Player)) {
+                throw new CommandException(Text.of("[TE] You must specify a player when listing shops from the console!"));
+            }
+
+            User user = userOpt.orElseGet(() -> (Player) src);
+            MessageManager messageManager = TotalEconomy.getTotalEconomy().getMessageManager();
+            List<Text> lines = new ArrayList<>();
+
+            for (RegisteredShop shop : TotalEconomy.getTotalEconomy().getShopManager().getShopRegistry().getShopsOwnedBy(user.getUniqueId())) {
+                Map<String, String> messageValues = new HashMap<>();
+                messageValues.put("world", Sponge.getServer().getWorld(shop.getWorldUniqueId()).map(World::getName).orElse(shop.getWorldUniqueId().toString()));
+                messageValues.put("x", String.valueOf(shop.getX()));
+                messageValues.put("y", String.valueOf(shop.getY()));
+                messageValues.put("z", String.valueOf(shop.getZ()));
+                messageValues.put("title", shop.getTitle());
+
+                lines.add(messageManager.getMessage(src, "command.shop.list.entry", messageValues));
+            }
+
+            Map<String, String> titleValues = new HashMap<>();
+            titleValues.put("player", user.getName());
+
+            paginationService.builder()
+                    .title(messageManager.getMessage(src, "command.shop.list.title", titleValues))
+                    .contents(lines)
+                    .sendTo(src);
+
+            return CommandResult.success();
+        }
+    }
+
+    private class Find implements CommandExecutor {
+
+        private static final int PAGE_SIZE = 10;
+
+        public CommandSpec getCommandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Find the chest shops selling an item, cheapest first"))
+                    .permission("totaleconomy.command.shop.find")
+                    .executor(this)
+                    .arguments(
+                            GenericArguments.catalogedElement(Text.of("item"), ItemType.class),
+                            GenericArguments.optional(GenericArguments.integer(Text.of("page")))
+                    )
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            ItemType itemType = args.<ItemType>getOne("item").get();
+            int page = Math.max(1, args.<Integer>getOne("page").orElse(1));
+
+            ShopManager shopManager = TotalEconomy.getTotalEconomy().getShopManager();
+            MessageManager messageManager = TotalEconomy.getTotalEconomy().getMessageManager();
+            ShopSearchIndex searchIndex = shopManager.getSearchIndex();
+            int pages = Math.max(1, (searchIndex.getListingCount(itemType.getId()) + PAGE_SIZE - 1) / PAGE_SIZE);
+            List<ShopListing> listings = searchIndex.getListings(itemType.getId(), (page - 1) * PAGE_SIZE, PAGE_SIZE);
+
+            Map<String, String> headerValues = new HashMap<>();
+            headerValues.put("item", itemType.getTranslation().get());
+            headerValues.put("page", String.valueOf(page));
+            headerValues.put("pages", String.valueOf(pages));
+
+            src.sendMessage(messageManager.getMessage(src, "command.shop.find.header", headerValues));
+
+            if (listings.isEmpty()) {
+                src.sendMessage(messageManager.getMessage(src, "command.shop.find.none"));
+            }
+
+            for (ShopListing listing : listings) {
+                Map<String, String> messageValues = new HashMap<>();
+                messageValues.put("price", TotalEconomy.getTotalEconomy().getDefaultCurrency().format(ShopItem.toAmount(listing.getPrice(), TotalEconomy.getTotalEconomy().getDefaultCurrency()), 2).toPlain());
+                messageValues.put("quantity", String.valueOf(listing.getQuantity()));
+                messageValues.put("variant", listing.getVariant() != 0 ? " (" + listing.getVariant() + ")" : "");
+                messageValues.put("world", Sponge.getServer().getWorld(listing.getWorldUniqueId()).map(World::getName).orElse(listing.getWorldUniqueId().toString()));
+                messageValues.put("x", String.valueOf(listing.getX()));
+                messageValues.put("y", String.valueOf(listing.getY()));
+                messageValues.put("z", String.valueOf(listing.getZ()));
+                messageValues.put("title", shopManager.getShopRegistry().getShop(listing.getWorldUniqueId(), listing.getPosition())
+                        .map(RegisteredShop::getTitle)
+                        .orElse(""));
+
+                src.sendMessage(messageManager.getMessage(src, "command.shop.find.entry", messageValues));
+            }
+
+            return CommandResult.success();
+        }
+    }
+
+    private class Purchase implements CommandExecutor {
+
+        public CommandSpec getCommandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Buy a quantity of an item from the chest shop you are looking at"))
+                    .permission("totaleconomy.command.shop.purchase")
+                    .executor(this)
+                    .arguments(
+                            GenericArguments.integer(Text.of("quantity")),
+                            GenericArguments.optional(GenericArguments.catalogedElement(Text.of("item"), ItemType.class))
+                    )
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            if (!(src instanceof Player)) {
+                throw new CommandException(Text.of("[TE] This command can only be run by a player!"));
+            }
+
+            Player player = (Player) src;
+            ShopManager shopManager = TotalEconomy.getTotalEconomy().getShopManager();
+            Optional<TileEntity> tileEntityOpt = shopManager.getTileEntityFromPlayerRaycast(player);
+
+            if (!tileEntityOpt.isPresent() || !isTileEntityAChest(tileEntityOpt.get()) || !tileEntityOpt.get().get(ShopKeys.SINGLE_SHOP).isPresent()) {
+                throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.purchase.noshop"));
+            }
+
+            Chest chest = (Chest) tileEntityOpt.get();
+            ShopSession session = new ShopSession(chest.get(ShopKeys.SINGLE_SHOP).get(), chest.getLocation(), chest);
+
+            // Buy the held item unless another item is given, so items with variants can be bought by holding one
+            Optional<ItemStack> itemInHandOpt = player.getItemInHand(HandTypes.MAIN_HAND);
+            Optional<ItemType> itemTypeOpt = args.getOne(Text.of("item"));
+            ItemStack item;
+
+            if (itemInHandOpt.isPresent() && (!itemTypeOpt.isPresent() || itemTypeOpt.get().equals(itemInHandOpt.get().getType()))) {
+                item = itemInHandOpt.get();
+            } else if (itemTypeOpt.isPresent()) {
+                item = ItemStack.of(itemTypeOpt.get(), 1);
+            } else {
+                throw new CommandException(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(player, "command.shop.purchase.noitem"));
+            }
+
+            int quantity = args.<Integer>getOne(Text.of("quantity")).get();
+
+            Cause cause = Cause.builder()
+                    .append(player)
+                    .append(TotalEconomy.getTotalEconomy().getPluginContainer())
+                    .build(EventContext.empty());
+
+            ShopPurchasePipeline.PurchaseResult result = shopManager.getPurchasePipeline().purchaseBulk(player, session, item, quantity, Long.MAX_VALUE, cause);
+
+            if (result.getStatus() == ShopPurchasePipeline.Status.SUCCESS) {
+                shopManager.sendBulkPurchaseSuccess(player, item, result);
+            } else {
+                shopManager.sendPurchaseFailure(player, result.getStatus());
+            }
+
+            return CommandResult.success();
+        }
+    }
+
+    private class Stats implements CommandExecutor {
+
+        private static final int TOP_ITEMS = 5;
+
+        public CommandSpec getCommandSpec() {
+            return CommandSpec.builder()
+                    .description(Text.of("Show the sales of the chest shop you are looking at, or of all your shops"))
+                    .permission("totaleconomy.command.shop.stats")
+                    .executor(this)
+                    .build();
+        }
+
+        @Override
+        public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+            if (!(src instanceof Player)) {
+                throw new CommandException(Text.of("[TE] This command can only be run by a player!"));
+            }
+
+            Player player = (Player) src;
+            ShopManager shopManager = TotalEconomy.getTotalEconomy().getShopManager();
+            MessageManager messageManager = TotalEconomy.getTotalEconomy().getMessageManager();
+            Optional<TileEntity> tileEntityOpt = shopManager.getTileEntityFromPlayerRaycast(player);
+            Optional<Shop> shopOpt = tileEntityOpt.flatMap(tileEntity -> tileEntity.get(ShopKeys.SINGLE_SHOP));
+            Optional<ShopStats> statsOpt;
+            Text title;
+
+            if (shopOpt.isPresent()) {
+                if (!shopOpt.get().getOwner().equals(player.getUniqueId()) && !player.hasPermission("totaleconomy.command.shop.stats.others")) {
+                    throw new CommandException(messageManager.getMessage(player, "command.shop.stats.notowner"));
+                }
+
+                statsOpt = shopManager.getLedger().getShopStats(tileEntityOpt.get().getLocation());
+                title = Text.of(TextColors.GOLD, shopOpt.get().getTitle());
+            } else {
+                statsOpt = shopManager.getLedger().getOwnerStats(player.getUniqueId());
+                title = messageManager.getMessage(player, "command.shop.stats.all");
+            }
+
+            src.sendMessage(title);
+
+            if (!statsOpt.isPresent()) {
+                src.sendMessage(messageManager.getMessage(player, "command.shop.stats.none"));
+
+                return CommandResult.success();
+            }
+
+            ShopStats stats = statsOpt.get();
+            Map<String, String> messageValues = new HashMap<>();
+            messageValues.put("amount", TotalEconomy.getTotalEconomy().getDefaultCurrency().format(stats.getRevenue(), 2).toPlain());
+            messageValues.put("units", String.valueOf(stats.getUnitsSold()));
+            messageValues.put("sales", String.valueOf(stats.getSales()));
+
+            src.sendMessage(messageManager.getMessage(player, "command.shop.stats.revenue", messageValues));
+            src.sendMessage(messageManager.getMessage(player, "command.shop.stats.sold", messageValues));
+
+            for (Map.Entry<String, Long> topItem : stats.getTopItems(TOP_ITEMS)) {
+                Map<String, String> itemValues = new HashMap<>();
+                itemValues.put("item", topItem.getKey());
+                itemValues.put("units", String.valueOf(topItem.getValue()));
+
+                src.sendMessage(messageManager.getMessage(player, "command.shop.stats.item", itemValues));
+            }
+
+            return CommandResult.success();
+        }
+    }
 }
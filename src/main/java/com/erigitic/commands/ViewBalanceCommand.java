@@ -77,7 +77,7 @@ public class ViewBalanceCommand implements CommandExecutor {
             messageValues.put("recipient", recipient.getName());
             messageValues.put("amount", balanceText.toPlain());
 
-            sender.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage("command.viewbalance", messageValues));
+            sender.sendMessage(TotalEconomy.getTotalEconomy().getMessageManager().getMessage(sender, "command.viewbalance", messageValues));
 
             return CommandResult.success();
         } else {
@@ -32,9 +32,20 @@ import com.erigitic.util.MessageManager;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import ninja.leaping.configurate.ConfigurationNode;
@@ -51,6 +62,7 @@ import org.spongepowered.api.service.economy.Currency;
 import org.spongepowered.api.service.economy.EconomyService;
 import org.spongepowered.api.service.economy.account.Account;
 import org.spongepowered.api.service.economy.account.UniqueAccount;
+import org.spongepowered.api.service.economy.transaction.ResultType;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 
@@ -67,6 +79,9 @@ public class AccountManager implements EconomyService {
 
     private boolean confSaveRequested = false;
 
+    // Option bit flags of the players that checked or changed an option since they joined
+    private final Map<UUID, Integer> userOptionFlags = new ConcurrentHashMap<>();
+
     public static final int CONTENT_VERSION = 1;
 
     /**
@@ -178,6 +193,12 @@ public class AccountManager implements EconomyService {
                 + "farmer int(10) unsigned NOT NULL DEFAULT '0',"
                 + "FOREIGN KEY (uid) REFERENCES accounts(uid) ON DELETE CASCADE"
         );
+
+        sqlManager.createTable("user_options", "uid varchar(60) NOT NULL,"
+                + "flags int(10) unsigned NOT NULL DEFAULT '0',"
+                + "PRIMARY KEY (uid),"
+                + "FOREIGN KEY (uid) REFERENCES accounts(uid) ON DELETE CASCADE"
+        );
     }
 
     /**
@@ -526,18 +547,182 @@ public class AccountManager implements EconomyService {
         }
 
         if (jobNotifications) {
-            player.sendMessage(messageManager.getMessage("notifications.on"));
+            player.sendMessage(messageManager.getMessage(player, "notifications.on"));
         } else {
-            player.sendMessage(messageManager.getMessage("notifications.off"));
+            player.sendMessage(messageManager.getMessage(player, "notifications.off"));
+        }
+    }
+
+    /**
+     * Adds an amount to the balance of many unique accounts at once. In database mode this is a single batched update
+     * and is safe to call off the main thread. In configuration mode the balances are updated in memory and one save is
+     * requested, so it should be called from the main thread. No transaction events are posted, that is left to the caller.
+     *
+     * <p>Deposits that would take a balance over the money cap are either cut off at the cap, like a single deposit, or
+     * not made at all and reported as ACCOUNT_NO_SPACE, so the caller can hold on to the money until there is room.</p>
+     *
+     * @param currency The currency to deposit
+     * @param amounts The amount to deposit into each account
+     * @param clampToCap Whether deposits over the money cap are cut off at the cap instead of being refused
+     * @return Map The result of each deposit
+     */
+    public Map<UUID, ResultType> creditBalances(Currency currency, Map<UUID, BigDecimal> amounts, boolean clampToCap) {
+        Map<UUID, ResultType> results = new HashMap<>();
+        String currencyName = currency.getName().toLowerCase();
+        BigDecimal moneyCap = totalEconomy.getMoneyCap();
+
+        if (amounts.isEmpty()) {
+            return results;
+        }
+
+        if (databaseActive) {
+            List<UUID> uuids = new ArrayList<>(amounts.keySet());
+            String selectStatement = "SELECT uid, " + currencyName + "_balance FROM accounts WHERE uid IN (" + String.join(",", Collections.nCopies(uuids.size(), "?")) + ") FOR UPDATE";
+            String updateStatement = "UPDATE accounts SET " + currencyName + "_balance = " + currencyName + "_balance + ? WHERE uid = ?";
+
+            try (Connection conn = sqlManager.dataSource.getConnection()) {
+                conn.setAutoCommit(false);
+
+                try (PreparedStatement selectPreparedStatement = conn.prepareStatement(selectStatement);
+                     PreparedStatement updatePreparedStatement = conn.prepareStatement(updateStatement)) {
+                    for (int i = 0; i < uuids.size(); i++) {
+                        selectPreparedStatement.setString(i + 1, uuids.get(i).toString());
+                    }
+
+                    // Lock the rows and check the cap first, so a deposit is cut off or refused in the same transaction
+                    Map<UUID, BigDecimal> deposits = new HashMap<>();
+
+                    try (ResultSet resultSet = selectPreparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            UUID uuid = UUID.fromString(resultSet.getString("uid"));
+                            BigDecimal balance = resultSet.getBigDecimal(currencyName + "_balance");
+                            BigDecimal amount = amounts.get(uuid);
+
+                            if (balance.add(amount).compareTo(moneyCap) <= 0) {
+                                deposits.put(uuid, amount);
+                            } else if (clampToCap) {
+                                deposits.put(uuid, moneyCap.subtract(balance).max(BigDecimal.ZERO));
+                            } else {
+                                results.put(uuid, ResultType.ACCOUNT_NO_SPACE);
+                            }
+                        }
+                    }
+
+                    for (Map.Entry<UUID, BigDecimal> deposit : deposits.entrySet()) {
+                        updatePreparedStatement.setBigDecimal(1, deposit.getValue());
+                        updatePreparedStatement.setString(2, deposit.getKey().toString());
+                        updatePreparedStatement.addBatch();
+                    }
+
+                    if (!deposits.isEmpty()) {
+                        updatePreparedStatement.executeBatch();
+                    }
+
+                    conn.commit();
+
+                    deposits.keySet().forEach(uuid -> results.put(uuid, ResultType.SUCCESS));
+                    uuids.forEach(uuid -> results.putIfAbsent(uuid, ResultType.FAILED));
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                logger.warn("An error occurred while depositing into multiple accounts!", e);
+
+                uuids.forEach(uuid -> results.put(uuid, ResultType.FAILED));
+            }
+        } else {
+            amounts.forEach((uuid, amount) -> {
+                ConfigurationNode balanceNode = accountConfig.getNode(uuid.toString(), currencyName + "-balance");
+
+                if (balanceNode.getValue() != null) {
+                    BigDecimal balance = new BigDecimal(balanceNode.getString());
+                    BigDecimal newBalance = balance.add(amount);
+
+                    if (newBalance.compareTo(moneyCap) > 0 && !clampToCap) {
+                        results.put(uuid, ResultType.ACCOUNT_NO_SPACE);
+                    } else {
+                        if (newBalance.compareTo(moneyCap) > 0) {
+                            newBalance = moneyCap.max(balance);
+                        }
+
+                        balanceNode.setValue(newBalance.setScale(2, BigDecimal.ROUND_DOWN));
+                        results.put(uuid, ResultType.SUCCESS);
+                    }
+                } else {
+                    results.put(uuid, ResultType.FAILED);
+                }
+            });
+
+            requestConfigurationSave();
+        }
+
+        return results;
+    }
+
+    /**
+     * Check if an option is enabled for a user. The option flags of a user are loaded once and cached, so this is cheap
+     * enough to call from event listeners.
+     *
+     * @param user The user to check the option of
+     * @param option The option to check
+     * @return boolean If the option is enabled for the user
+     */
+    public boolean isUserOptionEnabled(User user, UserOption option) {
+        return (getUserOptionFlags(user.getUniqueId()) & option.getFlag()) != 0;
+    }
+
+    /**
+     * Enable or disable an option for a user. Takes effect immediately and is persisted in the accounts configuration
+     * file or the database.
+     *
+     * @param user The user to change the option of
+     * @param option The option to change
+     * @param enabled Whether or not the option should be enabled
+     */
+    public void setUserOption(User user, UserOption option, boolean enabled) {
+        UUID uuid = user.getUniqueId();
+        int flags = getUserOptionFlags(uuid);
+
+        flags = enabled ? flags | option.getFlag() : flags & ~option.getFlag();
+        userOptionFlags.put(uuid, flags);
+
+        if (databaseActive) {
+            String query = "INSERT INTO user_options (uid, flags) VALUES (?, ?) ON DUPLICATE KEY UPDATE flags = VALUES(flags)";
+
+            try (Connection conn = sqlManager.dataSource.getConnection();
+                 PreparedStatement statement = conn.prepareStatement(query)) {
+                statement.setString(1, uuid.toString());
+                statement.setInt(2, flags);
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                logger.warn("An error occurred while updating the options of " + uuid + " in the database!");
+                e.printStackTrace();
+            }
+        } else {
+            accountConfig.getNode(uuid.toString(), "options", option.getId()).setValue(enabled ? "1" : "0");
+            requestConfigurationSave();
         }
     }
 
     /**
      * Used for the debugging information provided by the listeners in the JobManager.
      * Exists to allow administrators to retrieve the necessary information from mods in order to integrate them into jobs.
+     *
+     * <p>Known options are read from the option flags, other options from the accounts configuration file.</p>
+     *
+     * @param option The id of the option
+     * @param user The user to get the option of
+     * @return Optional The value of the option
      */
     public Optional<String> getUserOption(String option, User user) {
-        // Currently no db support for this - Shouldn't be that necessary anyways
+        Optional<UserOption> userOptionOpt = UserOption.fromId(option);
+
+        if (userOptionOpt.isPresent()) {
+            return Optional.of(isUserOptionEnabled(user, userOptionOpt.get()) ? "1" : "0");
+        }
+
+        // Currently no db support for unknown options - Shouldn't be that necessary anyways
         if (databaseActive) {
             return Optional.empty();
         }
@@ -546,7 +731,15 @@ public class AccountManager implements EconomyService {
     }
 
     public void setUserOption(String option, User user, String value) {
-        // Currently no db support for this - Shouldn't be that necessary anyways
+        Optional<UserOption> userOptionOpt = UserOption.fromId(option);
+
+        if (userOptionOpt.isPresent()) {
+            setUserOption(user, userOptionOpt.get(), "1".equals(value));
+
+            return;
+        }
+
+        // Currently no db support for unknown options - Shouldn't be that necessary anyways
         if (databaseActive) {
             return;
         }
@@ -554,6 +747,50 @@ public class AccountManager implements EconomyService {
         accountConfig.getNode(user.getUniqueId().toString(), "options", option).setValue(value);
     }
 
+    /**
+     * Forget the cached option flags of a user, for example when they leave the server.
+     *
+     * @param uuid {@link UUID} of the user
+     */
+    public void unloadUserOptions(UUID uuid) {
+        userOptionFlags.remove(uuid);
+    }
+
+    private int getUserOptionFlags(UUID uuid) {
+        Integer flags = userOptionFlags.get(uuid);
+
+        if (flags == null) {
+            flags = loadUserOptionFlags(uuid);
+            userOptionFlags.put(uuid, flags);
+        }
+
+        return flags;
+    }
+
+    private int loadUserOptionFlags(UUID uuid) {
+        if (databaseActive) {
+            SqlQuery sqlQuery = SqlQuery.builder(sqlManager.dataSource)
+                    .select("flags")
+                    .from("user_options")
+                    .where("uid")
+                    .equals(uuid.toString())
+                    .build();
+
+            return sqlQuery.getInt(0);
+        }
+
+        int flags = 0;
+        ConfigurationNode optionsNode = accountConfig.getNode(uuid.toString(), "options");
+
+        for (UserOption option : UserOption.values()) {
+            if ("1".equals(optionsNode.getNode(option.getId()).getString("0"))) {
+                flags |= option.getFlag();
+            }
+        }
+
+        return flags;
+    }
+
     /**
      * Request for the account configuration file to be saved.
      */
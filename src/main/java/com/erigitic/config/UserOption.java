@@ -0,0 +1,71 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.config;
+
+import java.util.Optional;
+
+/**
+ * Per player options known to Total Economy. Each option is stored as a single bit, so checking one is a bit test.
+ */
+public enum UserOption {
+
+    BLOCK_BREAK_INFO("totaleconomy:block-break-info"),
+    BLOCK_PLACE_INFO("totaleconomy:block-place-info"),
+    ENTITY_KILL_INFO("totaleconomy:entity-kill-info"),
+    ENTITY_FISH_INFO("totaleconomy:entity-fish-info");
+
+    private final String id;
+    private final int flag;
+
+    UserOption(String id) {
+        this.id = id;
+        this.flag = 1 << ordinal();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getFlag() {
+        return flag;
+    }
+
+    /**
+     * Get an option by its id.
+     *
+     * @param id The id of the option (ex. totaleconomy:block-break-info)
+     * @return Optional The option, empty if the id is unknown
+     */
+    public static Optional<UserOption> fromId(String id) {
+        for (UserOption option : values()) {
+            if (option.id.equals(id)) {
+                return Optional.of(option);
+            }
+        }
+
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import com.erigitic.main.TotalEconomy;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.slf4j.Logger;
+import org.spongepowered.api.scheduler.Task;
+
+/**
+ * Manages scheduled reward multipliers ("boosts") for a job, an action or everything, stored in boosts.conf. The
+ * multipliers of the boosts active right now are precomputed into a table that is replaced whenever a boost starts or
+ * ends, so looking up a multiplier never has to look at the boosts themselves. Boosts that apply to the same reward
+ * are multiplied.
+ */
+public class BoostManager {
+
+    public static final String ANY = "*";
+
+    private static final Pattern DURATION_PATTERN = Pattern.compile("(\\d+)([smhdw])");
+
+    private TotalEconomy totalEconomy;
+    private Logger logger;
+
+    private File boostsFile;
+    private ConfigurationLoader<CommentedConfigurationNode> loader;
+    private boolean savePending = false;
+    private long saveVersion = 0;
+
+    // Version of the last snapshot written to the file, guarded by the loader
+    private long writtenVersion = 0;
+
+    // All boosts that have not ended yet, by id. Only accessed from the main thread.
+    private final Map<String, Boost> boosts = new LinkedHashMap<>();
+
+    // Multipliers of the active boosts by job and action, with ANY entries for the rest
+    private volatile Map<String, Map<String, Double>> activeMultipliers = Collections.emptyMap();
+
+    private Task refreshTask;
+
+    public BoostManager(TotalEconomy totalEconomy, Logger logger) {
+        this.totalEconomy = totalEconomy;
+        this.logger = logger;
+
+        boostsFile = new File(totalEconomy.getConfigDir(), "boosts.conf");
+        loader = HoconConfigurationLoader.builder().setFile(boostsFile).build();
+
+        load();
+        refresh();
+    }
+
+    private void load() {
+        if (!boostsFile.exists()) {
+            return;
+        }
+
+        try {
+            ConfigurationNode boostsConfig = loader.load();
+
+            boostsConfig.getNode("boosts").getChildrenMap().forEach((id, boostNode) -> {
+                Boost boost = new Boost(
+                        id.toString(),
+                        boostNode.getNode("job").getString(ANY),
+                        boostNode.getNode("action").getString(ANY),
+                        boostNode.getNode("factor").getDouble(1),
+                        boostNode.getNode("start").getLong(0),
+                        boostNode.getNode("end").getLong(0)
+                );
+
+                boosts.put(boost.getId(), boost);
+            });
+        } catch (IOException e) {
+            logger.warn("An error occurred while loading the boosts configuration file!");
+            e.printStackTrace();
+        }
+    }
+
+    private ConfigurationNode createSaveNode() {
+        ConfigurationNode boostsConfig = loader.createEmptyNode();
+
+        for (Boost boost : boosts.values()) {
+            ConfigurationNode boostNode = boostsConfig.getNode("boosts", boost.getId());
+
+            boostNode.getNode("job").setValue(boost.getJob());
+            boostNode.getNode("action").setValue(boost.getAction());
+            boostNode.getNode("factor").setValue(boost.getFactor());
+            boostNode.getNode("start").setValue(boost.getStart());
+            boostNode.getNode("end").setValue(boost.getEnd());
+        }
+
+        return boostsConfig;
+    }
+
+    /**
+     * Save the boosts on the next tick. The file is written off the main thread, a write is skipped if a newer snapshot
+     * was already written so a removed boost can not come back.
+     */
+    private void save() {
+        if (savePending) {
+            return;
+        }
+
+        savePending = true;
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .execute(() -> {
+                    savePending = false;
+
+                    ConfigurationNode boostsConfig = createSaveNode();
+                    long version = ++saveVersion;
+
+                    totalEconomy.getGame().getScheduler().createTaskBuilder()
+                            .async()
+                            .execute(() -> {
+                                synchronized (loader) {
+                                    if (version < writtenVersion) {
+                                        return;
+                                    }
+
+                                    try {
+                                        loader.save(boostsConfig);
+                                        writtenVersion = version;
+                                    } catch (IOException e) {
+                                        logger.warn("An error occurred while saving the boosts configuration file!");
+                                        e.printStackTrace();
+                                    }
+                                }
+                            })
+                            .name("Save Boosts")
+                            .submit(totalEconomy);
+                })
+                .name("Queue Boosts Save")
+                .submit(totalEconomy);
+    }
+
+    /**
+     * Get the multiplier for a reward.
+     *
+     * @param jobName The job of the rewarded player
+     * @param action The action type (ex. break, kill)
+     * @return double The product of the factors of all active boosts for the job and action, 1 if there are none
+     */
+    public double getMultiplier(String jobName, String action) {
+        Map<String, Map<String, Double>> multipliers = activeMultipliers;
+
+        if (multipliers.isEmpty()) {
+            return 1;
+        }
+
+        Map<String, Double> jobMultipliers = multipliers.get(jobName);
+
+        if (jobMultipliers == null) {
+            jobMultipliers = multipliers.get(ANY);
+        }
+
+        Double multiplier = jobMultipliers.get(action);
+
+        return multiplier != null ? multiplier : jobMultipliers.get(ANY);
+    }
+
+    /**
+     * Add a boost, replacing a boost with the same id.
+     *
+     * @param boost The boost
+     */
+    public void addBoost(Boost boost) {
+        boosts.put(boost.getId(), boost);
+
+        save();
+        refresh();
+    }
+
+    /**
+     * Remove a boost.
+     *
+     * @param id The id of the boost
+     * @return boolean If a boost was removed
+     */
+    public boolean removeBoost(String id) {
+        if (boosts.remove(id) == null) {
+            return false;
+        }
+
+        save();
+        refresh();
+
+        return true;
+    }
+
+    public List<Boost> getBoosts() {
+        return new ArrayList<>(boosts.values());
+    }
+
+    /**
+     * Drop ended boosts, rebuild the table of active multipliers and schedule the next refresh for when the next
+     * boost starts or ends.
+     */
+    private void refresh() {
+        long now = System.currentTimeMillis();
+        List<Boost> active = new ArrayList<>();
+        long nextChange = Long.MAX_VALUE;
+
+        if (boosts.values().removeIf(boost -> boost.getEnd() <= now)) {
+            save();
+        }
+
+        for (Boost boost : boosts.values()) {
+            if (boost.getStart() <= now) {
+                active.add(boost);
+                nextChange = Math.min(nextChange, boost.getEnd());
+            } else {
+                nextChange = Math.min(nextChange, boost.getStart());
+            }
+        }
+
+        activeMultipliers = buildMultipliers(active);
+
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+
+        if (nextChange != Long.MAX_VALUE) {
+            refreshTask = totalEconomy.getGame().getScheduler().createTaskBuilder()
+                    .execute(this::refresh)
+                    .delay(Math.max(1, nextChange - now), TimeUnit.MILLISECONDS)
+                    .name("Refresh Boosts")
+                    .submit(totalEconomy);
+        }
+    }
+
+    private static Map<String, Map<String, Double>> buildMultipliers(List<Boost> active) {
+        if (active.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // Multiply in a fixed order so the result doesn't depend on the order the boosts were added in
+        active.sort(Comparator.comparing(Boost::getId));
+
+        Set<String> jobs = new HashSet<>();
+        Set<String> actions = new HashSet<>();
+
+        jobs.add(ANY);
+        actions.add(ANY);
+
+        for (Boost boost : active) {
+            jobs.add(boost.getJob());
+            actions.add(boost.getAction());
+        }
+
+        Map<String, Map<String, Double>> multipliers = new HashMap<>();
+
+        for (String job : jobs) {
+            Map<String, Double> jobMultipliers = new HashMap<>();
+
+            for (String action : actions) {
+                double multiplier = 1;
+
+                for (Boost boost : active) {
+                    if (boost.appliesTo(job, action)) {
+                        multiplier *= boost.getFactor();
+                    }
+                }
+
+                jobMultipliers.put(action, multiplier);
+            }
+
+            multipliers.put(job, jobMultipliers);
+        }
+
+        return multipliers;
+    }
+
+    /**
+     * Parse a point in time for a boost. Accepts "now", a duration after the base time (ex. 30m, 2h, 3d, 1w) or a
+     * local date and time (ex. 2018-06-01T18:00).
+     *
+     * @param input The text to parse
+     * @param base The time in milliseconds durations are added to
+     * @return long The time in milliseconds
+     * @throws IllegalArgumentException The input is not a valid time
+     */
+    public static long parseTime(String input, long base) {
+        if (input.equalsIgnoreCase("now")) {
+            return System.currentTimeMillis();
+        }
+
+        Matcher matcher = DURATION_PATTERN.matcher(input.toLowerCase());
+
+        if (matcher.matches()) {
+            long amount = Long.parseLong(matcher.group(1));
+
+            switch (matcher.group(2)) {
+                case "s":
+                    return base + Duration.ofSeconds(amount).toMillis();
+                case "m":
+                    return base + Duration.ofMinutes(amount).toMillis();
+                case "h":
+                    return base + Duration.ofHours(amount).toMillis();
+                case "d":
+                    return base + Duration.ofDays(amount).toMillis();
+                default:
+                    return base + Duration.ofDays(amount * 7).toMillis();
+            }
+        }
+
+        try {
+            return LocalDateTime.parse(input).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time: " + input);
+        }
+    }
+
+    public static class Boost {
+        private final String id;
+        private final String job;
+        private final String action;
+        private final double factor;
+        private final long start;
+        private final long end;
+
+        /**
+         * @param id Unique id of the boost
+         * @param job The job the boost applies to, {@link #ANY} for all jobs
+         * @param action The action the boost applies to, {@link #ANY} for all actions
+         * @param factor The multiplier for exp and money rewards
+         * @param start Start time in milliseconds
+         * @param end End time in milliseconds
+         */
+        public Boost(String id, String job, String action, double factor, long start, long end) {
+            this.id = id;
+            this.job = job.toLowerCase();
+            this.action = action.toLowerCase();
+            this.factor = factor;
+            this.start = start;
+            this.end = end;
+        }
+
+        public boolean appliesTo(String jobName, String actionName) {
+            return (job.equals(ANY) || job.equals(jobName)) && (action.equals(ANY) || action.equals(actionName));
+        }
+
+        public boolean isActive() {
+            long now = System.currentTimeMillis();
+
+            return start <= now && now < end;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getJob() {
+            return job;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        public double getFactor() {
+            return factor;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import com.erigitic.config.AccountManager;
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.sql.SqlManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.slf4j.Logger;
+
+/**
+ * Ranks the players of every job by level, then exp. The rankings are seeded once at startup and then kept up to date
+ * whenever job progress is saved, so reading a page of the leaderboard never has to scan the accounts.
+ */
+public class JobLeaderboard {
+
+    private static final Comparator<Entry> RANKING_ORDER = Comparator.comparingInt(Entry::getLevel).reversed()
+            .thenComparing(Comparator.comparingInt(Entry::getExp).reversed())
+            .thenComparing(Entry::getUniqueId);
+
+    private TotalEconomy totalEconomy;
+    private AccountManager accountManager;
+    private Logger logger;
+
+    private final Map<String, Board> boards = new ConcurrentHashMap<>();
+
+    public JobLeaderboard(TotalEconomy totalEconomy, AccountManager accountManager, Logger logger) {
+        this.totalEconomy = totalEconomy;
+        this.accountManager = accountManager;
+        this.logger = logger;
+    }
+
+    /**
+     * Fill the rankings from the stored job progress. Reads the accounts configuration directly, or queries the
+     * database off the main thread.
+     *
+     * @param jobNames The jobs to rank
+     */
+    public void seed(Collection<String> jobNames) {
+        if (totalEconomy.isDatabaseEnabled()) {
+            List<String> jobs = new ArrayList<>(jobNames);
+
+            totalEconomy.getGame().getScheduler().createTaskBuilder()
+                    .async()
+                    .execute(() -> seedFromDatabase(jobs))
+                    .name("Seed Job Leaderboards")
+                    .submit(totalEconomy);
+        } else {
+            seedFromConfig();
+        }
+    }
+
+    private void seedFromConfig() {
+        accountManager.getAccountConfig().getChildrenMap().forEach((uuid, accountNode) -> {
+            UUID uniqueId;
+
+            try {
+                uniqueId = UUID.fromString(uuid.toString());
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+
+            for (Map.Entry<Object, ? extends ConfigurationNode> jobEntry : accountNode.getNode("jobstats").getChildrenMap().entrySet()) {
+                int level = jobEntry.getValue().getNode("level").getInt(1);
+                int exp = jobEntry.getValue().getNode("exp").getInt(0);
+
+                if (level > 1 || exp > 0) {
+                    getBoard(jobEntry.getKey().toString()).seed(uniqueId, level, exp);
+                }
+            }
+        });
+    }
+
+    private void seedFromDatabase(List<String> jobNames) {
+        SqlManager sqlManager = totalEconomy.getSqlManager();
+
+        for (String jobName : jobNames) {
+            if (jobName.equals("unemployed")) {
+                continue;
+            }
+
+            String query = "SELECT experience.uid, levels." + jobName + ", experience." + jobName
+                    + " FROM experience JOIN levels ON levels.uid = experience.uid"
+                    + " WHERE experience." + jobName + " > 0 OR levels." + jobName + " > 1";
+
+            try (Connection conn = sqlManager.dataSource.getConnection();
+                 PreparedStatement statement = conn.prepareStatement(query);
+                 ResultSet resultSet = statement.executeQuery()) {
+                Board board = getBoard(jobName);
+
+                while (resultSet.next()) {
+                    board.seed(UUID.fromString(resultSet.getString(1)), resultSet.getInt(2), resultSet.getInt(3));
+                }
+            } catch (SQLException | IllegalArgumentException e) {
+                logger.warn("An error occurred while loading the leaderboard of job " + jobName + "!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private Board getBoard(String jobName) {
+        return boards.computeIfAbsent(jobName.toLowerCase(), k -> new Board());
+    }
+
+    /**
+     * Update the ranking of a player in a job.
+     *
+     * @param jobName The job
+     * @param uuid {@link UUID} of the player
+     * @param level The level of the player in the job
+     * @param exp The exp of the player in the job
+     */
+    public void update(String jobName, UUID uuid, int level, int exp) {
+        getBoard(jobName).update(uuid, level, exp);
+    }
+
+    /**
+     * Get a part of the ranking of a job.
+     *
+     * @param jobName The job
+     * @param offset The number of top entries to skip
+     * @param limit The maximum number of entries to return
+     * @return List The entries, best first
+     */
+    public List<Entry> getTop(String jobName, int offset, int limit) {
+        Board board = boards.get(jobName.toLowerCase());
+
+        return board != null ? board.getTop(offset, limit) : new ArrayList<>();
+    }
+
+    /**
+     * Get the rank of a player in a job.
+     *
+     * @param jobName The job
+     * @param uuid {@link UUID} of the player
+     * @return Optional The rank starting at 1, empty if the player has no progress in the job
+     */
+    public Optional<Integer> getRank(String jobName, UUID uuid) {
+        Board board = boards.get(jobName.toLowerCase());
+
+        return board != null ? board.getRank(uuid) : Optional.empty();
+    }
+
+    /**
+     * Get the number of ranked players of a job.
+     *
+     * @param jobName The job
+     * @return int The number of players
+     */
+    public int getSize(String jobName) {
+        Board board = boards.get(jobName.toLowerCase());
+
+        return board != null ? board.size() : 0;
+    }
+
+    private static class Board {
+        private final TreeSet<Entry> ranking = new TreeSet<>(RANKING_ORDER);
+        private final Map<UUID, Entry> entries = new HashMap<>();
+
+        synchronized void update(UUID uuid, int level, int exp) {
+            Entry previous = entries.get(uuid);
+
+            if (previous != null) {
+                if (previous.level == level && previous.exp == exp) {
+                    return;
+                }
+
+                ranking.remove(previous);
+            }
+
+            Entry entry = new Entry(uuid, level, exp);
+            entries.put(uuid, entry);
+            ranking.add(entry);
+        }
+
+        // Values from storage never replace newer values from updates
+        synchronized void seed(UUID uuid, int level, int exp) {
+            if (!entries.containsKey(uuid)) {
+                update(uuid, level, exp);
+            }
+        }
+
+        synchronized List<Entry> getTop(int offset, int limit) {
+            List<Entry> top = new ArrayList<>(limit);
+            int index = 0;
+
+            for (Entry entry : ranking) {
+                if (index++ < offset) {
+                    continue;
+                }
+
+                if (top.size() >= limit) {
+                    break;
+                }
+
+                top.add(entry);
+            }
+
+            return top;
+        }
+
+        synchronized Optional<Integer> getRank(UUID uuid) {
+            Entry entry = entries.get(uuid);
+
+            return entry != null ? Optional.of(ranking.headSet(entry).size() + 1) : Optional.empty();
+        }
+
+        synchronized int size() {
+            return ranking.size();
+        }
+    }
+
+    public static class Entry {
+        private final UUID uniqueId;
+        private final int level;
+        private final int exp;
+
+        Entry(UUID uniqueId, int level, int exp) {
+            this.uniqueId = uniqueId;
+            this.level = level;
+            this.exp = exp;
+        }
+
+        public UUID getUniqueId() {
+            return uniqueId;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public int getExp() {
+            return exp;
+        }
+    }
+}
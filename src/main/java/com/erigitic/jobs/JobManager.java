@@ -27,6 +27,7 @@ package com.erigitic.jobs;
 
 import com.erigitic.config.AccountManager;
 import com.erigitic.config.TEAccount;
+import com.erigitic.config.UserOption;
 import com.erigitic.main.TotalEconomy;
 import com.erigitic.sql.SqlManager;
 import com.erigitic.sql.SqlQuery;
@@ -34,27 +35,37 @@ import com.erigitic.util.MessageManager;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
 import ninja.leaping.configurate.loader.ConfigurationLoader;
 import org.slf4j.Logger;
-import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.tileentity.Sign;
 import org.spongepowered.api.block.tileentity.TileEntity;
 import org.spongepowered.api.block.trait.BlockTrait;
 import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.data.key.Keys;
 import org.spongepowered.api.data.manipulator.mutable.item.FishData;
 import org.spongepowered.api.data.manipulator.mutable.tileentity.SignData;
+import org.spongepowered.api.data.type.HandTypes;
 import org.spongepowered.api.entity.Entity;
+import org.spongepowered.api.entity.EntityType;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.event.Listener;
@@ -62,44 +73,51 @@ import org.spongepowered.api.event.action.FishingEvent;
 import org.spongepowered.api.event.block.ChangeBlockEvent;
 import org.spongepowered.api.event.block.InteractBlockEvent;
 import org.spongepowered.api.event.block.tileentity.ChangeSignEvent;
-import org.spongepowered.api.event.cause.Cause;
-import org.spongepowered.api.event.cause.EventContext;
-import org.spongepowered.api.event.cause.EventContextKeys;
 import org.spongepowered.api.event.cause.entity.damage.source.EntityDamageSource;
+import org.spongepowered.api.event.cause.entity.damage.source.IndirectEntityDamageSource;
 import org.spongepowered.api.event.entity.DestructEntityEvent;
+import org.spongepowered.api.item.enchantment.Enchantment;
+import org.spongepowered.api.item.enchantment.EnchantmentTypes;
 import org.spongepowered.api.item.inventory.ItemStack;
 import org.spongepowered.api.item.inventory.ItemStackSnapshot;
 import org.spongepowered.api.scheduler.Scheduler;
 import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.service.economy.Currency;
-import org.spongepowered.api.service.economy.transaction.ResultType;
-import org.spongepowered.api.service.economy.transaction.TransactionResult;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.action.TextActions;
 import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.text.format.TextStyles;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
 
 public class JobManager {
 
+    private static final LevelCurve DEFAULT_LEVEL_CURVE = new LevelCurve(100, 0);
+
     private TotalEconomy totalEconomy;
     private AccountManager accountManager;
     private MessageManager messageManager;
     private Logger logger;
     private SqlManager sqlManager;
-
+    private PlacedBlockTracker placedBlockTracker;
+    private JobNotificationAggregator notificationAggregator;
+    private JobSignRegistry jobSignRegistry;
+    private RewardRateLimiter rateLimiter;
+    private BoostManager boostManager;
+    private JobLeaderboard leaderboard;
 
     private File jobSetsFile;
     private ConfigurationLoader<CommentedConfigurationNode> jobSetsLoader;
-    private ConfigurationNode jobSetsConfig;
-    private Map<String, TEJobSet> jobSets;
 
     private File jobsFile;
     private ConfigurationLoader<CommentedConfigurationNode> jobsLoader;
-    private ConfigurationNode jobsConfig;
-    private Map<String, TEJob> jobsMap;
+
+    // Replaced as a whole on reload, never modified
+    private volatile JobRules rules = new JobRules(new HashMap<>(), new HashMap<>(), 0);
 
     private boolean databaseEnabled;
 
+
     public JobManager(TotalEconomy totalEconomy, AccountManager accountManager, MessageManager messageManager, Logger logger) {
         this.totalEconomy = totalEconomy;
         this.accountManager = accountManager;
@@ -112,8 +130,18 @@ public class JobManager {
             sqlManager = totalEconomy.getSqlManager();
         }
 
+        placedBlockTracker = new PlacedBlockTracker(totalEconomy, logger);
+        jobSignRegistry = new JobSignRegistry(totalEconomy, logger);
+        rateLimiter = new RewardRateLimiter(totalEconomy.getJobNode().getNode("ratelimit"));
+        boostManager = new BoostManager(totalEconomy, logger);
+        notificationAggregator = new JobNotificationAggregator(totalEconomy, messageManager, totalEconomy.getJobNode().getNode("notification-summary"));
+        notificationAggregator.start();
+
         setupConfig();
 
+        leaderboard = new JobLeaderboard(totalEconomy, accountManager, logger);
+        leaderboard.seed(rules.getJobs().keySet());
+
         if (totalEconomy.isJobSalaryEnabled()) {
             startSalaryTask();
         }
@@ -126,43 +154,11 @@ public class JobManager {
         Scheduler scheduler = totalEconomy.getGame().getScheduler();
         Task.Builder payTask = scheduler.createTaskBuilder();
 
-        payTask.execute(() -> {
-            if (totalEconomy.getGame().isServerAvailable()) {
-                for (Player player : totalEconomy.getServer().getOnlinePlayers()) {
-                    Optional<TEJob> optJob = getJob(getPlayerJob(player), true);
-
-                    if (!optJob.isPresent()) {
-                        player.sendMessage(Text.of(TextColors.RED, "[TE] Cannot pay your salary! Contact your administrator!"));
-
-                        return;
-                    }
-
-                    if (optJob.get().salaryEnabled()) {
-                        BigDecimal salary = optJob.get().getSalary();
-                        TEAccount playerAccount = (TEAccount) accountManager.getOrCreateAccount(player.getUniqueId()).get();
-
-                        EventContext eventContext = EventContext.builder()
-                                .add(EventContextKeys.PLAYER, player)
-                                .build();
-
-                        Cause cause = Cause.builder()
-                                .append(totalEconomy.getPluginContainer())
-                                .build(eventContext);
-
-                        TransactionResult result = playerAccount.deposit(totalEconomy.getDefaultCurrency(), salary, cause);
-
-                        if (result.getResult() == ResultType.SUCCESS) {
-                            Map<String, String> messageValues = new HashMap<>();
-                            messageValues.put("amount", totalEconomy.getDefaultCurrency().format(salary).toPlain());
-
-                            player.sendMessage(messageManager.getMessage("jobs.salary", messageValues));
-                        } else {
-                            player.sendMessage(Text.of(TextColors.RED, "[TE] Failed to pay your salary! You may want to contact your admin - TransactionResult: ", result.getResult().toString()));
-                        }
-                    }
-                }
-            }
-        }).delay(jobsConfig.getNode("salarydelay").getInt(), TimeUnit.SECONDS).interval(jobsConfig.getNode("salarydelay").getInt(), TimeUnit.SECONDS).name("Pay Day").submit(totalEconomy);
+        payTask.execute(new PayrollTask(totalEconomy, this, accountManager, messageManager))
+                .delay(rules.getSalaryDelay(), TimeUnit.SECONDS)
+                .interval(rules.getSalaryDelay(), TimeUnit.SECONDS)
+                .name("Pay Day")
+                .submit(totalEconomy);
     }
 
     /**
@@ -171,182 +167,230 @@ public class JobManager {
     public void setupConfig() {
         jobSetsFile = new File(totalEconomy.getConfigDir(), "jobsets.conf");
         jobSetsLoader = HoconConfigurationLoader.builder().setFile(jobSetsFile).build();
-        jobSets = new HashMap();
-        reloadJobSetConfig();
 
         jobsFile = new File(totalEconomy.getConfigDir(), "jobs.conf");
         jobsLoader = HoconConfigurationLoader.builder().setFile(jobsFile).build();
-        jobsMap = new HashMap();
-        reloadJobsConfig();
-    }
 
-    /**
-     * Reload the jobSet config.
-     */
-    public boolean reloadJobSetConfig() {
         try {
-            if (!jobSetsFile.exists()) {
-                totalEconomy.getPluginContainer().getAsset("jobsets.conf").get().copyToFile(jobSetsFile.toPath());
-            }
-
-            jobSetsConfig = jobSetsLoader.load();
-            ConfigurationNode sets = jobSetsConfig.getNode("sets");
-
-            sets.getChildrenMap().forEach((setName, setNode) -> {
-                if (setNode != null) {
-                    TEJobSet jobSet = new TEJobSet(setNode);
-
-                    jobSets.put((String) setName, jobSet);
-                }
-            });
-
-            return true;
+            rules = loadRules();
         } catch (IOException e) {
-            logger.warn("An error occurred while creating/loading the jobSets configuration file!");
-
-            return false;
+            logger.warn("An error occurred while creating/loading the jobs and jobSets configuration files!", e);
         }
     }
 
     /**
-     * Reloads the job configuration file. Can be used for initial creation of the configuration file
-     * or for simply reloading it.
+     * Parse jobsets.conf and jobs.conf into a new rule set. Creates the files from the defaults if they don't exist.
+     * Does not touch the active rules, so it can run off the main thread.
      *
-     * @return boolean Was the reload successful?
+     * @return JobRules The loaded jobs and job sets
+     * @throws IOException Error creating or loading one of the configuration files
      */
-    public boolean reloadJobsConfig() {
-        try {
-            if (!jobsFile.exists()) {
-                totalEconomy.getPluginContainer().getAsset("jobs.conf").get().copyToFile(jobsFile.toPath());
-            }
+    private JobRules loadRules() throws IOException {
+        if (!jobSetsFile.exists()) {
+            totalEconomy.getPluginContainer().getAsset("jobsets.conf").get().copyToFile(jobSetsFile.toPath());
+        }
+
+        if (!jobsFile.exists()) {
+            totalEconomy.getPluginContainer().getAsset("jobs.conf").get().copyToFile(jobsFile.toPath());
+        }
 
-            jobsConfig = jobsLoader.load();
-            ConfigurationNode jobsNode = jobsConfig.getNode("jobs");
+        ConfigurationNode jobSetsConfig = jobSetsLoader.load();
+        ConfigurationNode jobsConfig = jobsLoader.load();
+        Map<String, TEJobSet> jobSets = new HashMap<>();
+        Map<String, TEJob> jobs = new HashMap<>();
+
+        jobSetsConfig.getNode("sets").getChildrenMap().forEach((setName, setNode) -> {
+            if (setNode != null) {
+                try {
+                    jobSets.put((String) setName, new TEJobSet(setNode));
+                } catch (RuntimeException e) {
+                    logger.warn("Set " + setName + " is invalid and was not loaded!", e);
+                }
+            }
+        });
 
-            // Loop through each job node in the configuration file, create a TEJob object from it, and store in a HashMap
-            jobsNode.getChildrenMap().forEach((k, jobNode) -> {
-                if (jobNode != null) {
+        // Loop through each job node in the configuration file, create a TEJob object from it, and store in a HashMap
+        jobsConfig.getNode("jobs").getChildrenMap().forEach((jobName, jobNode) -> {
+            if (jobNode != null) {
+                try {
                     TEJob job = new TEJob(jobNode);
 
                     if (job.isValid()) {
-                        jobsMap.put(job.getName(), job);
+                        jobs.put(job.getName(), job);
                     }
+                } catch (RuntimeException e) {
+                    logger.warn("Job " + jobName + " is invalid and was not loaded!", e);
                 }
-            });
+            }
+        });
 
-            return true;
-        } catch (IOException e) {
-            logger.warn("An error occurred while creating/loading the jobs configuration file!");
+        jobs.values().forEach(job -> job.getSets().stream()
+                .filter(setName -> !jobSets.containsKey(setName))
+                .forEach(setName -> logger.warn("Job " + job.getName() + " has the nonexistent set \"" + setName + "\"")));
 
-            return false;
-        }
+        return new JobRules(jobs, jobSets, jobsConfig.getNode("salarydelay").getInt());
     }
 
     /**
-     * Reload all job configs (jobs + sets).
+     * Reload all job configs (jobs + sets). The files are parsed off the main thread and the new rules replace the
+     * current ones at once when parsing succeeded. The current rules stay active if it failed.
+     *
+     * @return CompletableFuture Completes with whether or not the reload was successful
+     */
+    public CompletableFuture<Boolean> reloadJobsAndSets() {
+        CompletableFuture<Boolean> reloadResult = new CompletableFuture<>();
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .async()
+                .execute(() -> {
+                    try {
+                        rules = loadRules();
+                        reloadResult.complete(true);
+                    } catch (IOException | RuntimeException e) {
+                        logger.warn("An error occurred while reloading the jobs and jobSets configuration files!", e);
+                        reloadResult.complete(false);
+                    }
+                })
+                .name("Total Economy - Job Reload")
+                .submit(totalEconomy);
+
+        return reloadResult;
+    }
+
+    /**
+     * Get the currently active jobs and job sets.
+     *
+     * @return JobRules The active rules
      */
-    public boolean reloadJobsAndSets() {
-        return reloadJobsConfig() && reloadJobSetConfig();
+    public JobRules getRules() {
+        return rules;
     }
 
     /**
-     * Add exp to player's current job.
+     * Add exp to player's current job. Any levels gained are applied in the same storage write, so a single large
+     * reward can grant several levels at once.
      *
      * @param player The player to give experience to
      * @param expAmount The amount of experience to add
      */
     public void addExp(Player player, int expAmount) {
         String jobName = getPlayerJob(player);
-        UUID playerUniqueId = player.getUniqueId();
         boolean jobNotifications = accountManager.getJobNotificationState(player);
 
-        Map<String, String> messageValues = new HashMap<>();
-        messageValues.put("job", titleize(jobName));
-        messageValues.put("exp", String.valueOf(expAmount));
-
-        if (databaseEnabled) {
-            int newExp = getJobExp(jobName, player) + expAmount;
+        int curLevel = getJobLevel(jobName, player);
+        int newExp = getJobExp(jobName, player) + expAmount;
+        int newLevel = getLevelCurve(jobName).getLevel(curLevel, newExp);
 
-            SqlQuery sqlQuery = SqlQuery.builder(sqlManager.dataSource)
-                    .update("experience")
-                    .set(jobName)
-                    .equals(String.valueOf(newExp))
-                    .where("uid")
-                    .equals(playerUniqueId.toString())
-                    .build();
-
-            if (sqlQuery.getRowsAffected() > 0) {
-                if (jobNotifications) {
-                    player.sendMessage(messageManager.getMessage("jobs.addexp", messageValues));
-                }
-            } else {
-                logger.warn("An error occurred while updating job experience in the database!");
-                player.sendMessage(Text.of(TextColors.RED, "[TE] Error adding experience! Consult an administrator!"));
-            }
-        } else {
-            ConfigurationNode accountConfig = accountManager.getAccountConfig();
-
-            int curExp = accountConfig.getNode(playerUniqueId.toString(), "jobstats", jobName, "exp").getInt();
-
-            accountConfig.getNode(playerUniqueId.toString(), "jobstats", jobName, "exp").setValue(curExp + expAmount);
+        if (saveJobProgress(player.getUniqueId(), jobName, newLevel, newExp, newLevel != curLevel)) {
+            Map<String, String> messageValues = new HashMap<>();
+            messageValues.put("job", titleize(jobName));
+            messageValues.put("exp", String.valueOf(expAmount));
+            messageValues.put("level", String.valueOf(newLevel));
 
             if (jobNotifications) {
-                player.sendMessage(messageManager.getMessage("jobs.addexp", messageValues));
+                if (notificationAggregator.isEnabled()) {
+                    notificationAggregator.addExp(player, jobName, expAmount);
+                } else {
+                    player.sendMessage(messageManager.getMessage(player, "jobs.addexp", messageValues));
+                }
             }
 
-            try {
-                accountManager.getConfigManager().save(accountConfig);
-            } catch (IOException e) {
-                logger.warn("An error occurred while saving the account configuration file!");
+            if (newLevel != curLevel) {
+                player.sendMessage(messageManager.getMessage(player, "jobs.levelup", messageValues));
             }
+        } else {
+            player.sendMessage(Text.of(TextColors.RED, "[TE] Error adding experience! Consult an administrator!"));
         }
     }
 
     /**
-     * Checks if the player has enough exp to level up. If they do they will gain a level and their current exp will be
-     * reset.
+     * Checks if the player has enough exp to level up. If they do they will gain as many levels as their exp allows.
      *
      * @param player player object
      */
     public void checkForLevel(Player player) {
-        UUID playerUniqueId = player.getUniqueId();
         String jobName = getPlayerJob(player);
-        int playerLevel = getJobLevel(jobName, player);
-        int playerCurExp = getJobExp(jobName, player);
-        int expToLevel = getExpToLevel(player);
-
-        if (playerCurExp >= expToLevel) {
-            playerLevel += 1;
+        int curLevel = getJobLevel(jobName, player);
+        int curExp = getJobExp(jobName, player);
+        int newLevel = getLevelCurve(jobName).getLevel(curLevel, curExp);
 
+        if (newLevel != curLevel && saveJobProgress(player.getUniqueId(), jobName, newLevel, curExp, true)) {
             Map<String, String> messageValues = new HashMap<>();
             messageValues.put("job", titleize(jobName));
-            messageValues.put("level", String.valueOf(playerLevel));
+            messageValues.put("level", String.valueOf(newLevel));
 
-            if (databaseEnabled) {
-                SqlQuery.builder(sqlManager.dataSource)
-                        .update("levels")
-                        .set(jobName)
-                        .equals(String.valueOf(playerLevel))
-                        .where("uid")
+            player.sendMessage(messageManager.getMessage(player, "jobs.levelup", messageValues));
+        }
+    }
+
+    /**
+     * Store a player's exp, and level if it changed, for a job in a single write.
+     *
+     * @param playerUniqueId The unique id of the player
+     * @param jobName The name of the job
+     * @param level The level to store
+     * @param exp The exp to store
+     * @param levelChanged Whether or not the level has to be written as well
+     * @return boolean If the progress was saved
+     */
+    private boolean saveJobProgress(UUID playerUniqueId, String jobName, int level, int exp, boolean levelChanged) {
+        if (databaseEnabled) {
+            SqlQuery sqlQuery;
+
+            if (levelChanged) {
+                sqlQuery = SqlQuery.builder(sqlManager.dataSource)
+                        .update("experience, levels")
+                        .set("experience." + jobName)
+                        .equals(String.valueOf(exp))
+                        .andSet("levels." + jobName)
+                        .equals(String.valueOf(level))
+                        .where("experience.uid")
+                        .equals(playerUniqueId.toString())
+                        .and("levels.uid")
                         .equals(playerUniqueId.toString())
                         .build();
-
-                SqlQuery.builder(sqlManager.dataSource)
+            } else {
+                sqlQuery = SqlQuery.builder(sqlManager.dataSource)
                         .update("experience")
                         .set(jobName)
-                        .equals(String.valueOf(playerCurExp))
+                        .equals(String.valueOf(exp))
                         .where("uid")
                         .equals(playerUniqueId.toString())
                         .build();
-            } else {
-                ConfigurationNode accountConfig = accountManager.getAccountConfig();
+            }
+
+            if (sqlQuery.getRowsAffected() <= 0) {
+                logger.warn("An error occurred while updating job experience in the database!");
 
-                accountConfig.getNode(playerUniqueId.toString(), "jobstats", jobName, "level").setValue(playerLevel);
-                accountConfig.getNode(playerUniqueId.toString(), "jobstats", jobName, "exp").setValue(playerCurExp);
+                return false;
+            }
+        } else {
+            ConfigurationNode jobNode = accountManager.getAccountConfig().getNode(playerUniqueId.toString(), "jobstats", jobName);
+
+            jobNode.getNode("exp").setValue(exp);
+
+            if (levelChanged) {
+                jobNode.getNode("level").setValue(level);
             }
 
-            player.sendMessage(messageManager.getMessage("jobs.levelup", messageValues));
+            accountManager.requestConfigurationSave();
+        }
+
+        if (!jobName.equals("unemployed")) {
+            leaderboard.update(jobName, playerUniqueId, level, exp);
         }
+
+        return true;
+    }
+
+    /**
+     * Get the level curve of a job, falling back to the curve of the unemployed job or the default curve.
+     *
+     * @param jobName The name of the job
+     * @return LevelCurve The level curve
+     */
+    private LevelCurve getLevelCurve(String jobName) {
+        return getJob(jobName, true).map(TEJob::getLevelCurve).orElse(DEFAULT_LEVEL_CURVE);
     }
 
     /**
@@ -356,11 +400,7 @@ public class JobManager {
      * @return boolean if the job exists or not
      */
     public boolean jobExists(String jobName) {
-        if (jobsConfig.getNode("jobs", jobName.toLowerCase()).getValue() != null) {
-            return true;
-        }
-
-        return false;
+        return rules.getJobs().containsKey(jobName.toLowerCase());
     }
 
     /**
@@ -394,12 +434,18 @@ public class JobManager {
      * @param amount The amount rewarded by the job action
      */
     private void notifyPlayerOfJobReward(Player player, BigDecimal amount, Currency currency) {
+        if (notificationAggregator.isEnabled()) {
+            notificationAggregator.addReward(player, amount, currency);
+
+            return;
+        }
+
         Text amountText = currency.format(amount, currency.getDefaultFractionDigits());
 
         Map<String, String> messageValues = new HashMap<>();
         messageValues.put("amount", amountText.toPlain());
 
-        player.sendMessage(messageManager.getMessage("jobs.notify", messageValues));
+        player.sendMessage(messageManager.getMessage(player, "jobs.notify", messageValues));
     }
 
     /**
@@ -451,13 +497,48 @@ public class JobManager {
 
     }
 
+    /**
+     * Forget the per player state kept for a player who left the server.
+     *
+     * @param uuid {@link UUID} of the player
+     */
+    public void unloadPlayer(UUID uuid) {
+        notificationAggregator.remove(uuid);
+        rateLimiter.remove(uuid);
+    }
+
+    public JobLeaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    public BoostManager getBoostManager() {
+        return boostManager;
+    }
+
+    public RewardRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public JobSignRegistry getJobSignRegistry() {
+        return jobSignRegistry;
+    }
+
+    /**
+     * Get the tracker that records player placed blocks.
+     *
+     * @return PlacedBlockTracker The placed block tracker
+     */
+    public PlacedBlockTracker getPlacedBlockTracker() {
+        return placedBlockTracker;
+    }
+
     /**
      * Get a job set by name.
      *
      * @return Optional
      */
     public Optional<TEJobSet> getJobSet(String name) {
-        return Optional.ofNullable(jobSets.getOrDefault(name, null));
+        return rules.getJobSet(name);
     }
 
     /**
@@ -485,6 +566,56 @@ public class JobManager {
         }
     }
 
+    /**
+     * Get the current job of many users at once. In database mode this is a single query, so it is safe to call off the
+     * main thread.
+     *
+     * @param uuids The unique ids of the users
+     * @return Map The job of each user, users without an account are left out
+     */
+    public Map<UUID, String> getPlayerJobs(Collection<UUID> uuids) {
+        Map<UUID, String> jobs = new HashMap<>();
+
+        if (uuids.isEmpty()) {
+            return jobs;
+        }
+
+        if (databaseEnabled) {
+            String placeholders = String.join(",", Collections.nCopies(uuids.size(), "?"));
+
+            try (Connection conn = sqlManager.dataSource.getConnection();
+                 PreparedStatement statement = conn.prepareStatement("SELECT uid, job FROM accounts WHERE uid IN (" + placeholders + ")")) {
+                int i = 1;
+
+                for (UUID uuid : uuids) {
+                    statement.setString(i++, uuid.toString());
+                }
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        String job = resultSet.getString(2);
+
+                        jobs.put(UUID.fromString(resultSet.getString(1)), job != null ? job.toLowerCase() : "unemployed");
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warn("An error occurred while retrieving the jobs of multiple players!", e);
+            }
+        } else {
+            ConfigurationNode accountConfig = accountManager.getAccountConfig();
+
+            for (UUID uuid : uuids) {
+                ConfigurationNode accountNode = accountConfig.getNode(uuid.toString());
+
+                if (!accountNode.isVirtual()) {
+                    jobs.put(uuid, accountNode.getNode("job").getString("unemployed").toLowerCase());
+                }
+            }
+        }
+
+        return jobs;
+    }
+
     /**
      * Get a TEJob object by a job name.
      *
@@ -493,13 +624,7 @@ public class JobManager {
      * @return {@link TEJob} the job; {@code null} for not found
      */
     public Optional<TEJob> getJob(String jobName, boolean tryUnemployed) {
-        TEJob job = jobsMap.getOrDefault(jobName, null);
-
-        if (job != null || !tryUnemployed) {
-            return Optional.ofNullable(job);
-        }
-
-        return getJob("unemployed", false);
+        return rules.getJob(jobName, tryUnemployed);
     }
 
     /**
@@ -578,11 +703,7 @@ public class JobManager {
         String jobName = getPlayerJob(user);
         int playerLevel = getJobLevel(jobName, user);
 
-        int nextLevel = playerLevel + 1;
-        int expToLevel = (int) ((Math.pow(nextLevel, 2) + nextLevel) / 2) * 100 - (nextLevel * 100);
-
-        // TODO: Custom algorithm for this, set from config
-        return expToLevel;
+        return getLevelCurve(jobName).getExpToLevel(playerLevel);
     }
 
     /**
@@ -593,7 +714,7 @@ public class JobManager {
     public Text getJobList() {
         List<Text> texts = new ArrayList<>();
 
-        jobsMap.forEach((jobName, jobObject) -> texts.add(Text.of(
+        rules.getJobs().forEach((jobName, jobObject) -> texts.add(Text.of(
                 TextActions.runCommand("/job set " + jobName),
                 TextActions.showText(Text.of("Click to change job")),
                 jobName))
@@ -615,7 +736,7 @@ public class JobManager {
         String lineOnePlain = lineOne.toPlain();
         String lineTwoPlain = lineTwo.toPlain();
 
-        if (lineOnePlain.equals("[TEJobs]")) {
+        if (lineOnePlain.equals(JobSignRegistry.SIGN_HEADER)) {
             lineOne = lineOne.toBuilder().style(TextStyles.BOLD).color(TextColors.DARK_BLUE).build();
 
             String jobName = titleize(lineTwoPlain);
@@ -629,6 +750,10 @@ public class JobManager {
             data.set(data.lines().set(1, lineTwo));
             data.set(data.lines().set(2, Text.of()));
             data.set(data.lines().set(3, Text.of()));
+
+            jobSignRegistry.register(event.getTargetTile().getLocation(), lineTwoPlain);
+        } else {
+            jobSignRegistry.unregister(event.getTargetTile().getLocation());
         }
     }
 
@@ -640,66 +765,59 @@ public class JobManager {
      */
     @Listener
     public void onSignInteract(InteractBlockEvent.Secondary event) {
-        if (event.getCause().first(Player.class).isPresent()) {
+        Optional<Location<World>> locationOpt = event.getTargetBlock().getLocation();
+
+        if (!locationOpt.isPresent()) {
+            return;
+        }
+
+        Optional<String> jobNameOpt = jobSignRegistry.getOrRegisterJob(locationOpt.get(), event.getTargetBlock().getState().getType());
+
+        if (jobNameOpt.isPresent() && event.getCause().first(Player.class).isPresent()) {
             Player player = event.getCause().first(Player.class).get();
+            Optional<TileEntity> tileEntityOpt = locationOpt.get().getTileEntity();
 
-            if (event.getTargetBlock().getLocation().isPresent()) {
-                Optional<TileEntity> tileEntityOpt = event.getTargetBlock().getLocation().get().getTileEntity();
-
-                if (tileEntityOpt.isPresent()) {
-                    TileEntity tileEntity = tileEntityOpt.get();
-
-                    if (tileEntity instanceof Sign) {
-                        Sign sign = (Sign) tileEntity;
-                        Optional<SignData> data = sign.getOrCreate(SignData.class);
-
-                        if (data.isPresent()) {
-                            SignData signData = data.get();
-                            Text lineOneText = signData.lines().get(0);
-                            Text lineTwoText = signData.lines().get(1);
-                            String lineOne = lineOneText.toPlain();
-                            String jobName = lineTwoText.toPlain().toLowerCase();
-
-                            if (lineOne.equals("[TEJobs]")) {
-                                Map<String, String> messageValues = new HashMap<>();
-                                messageValues.put("job", titleize(jobName));
-                                
-                                Optional<TEJob> optJob = getJob(jobName, false);
-
-                                if (optJob.isPresent()) {
-                                    Optional<JobBasedRequirement> optRequire = optJob.get().getRequirement();
-
-                                    if (optRequire.isPresent()) {
-                                        String reqJob = optRequire.get().getRequiredJob();
-                                        Integer reqLevel = optRequire.get().getRequiredJobLevel();
-                                        String reqPerm = optRequire.get().getRequiredPermission();
-
-                                        int currentReqJobLevel = getJobLevel(reqJob, player);
-                                        if (reqJob != null && reqLevel > currentReqJobLevel) {
-                                            messageValues.put("job", titleize(reqJob));
-                                            messageValues.put("level", reqLevel.toString());
-                                            player.sendMessage(messageManager.getMessage("jobs.unmet.level", messageValues));
-                                            return;
-                                        }
-
-                                        if (reqPerm != null && !player.hasPermission(reqPerm)) {
-                                            player.sendMessage(messageManager.getMessage("jobs.unmet.permission", messageValues));
-                                            return;
-                                        }
-                                    }
-
-                                    if (setJob(player, jobName)) {
-                                        player.sendMessage(messageManager.getMessage("jobs.sign", messageValues));
-                                    } else {
-                                        player.sendMessage(messageManager.getMessage("jobs.setfailed"));
-                                    }
-                                } else {
-                                    player.sendMessage(messageManager.getMessage("jobs.notfound"));
-                                }
-                            }
-                        }
+            // The sign was removed without a break event (ex. world edits)
+            if (!tileEntityOpt.isPresent() || !(tileEntityOpt.get() instanceof Sign)) {
+                jobSignRegistry.unregister(locationOpt.get());
+                return;
+            }
+
+            String jobName = jobNameOpt.get();
+            Map<String, String> messageValues = new HashMap<>();
+            messageValues.put("job", titleize(jobName));
+
+            Optional<TEJob> optJob = getJob(jobName, false);
+
+            if (optJob.isPresent()) {
+                Optional<JobBasedRequirement> optRequire = optJob.get().getRequirement();
+
+                if (optRequire.isPresent()) {
+                    String reqJob = optRequire.get().getRequiredJob();
+                    Integer reqLevel = optRequire.get().getRequiredJobLevel();
+                    String reqPerm = optRequire.get().getRequiredPermission();
+
+                    int currentReqJobLevel = getJobLevel(reqJob, player);
+                    if (reqJob != null && reqLevel > currentReqJobLevel) {
+                        messageValues.put("job", titleize(reqJob));
+                        messageValues.put("level", reqLevel.toString());
+                        player.sendMessage(messageManager.getMessage(player, "jobs.unmet.level", messageValues));
+                        return;
+                    }
+
+                    if (reqPerm != null && !player.hasPermission(reqPerm)) {
+                        player.sendMessage(messageManager.getMessage(player, "jobs.unmet.permission", messageValues));
+                        return;
                     }
                 }
+
+                if (setJob(player, jobName)) {
+                    player.sendMessage(messageManager.getMessage(player, "jobs.sign", messageValues));
+                } else {
+                    player.sendMessage(messageManager.getMessage(player, "jobs.setfailed"));
+                }
+            } else {
+                player.sendMessage(messageManager.getMessage(player, "jobs.notfound"));
             }
         }
     }
@@ -717,15 +835,17 @@ public class JobManager {
             Player player = event.getCause().first(Player.class).get();
             UUID playerUniqueId = player.getUniqueId();
 
+            JobRules rules = this.rules;
             String playerJob = getPlayerJob(player);
-            Optional<TEJob> optPlayerJob = getJob(playerJob, true);
+            Optional<TEJob> optPlayerJob = rules.getJob(playerJob, true);
 
-            BlockState state = event.getTransactions().get(0).getOriginal().getState();
+            BlockSnapshot blockSnapshot = event.getTransactions().get(0).getOriginal();
+            BlockState state = blockSnapshot.getState();
             String blockName = state.getType().getName();
-            Optional<UUID> blockCreator = event.getTransactions().get(0).getOriginal().getCreator();
+            boolean playerPlaced = blockSnapshot.getLocation().map(placedBlockTracker::isPlayerPlaced).orElse(false);
 
             // Enable admins to determine block information by displaying it to them - WHEN they have the flag enabled
-            if (accountManager.getUserOption("totaleconomy:block-break-info", player).orElse("0").equals("1")) {
+            if (accountManager.isUserOptionEnabled(player, UserOption.BLOCK_BREAK_INFO)) {
                 List<BlockTrait<?>> traits = new ArrayList<>(state.getTraits());
                 int count = traits.size();
                 List<Text> traitTexts = new ArrayList<>(count);
@@ -745,7 +865,7 @@ public class JobManager {
                 List<String> sets = optPlayerJob.get().getSets();
 
                 for (String s : sets) {
-                    Optional<TEJobSet> optSet = getJobSet(s);
+                    Optional<TEJobSet> optSet = rules.getJobSet(s);
                     if (!optSet.isPresent()) {
                         logger.warn("Job " + playerJob + " has the nonexistent set \"" + s + "\"");
                         continue;
@@ -756,7 +876,7 @@ public class JobManager {
                         continue;
                     }
 
-                    Optional<TEActionReward> currentReward = action.get().evaluateBreak(logger, state, blockCreator.orElse(null));
+                    Optional<TEActionReward> currentReward = action.get().evaluateBreak(logger, state, playerPlaced);
                     if (!reward.isPresent()) {
                         reward = currentReward;
                         continue;
@@ -767,12 +887,12 @@ public class JobManager {
                     }
 
                     // Use the one giving higher exp in case of duplicates
-                    if (currentReward.get().getExpReward() > reward.get().getExpReward()) {
-                        reward = currentReward;
-                    }
+                    reward = Optional.of(preferReward(player, playerJob, reward.get(), currentReward.get()));
                 }
 
-                if (reward.isPresent()) {
+                if (reward.isPresent() && rateLimiter.tryAcquire(playerUniqueId, "break")) {
+                    reward = Optional.of(resolveReward(player, playerJob, "break", reward.get()));
+
                     BigDecimal payAmount = new BigDecimal(reward.get().getMoneyReward());
                     Currency currency = totalEconomy.getDefaultCurrency();
 
@@ -793,7 +913,6 @@ public class JobManager {
 
                     int expAmount = reward.get().getExpReward();
                     addExp(player, expAmount);
-                    checkForLevel(player);
                 }
             }
         }
@@ -812,14 +931,15 @@ public class JobManager {
             Player player = event.getCause().first(Player.class).get();
             UUID playerUniqueId = player.getUniqueId();
 
+            JobRules rules = this.rules;
             String playerJob = getPlayerJob(player);
-            Optional<TEJob> optPlayerJob = getJob(playerJob, true);
+            Optional<TEJob> optPlayerJob = rules.getJob(playerJob, true);
 
             BlockState state = event.getTransactions().get(0).getFinal().getState();
             String blockName = state.getType().getName();
 
             // Enable admins to determine block information by displaying it to them - WHEN they have the flag enabled
-            if (accountManager.getUserOption("totaleconomy:block-place-info", player).orElse("0").equals("1")) {
+            if (accountManager.isUserOptionEnabled(player, UserOption.BLOCK_PLACE_INFO)) {
                 List<BlockTrait<?>> traits = new ArrayList<>(state.getTraits());
                 int count = traits.size();
                 List<Text> traitTexts = new ArrayList<>(count);
@@ -839,7 +959,7 @@ public class JobManager {
                 List<String> sets = optPlayerJob.get().getSets();
 
                 for (String s : sets) {
-                    Optional<TEJobSet> optSet = getJobSet(s);
+                    Optional<TEJobSet> optSet = rules.getJobSet(s);
                     if (!optSet.isPresent()) {
                         logger.warn("Job " + playerJob + " has the nonexistent set \"" + s + "\"");
                         continue;
@@ -861,12 +981,12 @@ public class JobManager {
                     }
 
                     // Use the one giving higher exp in case of duplicates
-                    if (currentReward.get().getExpReward() > reward.get().getExpReward()) {
-                        reward = currentReward;
-                    }
+                    reward = Optional.of(preferReward(player, playerJob, reward.get(), currentReward.get()));
                 }
 
-                if (reward.isPresent()) {
+                if (reward.isPresent() && rateLimiter.tryAcquire(playerUniqueId, "place")) {
+                    reward = Optional.of(resolveReward(player, playerJob, "place", reward.get()));
+
                     boolean notify = getNotificationState(playerUniqueId);
                     BigDecimal payAmount = new BigDecimal(reward.get().getMoneyReward());
                     Currency currency = totalEconomy.getDefaultCurrency();
@@ -887,8 +1007,6 @@ public class JobManager {
 
                     int expAmount = reward.get().getExpReward();
                     addExp(player, expAmount);
-
-                    checkForLevel(player);
                 }
             }
         }
@@ -906,65 +1024,33 @@ public class JobManager {
         Optional<EntityDamageSource> optDamageSource = event.getCause().first(EntityDamageSource.class);
 
         if (optDamageSource.isPresent()) {
-            EntityDamageSource damageSource = optDamageSource.get();
-            Entity killer = damageSource.getSource();
-            Entity victim = event.getTargetEntity();
-
-            if (!(killer instanceof Player)) {
-                // If a projectile was shot to kill an entity, this will grab the player who shot it
-                Optional<UUID> damageCreator = damageSource.getSource().getCreator();
+            Optional<Player> playerOpt = getKillingPlayer(optDamageSource.get());
 
-                if (damageCreator.isPresent()) {
-                    killer = Sponge.getServer().getPlayer(damageCreator.get()).get();
-                }
-            }
-
-            if (killer instanceof Player) {
-                Player player = (Player) killer;
+            if (playerOpt.isPresent()) {
+                Player player = playerOpt.get();
                 UUID playerUniqueId = player.getUniqueId();
-                String victimName = victim.getType().getName();
+                EntityType victimType = event.getTargetEntity().getType();
 
+                JobRules rules = this.rules;
                 String playerJob = getPlayerJob(player);
-                Optional<TEJob> optPlayerJob = getJob(playerJob, true);
+                Optional<TEJob> optPlayerJob = rules.getJob(playerJob, true);
 
                 // Enable admins to determine victim information by displaying it to them - WHEN they have the flag enabled
-                if (accountManager.getUserOption("totaleconomy:entity-kill-info", player).orElse("0").equals("1")) {
-                    player.sendMessage(Text.of("Victim-Name: ", victimName));
+                if (accountManager.isUserOptionEnabled(player, UserOption.ENTITY_KILL_INFO)) {
+                    player.sendMessage(Text.of("Victim-Name: ", victimType.getName(), " Victim-ID: ", victimType.getId()));
                 }
 
                 if (optPlayerJob.isPresent()) {
                     Optional<TEActionReward> reward = Optional.empty();
-                    List<String> sets = optPlayerJob.get().getSets();
-
-                    for (String s : sets) {
-                        Optional<TEJobSet> optSet = getJobSet(s);
-                        if (!optSet.isPresent()) {
-                            logger.warn("Job " + playerJob + " has the nonexistent set \"" + s + "\"");
-                            continue;
-                        }
-
-                        Optional<TEAction> action = optSet.get().getActionFor("kill", victimName);
-                        if (!action.isPresent()) {
-                            continue;
-                        }
-
-                        Optional<TEActionReward> currentReward = action.get().getReward();
-                        if (!reward.isPresent()) {
-                            reward = currentReward;
-                            continue;
-                        }
-
-                        if (!currentReward.isPresent()) {
-                            continue;
-                        }
 
+                    for (TEActionReward killReward : rules.getKillRewards(optPlayerJob.get().getName(), victimType)) {
                         // Use the one giving higher exp in case of duplicates
-                        if (currentReward.get().getExpReward() > reward.get().getExpReward()) {
-                            reward = currentReward;
-                        }
+                        reward = Optional.of(reward.isPresent() ? preferReward(player, playerJob, reward.get(), killReward) : killReward);
                     }
 
-                    if (reward.isPresent()) {
+                    if (reward.isPresent() && rateLimiter.tryAcquire(playerUniqueId, "kill")) {
+                        reward = Optional.of(resolveReward(player, playerJob, "kill", reward.get()));
+
                         boolean notify = getNotificationState(playerUniqueId);
                         BigDecimal payAmount = new BigDecimal(reward.get().getMoneyReward());
                         Currency currency = totalEconomy.getDefaultCurrency();
@@ -985,14 +1071,116 @@ public class JobManager {
 
                         int expAmount = reward.get().getExpReward();
                         addExp(player, expAmount);
-
-                        checkForLevel(player);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Evaluate the formulas of a reward for a player and apply the active boosts.
+     *
+     * @param player The rewarded player
+     * @param jobName The job of the player
+     * @param action The action type (ex. break, kill)
+     * @param reward The reward
+     * @return TEActionReward The reward with fixed values
+     */
+    private TEActionReward resolveReward(Player player, String jobName, String action, TEActionReward reward) {
+        double multiplier = boostManager.getMultiplier(jobName, action);
+        TEActionReward evaluatedReward = evaluateReward(player, jobName, reward);
+
+        return multiplier == 1 ? evaluatedReward : evaluatedReward.multiply(multiplier);
+    }
+
+    /**
+     * Pick one of two rewards for the same action, the one giving more exp wins and the first one on a tie. Formula
+     * rewards are evaluated for the player before they are compared.
+     *
+     * @return TEActionReward The winning reward, evaluated if it has formulas
+     */
+    private TEActionReward preferReward(Player player, String jobName, TEActionReward reward, TEActionReward candidate) {
+        TEActionReward evaluatedReward = evaluateReward(player, jobName, reward);
+        TEActionReward evaluatedCandidate = evaluateReward(player, jobName, candidate);
+
+        return evaluatedCandidate.getExpReward() > evaluatedReward.getExpReward() ? evaluatedCandidate : evaluatedReward;
+    }
+
+    /**
+     * Evaluate the formulas of a reward for a player. Only the variables used by the formulas are determined.
+     *
+     * @return TEActionReward The reward with fixed values, the reward itself if it has no formulas
+     */
+    private TEActionReward evaluateReward(Player player, String jobName, TEActionReward reward) {
+        if (!reward.isDynamic()) {
+            return reward;
+        }
+
+        RewardFormula.Context context = new RewardFormula.Context();
+
+        if (reward.uses(RewardFormula.Variable.LEVEL)) {
+            context.set(RewardFormula.Variable.LEVEL, getJobLevel(jobName, player));
+        }
+
+        if (reward.uses(RewardFormula.Variable.HOUR)) {
+            // Time 0 is 6 in the morning
+            long time = player.getWorld().getProperties().getWorldTime() % 24000;
+            context.set(RewardFormula.Variable.HOUR, (time / 1000 + 6) % 24);
+        }
+
+        if (reward.uses(RewardFormula.Variable.FORTUNE) || reward.uses(RewardFormula.Variable.EFFICIENCY)
+                || reward.uses(RewardFormula.Variable.LOOTING) || reward.uses(RewardFormula.Variable.SILKTOUCH)) {
+            List<Enchantment> enchantments = player.getItemInHand(HandTypes.MAIN_HAND)
+                    .flatMap(itemStack -> itemStack.get(Keys.ITEM_ENCHANTMENTS))
+                    .orElse(Collections.emptyList());
+
+            for (Enchantment enchantment : enchantments) {
+                if (enchantment.getType().equals(EnchantmentTypes.FORTUNE)) {
+                    context.set(RewardFormula.Variable.FORTUNE, enchantment.getLevel());
+                } else if (enchantment.getType().equals(EnchantmentTypes.EFFICIENCY)) {
+                    context.set(RewardFormula.Variable.EFFICIENCY, enchantment.getLevel());
+                } else if (enchantment.getType().equals(EnchantmentTypes.LOOTING)) {
+                    context.set(RewardFormula.Variable.LOOTING, enchantment.getLevel());
+                } else if (enchantment.getType().equals(EnchantmentTypes.SILK_TOUCH)) {
+                    context.set(RewardFormula.Variable.SILKTOUCH, enchantment.getLevel());
+                }
+            }
+        }
+
+        return reward.evaluate(context);
+    }
+
+    /**
+     * Get the player responsible for a kill. For projectiles this is the online player who shot it.
+     *
+     * @param damageSource The damage source of the kill
+     * @return Optional The player, empty if the kill wasn't done by a player who is online
+     */
+    private Optional<Player> getKillingPlayer(EntityDamageSource damageSource) {
+        Entity killer = damageSource.getSource();
+
+        if (killer instanceof Player) {
+            return Optional.of((Player) killer);
+        }
+
+        if (damageSource instanceof IndirectEntityDamageSource) {
+            Entity indirectSource = ((IndirectEntityDamageSource) damageSource).getIndirectSource();
+
+            if (indirectSource instanceof Player) {
+                return Optional.of((Player) indirectSource);
+            }
+        }
+
+        // If a projectile was shot to kill an entity, this will grab the player who shot it
+        Optional<UUID> damageCreator = killer.getCreator();
+
+        if (damageCreator.isPresent()) {
+            return totalEconomy.getServer().getPlayer(damageCreator.get());
+        }
+
+        return Optional.empty();
+    }
+
     /**
      * Used for the catch option in jobs. Will check if the job has the catch node and if it does it will check if the
      * item that was caught is present in the config of the player's job. If it is, it will grab the job exp reward as
@@ -1013,8 +1201,9 @@ public class JobManager {
             Player player = event.getCause().first(Player.class).get();
             UUID playerUniqueId = player.getUniqueId();
 
+            JobRules rules = this.rules;
             String playerJob = getPlayerJob(player);
-            Optional<TEJob> optPlayerJob = getJob(playerJob, true);
+            Optional<TEJob> optPlayerJob = rules.getJob(playerJob, true);
 
             if (optPlayerJob.isPresent()) {
                 if (itemStack.get(FishData.class).isPresent()) {
@@ -1022,7 +1211,7 @@ public class JobManager {
                     String fishName = fishData.type().get().getName();
 
                     // Enable admins to determine fish information by displaying it to them - WHEN they have the flag enabled
-                    if (accountManager.getUserOption("totaleconomy:entity-fish-info", player).orElse("0").equals("1")) {
+                    if (accountManager.isUserOptionEnabled(player, UserOption.ENTITY_FISH_INFO)) {
                         player.sendMessage(Text.of("Fish-Name: ", fishName));
                     }
 
@@ -1030,7 +1219,7 @@ public class JobManager {
                     List<String> sets = optPlayerJob.get().getSets();
 
                     for (String s : sets) {
-                        Optional<TEJobSet> optSet = getJobSet(s);
+                        Optional<TEJobSet> optSet = rules.getJobSet(s);
 
                         if (!optSet.isPresent()) {
                             logger.warn("Job " + playerJob + " has the nonexistent set \"" + s + "\"");
@@ -1053,12 +1242,12 @@ public class JobManager {
                         }
 
                         // Use the one giving higher exp in case of duplicates
-                        if (currentReward.get().getExpReward() > reward.get().getExpReward()) {
-                            reward = currentReward;
-                        }
+                        reward = Optional.of(preferReward(player, playerJob, reward.get(), currentReward.get()));
                     }
 
-                    if (reward.isPresent()) {
+                    if (reward.isPresent() && rateLimiter.tryAcquire(playerUniqueId, "catch")) {
+                        reward = Optional.of(resolveReward(player, playerJob, "catch", reward.get()));
+
                         boolean notify = getNotificationState(playerUniqueId);
                         BigDecimal payAmount = new BigDecimal(reward.get().getMoneyReward());
                         Currency currency = totalEconomy.getDefaultCurrency();
@@ -1079,8 +1268,6 @@ public class JobManager {
 
                         int expAmount = reward.get().getExpReward();
                         addExp(player, expAmount);
-
-                        checkForLevel(player);
                     }
                 }
             }
@@ -0,0 +1,177 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.util.MessageManager;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.service.economy.Currency;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.chat.ChatType;
+import org.spongepowered.api.text.chat.ChatTypes;
+
+/**
+ * Collects the money and exp rewarded by job actions per player and sends a single summary per interval instead of
+ * a message for every action. Only touched from the main thread.
+ */
+public class JobNotificationAggregator implements Runnable {
+
+    private final TotalEconomy totalEconomy;
+    private final MessageManager messageManager;
+
+    private final boolean enabled;
+    private final int interval;
+    private final ChatType chatType;
+
+    private final Map<UUID, Summary> summaries = new HashMap<>();
+
+    public JobNotificationAggregator(TotalEconomy totalEconomy, MessageManager messageManager, ConfigurationNode summaryNode) {
+        this.totalEconomy = totalEconomy;
+        this.messageManager = messageManager;
+
+        // Configs from before summaries existed keep their per-action messages
+        enabled = summaryNode.getNode("enable").getBoolean(false);
+        interval = Math.max(1, summaryNode.getNode("interval").getInt(3));
+        chatType = summaryNode.getNode("type").getString("actionbar").equalsIgnoreCase("chat") ? ChatTypes.CHAT : ChatTypes.ACTION_BAR;
+    }
+
+    /**
+     * Start the task that sends out the collected summaries.
+     */
+    public void start() {
+        if (enabled) {
+            totalEconomy.getGame().getScheduler().createTaskBuilder()
+                    .execute(this)
+                    .delay(interval, TimeUnit.SECONDS)
+                    .interval(interval, TimeUnit.SECONDS)
+                    .name("Job Notification Summary")
+                    .submit(totalEconomy);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Add money rewarded to a player to their next summary.
+     *
+     * @param player The rewarded player
+     * @param amount The amount rewarded
+     * @param currency The currency of the reward
+     */
+    public void addReward(Player player, BigDecimal amount, Currency currency) {
+        Summary summary = getSummary(player);
+
+        summary.amounts.merge(currency, amount, BigDecimal::add);
+    }
+
+    /**
+     * Add exp gained by a player to their next summary.
+     *
+     * @param player The player
+     * @param jobName The job the exp was gained in
+     * @param exp The amount of exp gained
+     */
+    public void addExp(Player player, String jobName, int exp) {
+        Summary summary = getSummary(player);
+
+        summary.exp += exp;
+        summary.jobName = jobName;
+    }
+
+    /**
+     * Forget a player's pending summary, for example when they leave the server.
+     *
+     * @param uuid {@link UUID} of the player
+     */
+    public void remove(UUID uuid) {
+        summaries.remove(uuid);
+    }
+
+    @Override
+    public void run() {
+        Iterator<Map.Entry<UUID, Summary>> iterator = summaries.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Summary> entry = iterator.next();
+            Optional<Player> playerOpt = totalEconomy.getServer().getPlayer(entry.getKey());
+
+            iterator.remove();
+
+            if (playerOpt.isPresent()) {
+                playerOpt.get().sendMessage(chatType, buildMessage(playerOpt.get(), entry.getValue()));
+            }
+        }
+    }
+
+    private Summary getSummary(Player player) {
+        Summary summary = summaries.get(player.getUniqueId());
+
+        if (summary == null) {
+            summary = new Summary();
+            summaries.put(player.getUniqueId(), summary);
+        }
+
+        return summary;
+    }
+
+    private Text buildMessage(Player player, Summary summary) {
+        List<String> amounts = new ArrayList<>();
+
+        // Rewards in different currencies are listed one after another, in the order they were first rewarded
+        summary.amounts.forEach((currency, amount) -> amounts.add(currency.format(amount, currency.getDefaultFractionDigits()).toPlain()));
+
+        if (amounts.isEmpty()) {
+            Currency defaultCurrency = totalEconomy.getDefaultCurrency();
+            amounts.add(defaultCurrency.format(BigDecimal.ZERO, defaultCurrency.getDefaultFractionDigits()).toPlain());
+        }
+
+        Map<String, String> messageValues = new HashMap<>();
+        messageValues.put("amount", String.join(", ", amounts));
+        messageValues.put("exp", String.valueOf(summary.exp));
+        messageValues.put("job", summary.jobName != null ? totalEconomy.getJobManager().titleize(summary.jobName) : "");
+
+        return messageManager.getMessage(player, "jobs.summary", messageValues);
+    }
+
+    private static class Summary {
+        private final Map<Currency, BigDecimal> amounts = new LinkedHashMap<>();
+        private int exp;
+        private String jobName;
+    }
+}
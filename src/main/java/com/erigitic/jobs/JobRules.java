@@ -0,0 +1,174 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.EntityType;
+
+/**
+ * An immutable snapshot of the jobs and job sets loaded from jobs.conf and jobsets.conf. A reload builds a new snapshot
+ * and swaps it in as a whole, so listeners always work with one consistent rule set.
+ */
+public class JobRules {
+
+    private final Map<String, TEJob> jobs;
+    private final Map<String, TEJobSet> jobSets;
+    private final int salaryDelay;
+
+    // Kill rewards per entity type, per job name
+    private final Map<String, Map<EntityType, List<TEActionReward>>> killRewards = new HashMap<>();
+
+    public JobRules(Map<String, TEJob> jobs, Map<String, TEJobSet> jobSets, int salaryDelay) {
+        this.jobs = Collections.unmodifiableMap(new HashMap<>(jobs));
+        this.jobSets = Collections.unmodifiableMap(new HashMap<>(jobSets));
+        this.salaryDelay = salaryDelay;
+
+        if (!jobs.isEmpty()) {
+            indexKillRewards();
+        }
+    }
+
+    /**
+     * Resolve the targets of all kill actions to entity types, by entity name or id. Of duplicate fixed rewards for an
+     * entity type only the one giving the most exp is kept. Formula rewards are all kept, they can only be compared
+     * once they are evaluated for a player.
+     */
+    private void indexKillRewards() {
+        Map<String, EntityType> entityTypes = new HashMap<>();
+
+        for (EntityType entityType : Sponge.getRegistry().getAllOf(EntityType.class)) {
+            entityTypes.put(entityType.getId(), entityType);
+            entityTypes.put(entityType.getName(), entityType);
+        }
+
+        for (TEJob job : jobs.values()) {
+            Map<EntityType, List<TEActionReward>> rewards = new HashMap<>();
+
+            for (String setName : job.getSets()) {
+                TEJobSet jobSet = jobSets.get(setName);
+
+                if (jobSet == null) {
+                    continue;
+                }
+
+                jobSet.getActionsFor("kill").forEach((targetId, action) -> {
+                    EntityType entityType = entityTypes.get(targetId);
+                    Optional<TEActionReward> rewardOpt = action.getReward();
+
+                    if (entityType != null && rewardOpt.isPresent()) {
+                        List<TEActionReward> current = rewards.computeIfAbsent(entityType, type -> new ArrayList<>());
+                        TEActionReward reward = rewardOpt.get();
+
+                        if (reward.isDynamic()) {
+                            current.add(reward);
+                            return;
+                        }
+
+                        // Use the fixed one giving higher exp in case of duplicates
+                        for (int i = 0; i < current.size(); i++) {
+                            if (!current.get(i).isDynamic()) {
+                                if (reward.getExpReward() > current.get(i).getExpReward()) {
+                                    current.set(i, reward);
+                                }
+
+                                return;
+                            }
+                        }
+
+                        current.add(reward);
+                    }
+                });
+            }
+
+            if (!rewards.isEmpty()) {
+                killRewards.put(job.getName(), rewards);
+            }
+        }
+    }
+
+    /**
+     * Get a job by name.
+     *
+     * @param jobName Name of the job
+     * @param tryUnemployed Whether or not to try returning the unemployed job when the job wasn't found
+     * @return Optional The job
+     */
+    public Optional<TEJob> getJob(String jobName, boolean tryUnemployed) {
+        TEJob job = jobs.get(jobName);
+
+        if (job != null || !tryUnemployed) {
+            return Optional.ofNullable(job);
+        }
+
+        return Optional.ofNullable(jobs.get("unemployed"));
+    }
+
+    /**
+     * Get a job set by name.
+     *
+     * @param setName Name of the set
+     * @return Optional The job set
+     */
+    public Optional<TEJobSet> getJobSet(String setName) {
+        return Optional.ofNullable(jobSets.get(setName));
+    }
+
+    /**
+     * Get the rewards of a job for killing an entity type. There is more than one only when formula rewards are
+     * involved, the caller evaluates them and picks the one giving the most exp.
+     *
+     * @param jobName Name of the job
+     * @param entityType The type of the killed entity
+     * @return List The rewards, empty if killing the entity type isn't rewarded
+     */
+    public List<TEActionReward> getKillRewards(String jobName, EntityType entityType) {
+        Map<EntityType, List<TEActionReward>> rewards = killRewards.get(jobName);
+
+        if (rewards == null) {
+            return Collections.emptyList();
+        }
+
+        return rewards.getOrDefault(entityType, Collections.emptyList());
+    }
+
+    public Map<String, TEJob> getJobs() {
+        return jobs;
+    }
+
+    public Map<String, TEJobSet> getJobSets() {
+        return jobSets;
+    }
+
+    public int getSalaryDelay() {
+        return salaryDelay;
+    }
+}
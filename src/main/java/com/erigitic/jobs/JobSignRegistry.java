@@ -0,0 +1,366 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.util.PositionUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.slf4j.Logger;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.block.tileentity.Sign;
+import org.spongepowered.api.block.tileentity.TileEntity;
+import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.data.manipulator.mutable.tileentity.SignData;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.Order;
+import org.spongepowered.api.event.block.ChangeBlockEvent;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+/**
+ * Keeps the locations of all [TEJobs] signs, so that interacting with a block only needs a map lookup to know whether it
+ * is a job sign. Entries are added and removed when signs are written or broken and persisted in jobsigns.conf.
+ */
+public class JobSignRegistry {
+
+    public static final String SIGN_HEADER = "[TEJobs]";
+
+    private TotalEconomy totalEconomy;
+    private Logger logger;
+
+    private File signsFile;
+    private ConfigurationLoader<CommentedConfigurationNode> loader;
+    private boolean savePending = false;
+    private long saveVersion = 0;
+
+    // Version of the last snapshot written to the file, guarded by the loader
+    private long writtenVersion = 0;
+
+    // Job names by packed position, per world
+    private final Map<UUID, Map<Long, String>> worldSigns = new ConcurrentHashMap<>();
+
+    public JobSignRegistry(TotalEconomy totalEconomy, Logger logger) {
+        this.totalEconomy = totalEconomy;
+        this.logger = logger;
+
+        signsFile = new File(totalEconomy.getConfigDir(), "jobsigns.conf");
+        loader = HoconConfigurationLoader.builder().setFile(signsFile).build();
+
+        load();
+    }
+
+    private void load() {
+        if (!signsFile.exists()) {
+            return;
+        }
+
+        try {
+            ConfigurationNode signsConfig = loader.load();
+
+            for (Map.Entry<Object, ? extends ConfigurationNode> worldEntry : signsConfig.getChildrenMap().entrySet()) {
+                Map<Long, String> signs = getSigns(UUID.fromString(worldEntry.getKey().toString()));
+
+                for (Map.Entry<Object, ? extends ConfigurationNode> signEntry : worldEntry.getValue().getChildrenMap().entrySet()) {
+                    String[] position = signEntry.getKey().toString().split(",");
+
+                    signs.put(
+                            PositionUtils.pack(Integer.parseInt(position[0]), Integer.parseInt(position[1]), Integer.parseInt(position[2])),
+                            signEntry.getValue().getString()
+                    );
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("An error occurred while loading the job signs configuration file!");
+            e.printStackTrace();
+        }
+    }
+
+    private ConfigurationNode createSaveNode() {
+        ConfigurationNode signsConfig = loader.createEmptyNode();
+
+        worldSigns.forEach((worldUniqueId, signs) ->
+                signs.forEach((position, jobName) ->
+                        signsConfig.getNode(worldUniqueId.toString(), PositionUtils.unpackX(position) + ","
+                                + PositionUtils.unpackY(position) + "," + PositionUtils.unpackZ(position)).setValue(jobName)
+                )
+        );
+
+        return signsConfig;
+    }
+
+    /**
+     * Save the job signs on the next tick, so changes made in the same tick result in a single write. The snapshot is
+     * taken on the main thread and written off it. Snapshots are numbered, so a slow write of an older snapshot can
+     * never replace a newer one.
+     */
+    private void requestSave() {
+        if (savePending) {
+            return;
+        }
+
+        savePending = true;
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .execute(() -> {
+                    savePending = false;
+
+                    ConfigurationNode signsConfig = createSaveNode();
+                    long version = ++saveVersion;
+
+                    totalEconomy.getGame().getScheduler().createTaskBuilder()
+                            .async()
+                            .execute(() -> {
+                                synchronized (loader) {
+                                    if (version < writtenVersion) {
+                                        return;
+                                    }
+
+                                    try {
+                                        loader.save(signsConfig);
+                                        writtenVersion = version;
+                                    } catch (IOException e) {
+                                        logger.warn("An error occurred while saving the job signs configuration file!");
+                                        e.printStackTrace();
+                                    }
+                                }
+                            })
+                            .name("Save Job Signs")
+                            .submit(totalEconomy);
+                })
+                .name("Queue Job Signs Save")
+                .submit(totalEconomy);
+    }
+
+    private Map<Long, String> getSigns(UUID worldUniqueId) {
+        return worldSigns.computeIfAbsent(worldUniqueId, uuid -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Get the job of the job sign at a location.
+     *
+     * @param location The location to check
+     * @return Optional The lowercase job name, empty if there is no registered job sign at the location
+     */
+    public Optional<String> getJob(Location<World> location) {
+        Map<Long, String> signs = worldSigns.get(location.getExtent().getUniqueId());
+
+        if (signs == null) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(signs.get(PositionUtils.pack(location)));
+    }
+
+    /**
+     * Get the job of the job sign at a location, registering the sign if it is a job sign that is not registered yet
+     * (ex. signs created before the registry existed). Only sign blocks are checked for a missing entry, so clicks on
+     * other blocks stay a map lookup.
+     *
+     * @param location The location to check
+     * @param blockType The type of the block at the location
+     * @return Optional The lowercase job name, empty if there is no job sign at the location
+     */
+    public Optional<String> getOrRegisterJob(Location<World> location, BlockType blockType) {
+        Optional<String> jobNameOpt = getJob(location);
+
+        if (jobNameOpt.isPresent() || (blockType != BlockTypes.STANDING_SIGN && blockType != BlockTypes.WALL_SIGN)) {
+            return jobNameOpt;
+        }
+
+        Optional<TileEntity> tileEntityOpt = location.getTileEntity();
+
+        if (tileEntityOpt.isPresent() && tileEntityOpt.get() instanceof Sign) {
+            jobNameOpt = getJobName((Sign) tileEntityOpt.get());
+            jobNameOpt.ifPresent(jobName -> register(location, jobName));
+        }
+
+        return jobNameOpt;
+    }
+
+    /**
+     * Register a job sign, replacing any job sign at the same location.
+     *
+     * @param location The location of the sign
+     * @param jobName The job the sign changes to
+     */
+    public void register(Location<World> location, String jobName) {
+        String previous = getSigns(location.getExtent().getUniqueId()).put(PositionUtils.pack(location), jobName.toLowerCase());
+
+        if (!jobName.equalsIgnoreCase(previous)) {
+            requestSave();
+        }
+    }
+
+    /**
+     * Remove the job sign at a location, if there is one.
+     *
+     * @param location The location of the sign
+     * @return boolean If a sign was removed
+     */
+    public boolean unregister(Location<World> location) {
+        Map<Long, String> signs = worldSigns.get(location.getExtent().getUniqueId());
+
+        if (signs != null && signs.remove(PositionUtils.pack(location)) != null) {
+            requestSave();
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Get all registered job signs.
+     *
+     * @return Map Job names by packed position, per world {@link UUID}
+     */
+    public Map<UUID, Map<Long, String>> getWorldSigns() {
+        return Collections.unmodifiableMap(worldSigns);
+    }
+
+    /**
+     * Get the job name written on a sign.
+     *
+     * @param sign The sign
+     * @return Optional The lowercase job name, empty if the sign is not a job sign
+     */
+    public static Optional<String> getJobName(Sign sign) {
+        Optional<SignData> signDataOpt = sign.get(SignData.class);
+
+        if (signDataOpt.isPresent() && signDataOpt.get().lines().get(0).toPlain().equals(SIGN_HEADER)) {
+            return Optional.of(signDataOpt.get().lines().get(1).toPlain().toLowerCase());
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Check every registered sign in the loaded chunks of the loaded worlds and remove or correct entries that no longer
+     * match the sign in the world, then register job signs found in loaded chunks that are missing (ex. after world
+     * edits or signs created by older versions). Signs in unloaded chunks are left alone, so no chunks are loaded.
+     *
+     * @return RepairResult The number of removed, updated, added and skipped signs
+     */
+    public RepairResult repair() {
+        RepairResult result = new RepairResult();
+
+        for (World world : totalEconomy.getServer().getWorlds()) {
+            Map<Long, String> signs = getSigns(world.getUniqueId());
+            Iterator<Map.Entry<Long, String>> iterator = signs.entrySet().iterator();
+
+            while (iterator.hasNext()) {
+                Map.Entry<Long, String> entry = iterator.next();
+                long position = entry.getKey();
+                int x = PositionUtils.unpackX(position);
+                int z = PositionUtils.unpackZ(position);
+
+                if (!world.getChunk(x >> 4, 0, z >> 4).isPresent()) {
+                    result.skipped++;
+                    continue;
+                }
+
+                Optional<TileEntity> tileEntityOpt = world.getTileEntity(x, PositionUtils.unpackY(position), z);
+                Optional<String> jobNameOpt = Optional.empty();
+
+                if (tileEntityOpt.isPresent() && tileEntityOpt.get() instanceof Sign) {
+                    jobNameOpt = getJobName((Sign) tileEntityOpt.get());
+                }
+
+                if (!jobNameOpt.isPresent()) {
+                    iterator.remove();
+                    result.removed++;
+                } else if (!jobNameOpt.get().equals(entry.getValue())) {
+                    entry.setValue(jobNameOpt.get());
+                    result.updated++;
+                }
+            }
+
+            for (TileEntity tileEntity : world.getTileEntities(tileEntity -> tileEntity instanceof Sign)) {
+                Optional<String> jobNameOpt = getJobName((Sign) tileEntity);
+
+                if (jobNameOpt.isPresent() && signs.putIfAbsent(PositionUtils.pack(tileEntity.getLocation()), jobNameOpt.get()) == null) {
+                    result.added++;
+                }
+            }
+        }
+
+        if (result.removed + result.updated + result.added > 0) {
+            requestSave();
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove job signs when they are broken.
+     *
+     * @param event ChangeBlockEvent.Break
+     */
+    @Listener(order = Order.POST)
+    public void onBlockBreak(ChangeBlockEvent.Break event) {
+        for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
+            if (transaction.isValid()) {
+                transaction.getOriginal().getLocation().ifPresent(this::unregister);
+            }
+        }
+    }
+
+    public static class RepairResult {
+        private int removed;
+        private int updated;
+        private int added;
+        private int skipped;
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+    }
+}
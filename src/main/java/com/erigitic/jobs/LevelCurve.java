@@ -0,0 +1,103 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+/**
+ * The experience needed to reach each level of a job. The experience is cumulative and is not reset on level up, so
+ * the table holds the total amount of experience at which the next level is reached. The table is built when jobs.conf
+ * is loaded, making lookups a single array access.
+ */
+public class LevelCurve {
+
+    private static final int PRECOMPUTED_LEVELS = 1000;
+
+    private final int levelExp;
+    private final int maxLevel;
+    private final int[] expToLevel;
+
+    /**
+     * Constructor for the LevelCurve class.
+     *
+     * @param levelExp The experience multiplier of the curve, 100 by default
+     * @param maxLevel The highest reachable level; 0 for no limit
+     */
+    public LevelCurve(int levelExp, int maxLevel) {
+        this.levelExp = levelExp;
+        this.maxLevel = maxLevel;
+
+        int size = (maxLevel > 0 ? maxLevel : PRECOMPUTED_LEVELS) + 1;
+        expToLevel = new int[size];
+
+        for (int level = 1; level < size; level++) {
+            expToLevel[level] = computeExpToLevel(level);
+        }
+    }
+
+    /**
+     * Get the total experience required to advance past the passed in level.
+     *
+     * @param level The current level
+     * @return int The experience needed to reach the next level
+     */
+    public int getExpToLevel(int level) {
+        if (level < 1) {
+            return 0;
+        }
+
+        if (maxLevel > 0 && level >= maxLevel) {
+            return expToLevel[maxLevel];
+        }
+
+        if (level < expToLevel.length) {
+            return expToLevel[level];
+        }
+
+        return computeExpToLevel(level);
+    }
+
+    /**
+     * Get the level that an amount of experience results in, starting from the current level. Multiple levels can be
+     * gained at once and levels are never lost.
+     *
+     * @param level The current level
+     * @param exp The total experience
+     * @return int The new level
+     */
+    public int getLevel(int level, int exp) {
+        while ((maxLevel <= 0 || level < maxLevel) && exp >= getExpToLevel(level)) {
+            level++;
+        }
+
+        return level;
+    }
+
+    private int computeExpToLevel(int level) {
+        long nextLevel = level + 1L;
+        long exp = (((nextLevel * nextLevel + nextLevel) / 2) * levelExp) - (nextLevel * levelExp);
+
+        return (int) Math.min(exp, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import com.erigitic.config.AccountManager;
+import com.erigitic.config.TEAccount;
+import com.erigitic.config.TEEconomyTransactionEvent;
+import com.erigitic.config.TETransactionResult;
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.util.MessageManager;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.service.economy.Currency;
+import org.spongepowered.api.service.economy.transaction.ResultType;
+import org.spongepowered.api.service.economy.transaction.TransactionTypes;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+/**
+ * Pays the salary of every online player in one pass. The online players are snapshotted on the main thread, their jobs
+ * and salaries are resolved in bulk and the deposits are applied as one batch. In database mode the lookups and the
+ * batch run off the main thread. Notifications and transaction events are always delivered on the main thread.
+ */
+public class PayrollTask implements Runnable {
+
+    private TotalEconomy totalEconomy;
+    private JobManager jobManager;
+    private AccountManager accountManager;
+    private MessageManager messageManager;
+
+    public PayrollTask(TotalEconomy totalEconomy, JobManager jobManager, AccountManager accountManager, MessageManager messageManager) {
+        this.totalEconomy = totalEconomy;
+        this.jobManager = jobManager;
+        this.accountManager = accountManager;
+        this.messageManager = messageManager;
+    }
+
+    @Override
+    public void run() {
+        if (!totalEconomy.getGame().isServerAvailable()) {
+            return;
+        }
+
+        List<UUID> playerUniqueIds = new ArrayList<>();
+
+        for (Player player : totalEconomy.getServer().getOnlinePlayers()) {
+            playerUniqueIds.add(player.getUniqueId());
+        }
+
+        if (playerUniqueIds.isEmpty()) {
+            return;
+        }
+
+        if (totalEconomy.isDatabaseEnabled()) {
+            totalEconomy.getGame().getScheduler().createTaskBuilder()
+                    .async()
+                    .execute(() -> {
+                        Payroll payroll = pay(playerUniqueIds);
+
+                        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                                .execute(() -> notifyPlayers(payroll))
+                                .submit(totalEconomy);
+                    })
+                    .name("Pay Day - Deposit")
+                    .submit(totalEconomy);
+        } else {
+            notifyPlayers(pay(playerUniqueIds));
+        }
+    }
+
+    /**
+     * Resolve the salary of each player and deposit all of them at once.
+     *
+     * @param playerUniqueIds The players to pay
+     * @return Payroll The salaries and the results of the deposits
+     */
+    private Payroll pay(List<UUID> playerUniqueIds) {
+        Payroll payroll = new Payroll();
+        Map<UUID, String> playerJobs = jobManager.getPlayerJobs(playerUniqueIds);
+
+        for (UUID playerUniqueId : playerUniqueIds) {
+            Optional<TEJob> optJob = jobManager.getJob(playerJobs.getOrDefault(playerUniqueId, "unemployed"), true);
+
+            if (!optJob.isPresent()) {
+                payroll.unpaid.add(playerUniqueId);
+            } else if (optJob.get().salaryEnabled()) {
+                payroll.salaries.put(playerUniqueId, optJob.get().getSalary());
+            }
+        }
+
+        payroll.results = accountManager.creditBalances(payroll.currency, payroll.salaries, true);
+
+        return payroll;
+    }
+
+    /**
+     * Post the transaction events and let each player still online know about their salary. Must run on the main thread.
+     *
+     * @param payroll The payroll to report
+     */
+    private void notifyPlayers(Payroll payroll) {
+        Map<BigDecimal, Map<String, String>> salaryMessageValues = new HashMap<>();
+
+        payroll.salaries.forEach((playerUniqueId, salary) -> {
+            ResultType result = payroll.results.getOrDefault(playerUniqueId, ResultType.FAILED);
+            TEAccount playerAccount = new TEAccount(totalEconomy, accountManager, playerUniqueId);
+
+            if (result == ResultType.SUCCESS) {
+                totalEconomy.getGame().getEventManager().post(new TEEconomyTransactionEvent(
+                        new TETransactionResult(playerAccount, payroll.currency, salary, new HashSet<>(), result, TransactionTypes.DEPOSIT)
+                ));
+            }
+
+            totalEconomy.getServer().getPlayer(playerUniqueId).ifPresent(player -> {
+                if (result == ResultType.SUCCESS) {
+                    Map<String, String> messageValues = salaryMessageValues.computeIfAbsent(salary, amount -> {
+                        Map<String, String> values = new HashMap<>();
+                        values.put("amount", payroll.currency.format(amount).toPlain());
+
+                        return values;
+                    });
+
+                    player.sendMessage(messageManager.getMessage(player, "jobs.salary", messageValues));
+                } else {
+                    player.sendMessage(Text.of(TextColors.RED, "[TE] Failed to pay your salary! You may want to contact your admin - TransactionResult: ", result.toString()));
+                }
+            });
+        });
+
+        for (UUID playerUniqueId : payroll.unpaid) {
+            totalEconomy.getServer().getPlayer(playerUniqueId).ifPresent(player ->
+                    player.sendMessage(Text.of(TextColors.RED, "[TE] Cannot pay your salary! Contact your administrator!"))
+            );
+        }
+    }
+
+    private class Payroll {
+        private final Currency currency = totalEconomy.getDefaultCurrency();
+        private final Map<UUID, BigDecimal> salaries = new HashMap<>();
+        private final Set<UUID> unpaid = new HashSet<>();
+        private Map<UUID, ResultType> results = new HashMap<>();
+    }
+}
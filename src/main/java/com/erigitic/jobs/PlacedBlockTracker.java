@@ -0,0 +1,545 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import com.erigitic.main.TotalEconomy;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.Order;
+import org.spongepowered.api.event.block.ChangeBlockEvent;
+import org.spongepowered.api.event.world.chunk.LoadChunkEvent;
+import org.spongepowered.api.event.world.chunk.UnloadChunkEvent;
+import org.spongepowered.api.world.Chunk;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+/**
+ * Keeps track of which blocks were placed by players so that breaking them again is not rewarded. Each chunk is stored
+ * as a bitmap packed into longs, one lazily allocated array per 16 block high section, and persisted in region files
+ * of 32x32 chunks inside the placedblocks folder. A region is read off the main thread when the first of its chunks
+ * loads, and saved and dropped from memory once all of them have unloaded.
+ */
+public class PlacedBlockTracker {
+
+    private static final int FILE_VERSION = 1;
+    private static final int SECTION_COUNT = 16;
+    private static final int LONGS_PER_SECTION = 4096 / 64;
+    private static final int CHUNKS_PER_REGION = 32 * 32;
+
+    private TotalEconomy totalEconomy;
+    private Logger logger;
+    private File trackerDir;
+
+    // Regions by world, only added and removed on the main thread
+    private final Map<UUID, Map<Long, Region>> worldRegions = new ConcurrentHashMap<>();
+
+    public PlacedBlockTracker(TotalEconomy totalEconomy, Logger logger) {
+        this.totalEconomy = totalEconomy;
+        this.logger = logger;
+
+        trackerDir = new File(totalEconomy.getConfigDir(), "placedblocks");
+
+        setupAutosave();
+    }
+
+    /**
+     * Setup a scheduler that saves modified regions off the main thread, and afterwards drops regions without loaded
+     * chunks.
+     */
+    private void setupAutosave() {
+        int interval = totalEconomy.getSaveInterval() > 0 ? totalEconomy.getSaveInterval() : 30;
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .async()
+                .interval(interval, TimeUnit.SECONDS)
+                .execute(() -> {
+                    save();
+
+                    totalEconomy.getGame().getScheduler().createTaskBuilder()
+                            .execute(this::releaseRegions)
+                            .submit(totalEconomy);
+                })
+                .name("Total Economy - Placed Block Save")
+                .submit(totalEconomy);
+    }
+
+    /**
+     * Starts reading the region of a chunk when the first of its chunks loads.
+     *
+     * @param event LoadChunkEvent
+     */
+    @Listener
+    public void onChunkLoad(LoadChunkEvent event) {
+        Chunk chunk = event.getTargetChunk();
+
+        getOrCreateRegion(chunk.getWorld().getUniqueId(), chunk.getPosition().getX() >> 5, chunk.getPosition().getZ() >> 5).loadedChunks++;
+    }
+
+    /**
+     * Saves and drops the region of a chunk once the last of its chunks unloads.
+     *
+     * @param event UnloadChunkEvent
+     */
+    @Listener
+    public void onChunkUnload(UnloadChunkEvent event) {
+        Chunk chunk = event.getTargetChunk();
+        UUID worldUniqueId = chunk.getWorld().getUniqueId();
+        long regionKey = regionKey(chunk.getPosition().getX() >> 5, chunk.getPosition().getZ() >> 5);
+        Region region = getRegion(worldUniqueId, regionKey);
+
+        if (region == null || --region.loadedChunks > 0) {
+            return;
+        }
+
+        region.loadedChunks = 0;
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .async()
+                .execute(() -> {
+                    saveRegion(region);
+
+                    totalEconomy.getGame().getScheduler().createTaskBuilder()
+                            .execute(() -> releaseRegion(worldUniqueId, regionKey, region))
+                            .submit(totalEconomy);
+                })
+                .name("Total Economy - Placed Block Unload")
+                .submit(totalEconomy);
+    }
+
+    /**
+     * Marks every block placed by a player. Runs after the job listeners so cancelled placements are ignored.
+     *
+     * @param event ChangeBlockEvent.Place
+     */
+    @Listener(order = Order.POST)
+    public void onBlockPlace(ChangeBlockEvent.Place event) {
+        if (event.getCause().first(Player.class).isPresent()) {
+            for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
+                if (transaction.isValid()) {
+                    transaction.getFinal().getLocation().ifPresent(location -> setPlayerPlaced(location, true));
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears broken blocks, whatever broke them. Runs after the job listeners so they still see the placed flag.
+     *
+     * @param event ChangeBlockEvent.Break
+     */
+    @Listener(order = Order.POST)
+    public void onBlockBreak(ChangeBlockEvent.Break event) {
+        for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
+            if (transaction.isValid()) {
+                transaction.getOriginal().getLocation().ifPresent(location -> setPlayerPlaced(location, false));
+            }
+        }
+    }
+
+    /**
+     * Checks if the block at a location was placed by a player. Blocks of a region that is still being read count as
+     * not placed.
+     *
+     * @param location The location of the block
+     * @return boolean If a player placed the block
+     */
+    public boolean isPlayerPlaced(Location<World> location) {
+        int y = location.getBlockY();
+
+        if (y < 0 || y >= SECTION_COUNT * 16) {
+            return false;
+        }
+
+        Region region = getRegion(location.getExtent().getUniqueId(), regionKey(location.getBlockX() >> 9, location.getBlockZ() >> 9));
+
+        return region != null && region.get(location.getBlockX(), y, location.getBlockZ());
+    }
+
+    /**
+     * Sets or clears the player placed flag of the block at a location.
+     *
+     * @param location The location of the block
+     * @param placed Whether or not a player placed the block
+     */
+    public void setPlayerPlaced(Location<World> location, boolean placed) {
+        int y = location.getBlockY();
+
+        if (y < 0 || y >= SECTION_COUNT * 16) {
+            return;
+        }
+
+        UUID worldUniqueId = location.getExtent().getUniqueId();
+        int regionX = location.getBlockX() >> 9;
+        int regionZ = location.getBlockZ() >> 9;
+        Region region = placed ? getOrCreateRegion(worldUniqueId, regionX, regionZ) : getRegion(worldUniqueId, regionKey(regionX, regionZ));
+
+        if (region != null) {
+            region.set(location.getBlockX(), y, location.getBlockZ(), placed);
+        }
+    }
+
+    /**
+     * Save every modified region to disk.
+     */
+    public void save() {
+        worldRegions.forEach((worldUniqueId, regions) -> regions.values().forEach(this::saveRegion));
+    }
+
+    private Region getRegion(UUID worldUniqueId, long regionKey) {
+        Map<Long, Region> regions = worldRegions.get(worldUniqueId);
+
+        return regions != null ? regions.get(regionKey) : null;
+    }
+
+    private Region getOrCreateRegion(UUID worldUniqueId, int regionX, int regionZ) {
+        Map<Long, Region> regions = worldRegions.computeIfAbsent(worldUniqueId, k -> new ConcurrentHashMap<>());
+        long regionKey = regionKey(regionX, regionZ);
+        Region region = regions.get(regionKey);
+
+        if (region == null) {
+            File worldDir = new File(trackerDir, worldUniqueId.toString());
+            Region newRegion = new Region(new File(worldDir, "r." + regionX + "." + regionZ + ".dat"));
+
+            regions.put(regionKey, newRegion);
+            region = newRegion;
+
+            totalEconomy.getGame().getScheduler().createTaskBuilder()
+                    .async()
+                    .execute(() -> loadRegion(newRegion))
+                    .name("Total Economy - Placed Block Load")
+                    .submit(totalEconomy);
+        }
+
+        return region;
+    }
+
+    /**
+     * Drop a region that has no loaded chunks and nothing left to save. Runs on the main thread, after the region was
+     * saved, so a region loaded again afterwards reads what was written.
+     */
+    private void releaseRegion(UUID worldUniqueId, long regionKey, Region region) {
+        Map<Long, Region> regions = worldRegions.get(worldUniqueId);
+
+        if (regions != null && region.loadedChunks == 0 && region.isSaved()) {
+            regions.remove(regionKey, region);
+        }
+    }
+
+    private void releaseRegions() {
+        worldRegions.forEach((worldUniqueId, regions) -> regions.forEach((regionKey, region) -> releaseRegion(worldUniqueId, regionKey, region)));
+    }
+
+    private void loadRegion(Region region) {
+        synchronized (region.ioLock) {
+            if (region.isLoaded()) {
+                return;
+            }
+
+            long[][][] fileSections = new long[CHUNKS_PER_REGION][][];
+
+            if (region.file.exists()) {
+                try {
+                    Region.read(region.file, fileSections);
+                } catch (IOException e) {
+                    logger.warn("An error occurred while loading placed blocks from " + region.file.getName() + "!", e);
+                }
+            }
+
+            region.merge(fileSections);
+        }
+    }
+
+    private void saveRegion(Region region) {
+        synchronized (region.ioLock) {
+            // Never write a region before the file was read, that would drop what is in it
+            loadRegion(region);
+
+            long[][][] snapshot = region.snapshot();
+
+            if (snapshot == null) {
+                return;
+            }
+
+            try {
+                Region.write(region.file, snapshot);
+            } catch (IOException e) {
+                region.markDirty();
+                logger.warn("An error occurred while saving placed blocks to " + region.file.getName() + "!", e);
+            }
+        }
+    }
+
+    private static long regionKey(int regionX, int regionZ) {
+        return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A 32x32 chunk area. Sections are indexed by chunk (z * 32 + x) and then by section height. The bitmap is guarded
+     * by the region itself, file access by the io lock, so reading and writing the file never blocks the main thread.
+     */
+    private static class Region {
+
+        private final File file;
+        private final Object ioLock = new Object();
+        private final long[][][] sections = new long[CHUNKS_PER_REGION][][];
+        private boolean dirty = false;
+
+        // Changes made before the file was read, applied again on top of it. Null once the file was read.
+        private List<Integer> pendingChanges = new ArrayList<>();
+
+        // Loaded chunks of the region, only used on the main thread
+        private int loadedChunks = 0;
+
+        Region(File file) {
+            this.file = file;
+        }
+
+        synchronized boolean get(int x, int y, int z) {
+            long[][] chunk = sections[chunkIndex(x, z)];
+
+            if (chunk == null || chunk[y >> 4] == null) {
+                return false;
+            }
+
+            int bit = bitIndex(x, y, z);
+
+            return (chunk[y >> 4][bit >> 6] & (1L << bit)) != 0;
+        }
+
+        synchronized void set(int x, int y, int z, boolean value) {
+            if (pendingChanges != null) {
+                pendingChanges.add((value ? 1 << 26 : 0) | y << 18 | (z & 511) << 9 | (x & 511));
+            }
+
+            apply(x, y, z, value);
+        }
+
+        private void apply(int x, int y, int z, boolean value) {
+            int chunkIndex = chunkIndex(x, z);
+            long[][] chunk = sections[chunkIndex];
+
+            if (chunk == null) {
+                if (!value) {
+                    return;
+                }
+
+                chunk = new long[SECTION_COUNT][];
+                sections[chunkIndex] = chunk;
+            }
+
+            long[] section = chunk[y >> 4];
+
+            if (section == null) {
+                if (!value) {
+                    return;
+                }
+
+                section = new long[LONGS_PER_SECTION];
+                chunk[y >> 4] = section;
+            }
+
+            int bit = bitIndex(x, y, z);
+
+            if (value) {
+                section[bit >> 6] |= 1L << bit;
+            } else {
+                section[bit >> 6] &= ~(1L << bit);
+            }
+
+            dirty = true;
+        }
+
+        synchronized boolean isLoaded() {
+            return pendingChanges == null;
+        }
+
+        synchronized boolean isSaved() {
+            return pendingChanges == null && !dirty;
+        }
+
+        synchronized void markDirty() {
+            dirty = true;
+        }
+
+        /**
+         * Take the chunks read from the file, with the changes made while it was being read on top.
+         */
+        synchronized void merge(long[][][] fileSections) {
+            for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+                if (fileSections[i] != null) {
+                    sections[i] = fileSections[i];
+                }
+            }
+
+            for (int change : pendingChanges) {
+                apply(change & 511, (change >> 18) & 255, (change >> 9) & 511, (change & 1 << 26) != 0);
+            }
+
+            pendingChanges = null;
+        }
+
+        /**
+         * Copy the bitmap if it changed since the last save.
+         *
+         * @return long[][][] The copy, null if there is nothing to save
+         */
+        synchronized long[][][] snapshot() {
+            if (!dirty) {
+                return null;
+            }
+
+            long[][][] copy = new long[CHUNKS_PER_REGION][][];
+
+            for (int chunkIndex = 0; chunkIndex < CHUNKS_PER_REGION; chunkIndex++) {
+                long[][] chunk = sections[chunkIndex];
+
+                if (chunk == null) {
+                    continue;
+                }
+
+                copy[chunkIndex] = new long[SECTION_COUNT][];
+
+                for (int i = 0; i < SECTION_COUNT; i++) {
+                    if (chunk[i] != null) {
+                        copy[chunkIndex][i] = chunk[i].clone();
+                    }
+                }
+            }
+
+            dirty = false;
+
+            return copy;
+        }
+
+        static void read(File file, long[][][] sections) throws IOException {
+            try (DataInputStream in = new DataInputStream(new GZIPInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != FILE_VERSION) {
+                    throw new IOException("Unknown placed block file version");
+                }
+
+                int chunkIndex;
+
+                while ((chunkIndex = in.readShort()) >= 0) {
+                    int sectionMask = in.readShort() & 0xFFFF;
+                    long[][] chunk = new long[SECTION_COUNT][];
+
+                    for (int i = 0; i < SECTION_COUNT; i++) {
+                        if ((sectionMask & (1 << i)) != 0) {
+                            chunk[i] = new long[LONGS_PER_SECTION];
+
+                            for (int j = 0; j < LONGS_PER_SECTION; j++) {
+                                chunk[i][j] = in.readLong();
+                            }
+                        }
+                    }
+
+                    sections[chunkIndex] = chunk;
+                }
+            }
+        }
+
+        static void write(File file, long[][][] sections) throws IOException {
+            file.getParentFile().mkdirs();
+            File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(FILE_VERSION);
+
+                for (int chunkIndex = 0; chunkIndex < CHUNKS_PER_REGION; chunkIndex++) {
+                    long[][] chunk = sections[chunkIndex];
+
+                    if (chunk == null) {
+                        continue;
+                    }
+
+                    int sectionMask = 0;
+
+                    for (int i = 0; i < SECTION_COUNT; i++) {
+                        if (chunk[i] != null && !isEmpty(chunk[i])) {
+                            sectionMask |= 1 << i;
+                        }
+                    }
+
+                    if (sectionMask == 0) {
+                        continue;
+                    }
+
+                    out.writeShort(chunkIndex);
+                    out.writeShort(sectionMask);
+
+                    for (int i = 0; i < SECTION_COUNT; i++) {
+                        if ((sectionMask & (1 << i)) != 0) {
+                            for (long bits : chunk[i]) {
+                                out.writeLong(bits);
+                            }
+                        }
+                    }
+                }
+
+                out.writeShort(-1);
+            }
+
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private static boolean isEmpty(long[] section) {
+            for (long bits : section) {
+                if (bits != 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static int chunkIndex(int x, int z) {
+            return ((z >> 4) & 31) << 5 | ((x >> 4) & 31);
+        }
+
+        private static int bitIndex(int x, int y, int z) {
+            return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+        }
+    }
+}
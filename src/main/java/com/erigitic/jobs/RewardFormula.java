@@ -0,0 +1,339 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A reward expression from jobsets.conf (ex. "10 + level * 0.5"), compiled once into a tree of closures. Supports
+ * numbers, the variables of {@link Variable}, + - * / % ^, parentheses and the functions min, max, floor, ceil,
+ * round, abs and sqrt. Constant parts are folded when compiling.
+ */
+public class RewardFormula {
+
+    public enum Variable {
+        LEVEL("level"),
+        GROWTH("growth"),
+        HOUR("hour"),
+        FORTUNE("fortune"),
+        EFFICIENCY("efficiency"),
+        LOOTING("looting"),
+        SILKTOUCH("silktouch");
+
+        private final String name;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getFlag() {
+            return 1 << ordinal();
+        }
+    }
+
+    /**
+     * Values of the variables for a single evaluation.
+     */
+    public static class Context {
+        private final double[] values = new double[Variable.values().length];
+
+        public Context set(Variable variable, double value) {
+            values[variable.ordinal()] = value;
+
+            return this;
+        }
+
+        public double get(Variable variable) {
+            return values[variable.ordinal()];
+        }
+    }
+
+    private interface Expression {
+        double evaluate(Context context);
+    }
+
+    private static class Constant implements Expression {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double evaluate(Context context) {
+            return value;
+        }
+    }
+
+    private final String source;
+    private final Expression expression;
+    private final int variableFlags;
+
+    private RewardFormula(String source, Expression expression, int variableFlags) {
+        this.source = source;
+        this.expression = expression;
+        this.variableFlags = variableFlags;
+    }
+
+    /**
+     * Compile a reward expression.
+     *
+     * @param source The expression
+     * @return RewardFormula The compiled expression
+     * @throws IllegalArgumentException The expression is invalid
+     */
+    public static RewardFormula compile(String source) {
+        Parser parser = new Parser(source);
+        Expression expression = parser.parseExpression();
+
+        if (parser.pos < source.length()) {
+            throw parser.error("Unexpected character '" + source.charAt(parser.pos) + "'");
+        }
+
+        return new RewardFormula(source, expression, parser.variableFlags);
+    }
+
+    public double evaluate(Context context) {
+        return expression.evaluate(context);
+    }
+
+    /**
+     * Check if the expression uses a variable, so callers only need to determine the values that are used.
+     *
+     * @param variable The variable
+     * @return boolean If the variable is used
+     */
+    public boolean uses(Variable variable) {
+        return (variableFlags & variable.getFlag()) != 0;
+    }
+
+    public int getVariableFlags() {
+        return variableFlags;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    private static class Parser {
+        private final String source;
+        private int pos = 0;
+        private int variableFlags = 0;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        Expression parseExpression() {
+            Expression left = parseTerm();
+
+            while (true) {
+                if (consume('+')) {
+                    left = binary(left, parseTerm(), (a, b) -> a + b);
+                } else if (consume('-')) {
+                    left = binary(left, parseTerm(), (a, b) -> a - b);
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Expression parseTerm() {
+            Expression left = parseUnary();
+
+            while (true) {
+                if (consume('*')) {
+                    left = binary(left, parseUnary(), (a, b) -> a * b);
+                } else if (consume('/')) {
+                    left = binary(left, parseUnary(), (a, b) -> a / b);
+                } else if (consume('%')) {
+                    left = binary(left, parseUnary(), (a, b) -> a % b);
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Expression parseUnary() {
+            if (consume('-')) {
+                return unary(parseUnary(), a -> -a);
+            }
+
+            if (consume('+')) {
+                return parseUnary();
+            }
+
+            Expression base = parsePrimary();
+
+            if (consume('^')) {
+                return binary(base, parseUnary(), Math::pow);
+            }
+
+            return base;
+        }
+
+        private Expression parsePrimary() {
+            skipWhitespace();
+
+            if (consume('(')) {
+                Expression expression = parseExpression();
+                expect(')');
+
+                return expression;
+            }
+
+            if (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                int start = pos;
+
+                while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                    pos++;
+                }
+
+                try {
+                    return new Constant(Double.parseDouble(source.substring(start, pos)));
+                } catch (NumberFormatException e) {
+                    throw error("Invalid number \"" + source.substring(start, pos) + "\"");
+                }
+            }
+
+            if (pos < source.length() && Character.isLetter(source.charAt(pos))) {
+                int start = pos;
+
+                while (pos < source.length() && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) {
+                    pos++;
+                }
+
+                String name = source.substring(start, pos).toLowerCase();
+
+                if (consume('(')) {
+                    return parseFunction(name);
+                }
+
+                for (Variable variable : Variable.values()) {
+                    if (variable.getName().equals(name)) {
+                        variableFlags |= variable.getFlag();
+
+                        return context -> context.get(variable);
+                    }
+                }
+
+                throw error("Unknown variable \"" + name + "\"");
+            }
+
+            throw error(pos < source.length() ? "Unexpected character '" + source.charAt(pos) + "'" : "Unexpected end of expression");
+        }
+
+        private Expression parseFunction(String name) {
+            List<Expression> args = new ArrayList<>();
+
+            if (!consume(')')) {
+                do {
+                    args.add(parseExpression());
+                } while (consume(','));
+
+                expect(')');
+            }
+
+            switch (name) {
+                case "min":
+                    return binary(argument(name, args, 0, 2), args.get(1), Math::min);
+                case "max":
+                    return binary(argument(name, args, 0, 2), args.get(1), Math::max);
+                case "floor":
+                    return unary(argument(name, args, 0, 1), Math::floor);
+                case "ceil":
+                    return unary(argument(name, args, 0, 1), Math::ceil);
+                case "round":
+                    return unary(argument(name, args, 0, 1), a -> (double) Math.round(a));
+                case "abs":
+                    return unary(argument(name, args, 0, 1), Math::abs);
+                case "sqrt":
+                    return unary(argument(name, args, 0, 1), Math::sqrt);
+                default:
+                    throw error("Unknown function \"" + name + "\"");
+            }
+        }
+
+        private Expression argument(String function, List<Expression> args, int index, int count) {
+            if (args.size() != count) {
+                throw error("Function \"" + function + "\" takes " + count + " argument(s)");
+            }
+
+            return args.get(index);
+        }
+
+        private Expression unary(Expression operand, DoubleUnaryOperator operator) {
+            if (operand instanceof Constant) {
+                return new Constant(operator.applyAsDouble(operand.evaluate(null)));
+            }
+
+            return context -> operator.applyAsDouble(operand.evaluate(context));
+        }
+
+        private Expression binary(Expression left, Expression right, DoubleBinaryOperator operator) {
+            if (left instanceof Constant && right instanceof Constant) {
+                return new Constant(operator.applyAsDouble(left.evaluate(null), right.evaluate(null)));
+            }
+
+            return context -> operator.applyAsDouble(left.evaluate(context), right.evaluate(context));
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+
+            if (pos < source.length() && source.charAt(pos) == c) {
+                pos++;
+
+                return true;
+            }
+
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " in reward formula \"" + source + "\"");
+        }
+    }
+}
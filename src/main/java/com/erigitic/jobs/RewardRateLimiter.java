@@ -0,0 +1,157 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.jobs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import ninja.leaping.configurate.ConfigurationNode;
+
+/**
+ * Limits how fast each player can earn job rewards with one token bucket per player and action type. Rewards over the
+ * limit are dropped and counted. Only used from the main thread, except for reading the counters.
+ */
+public class RewardRateLimiter {
+
+    private static final String[] ACTIONS = {"break", "place", "kill", "catch"};
+
+    // Token refill rate per second and bucket size, by action index. A rate of 0 disables the limit.
+    private final double[] rates = new double[ACTIONS.length];
+    private final double[] bursts = new double[ACTIONS.length];
+    private final AtomicLong[] dropped = new AtomicLong[ACTIONS.length];
+
+    private final Map<UUID, Bucket[]> buckets = new HashMap<>();
+
+    public RewardRateLimiter(ConfigurationNode rateLimitNode) {
+        for (int i = 0; i < ACTIONS.length; i++) {
+            ConfigurationNode actionNode = rateLimitNode.getNode(ACTIONS[i]);
+
+            rates[i] = Math.max(0, actionNode.getNode("rate").getDouble(0));
+            bursts[i] = Math.max(1, actionNode.getNode("burst").getDouble(Math.max(1, rates[i])));
+            dropped[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Take a token for a reward. Returns false and counts the reward as dropped when the player is over the limit.
+     *
+     * @param uuid {@link UUID} of the rewarded player
+     * @param action The action type (ex. break, kill)
+     * @return boolean If the reward may be given
+     */
+    public boolean tryAcquire(UUID uuid, String action) {
+        int index = indexOf(action);
+
+        if (index < 0 || rates[index] <= 0) {
+            return true;
+        }
+
+        Bucket[] playerBuckets = buckets.get(uuid);
+
+        if (playerBuckets == null) {
+            playerBuckets = new Bucket[ACTIONS.length];
+            buckets.put(uuid, playerBuckets);
+        }
+
+        long now = System.nanoTime();
+        Bucket bucket = playerBuckets[index];
+
+        if (bucket == null) {
+            bucket = new Bucket(bursts[index], now);
+            playerBuckets[index] = bucket;
+        } else {
+            bucket.tokens = Math.min(bursts[index], bucket.tokens + (now - bucket.lastRefill) / 1e9 * rates[index]);
+            bucket.lastRefill = now;
+        }
+
+        if (bucket.tokens >= 1) {
+            bucket.tokens--;
+
+            return true;
+        }
+
+        dropped[index].incrementAndGet();
+
+        return false;
+    }
+
+    /**
+     * Get the number of rewards dropped for an action type since the server started.
+     *
+     * @param action The action type (ex. break, kill)
+     * @return long The number of dropped rewards
+     */
+    public long getDroppedRewards(String action) {
+        int index = indexOf(action);
+
+        return index < 0 ? 0 : dropped[index].get();
+    }
+
+    /**
+     * Get the number of rewards dropped for all action types since the server started.
+     *
+     * @return long The number of dropped rewards
+     */
+    public long getDroppedRewards() {
+        long total = 0;
+
+        for (AtomicLong count : dropped) {
+            total += count.get();
+        }
+
+        return total;
+    }
+
+    /**
+     * Forget the buckets of a player, for example when they leave the server.
+     *
+     * @param uuid {@link UUID} of the player
+     */
+    public void remove(UUID uuid) {
+        buckets.remove(uuid);
+    }
+
+    private int indexOf(String action) {
+        for (int i = 0; i < ACTIONS.length; i++) {
+            if (ACTIONS[i].equals(action)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static class Bucket {
+        private double tokens;
+        private long lastRefill;
+
+        Bucket(double tokens, long lastRefill) {
+            this.tokens = tokens;
+            this.lastRefill = lastRefill;
+        }
+    }
+}
@@ -30,7 +30,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ninja.leaping.configurate.ConfigurationNode;
 import org.slf4j.Logger;
@@ -48,6 +48,10 @@ public class TEAction {
 
     private TEActionReward reward;
 
+    // Final rewards per block state. Block states are immutable and interned, so the state itself is the key.
+    private final Map<BlockState, Optional<TEActionReward>> breakRewardCache = new ConcurrentHashMap<>();
+    private final Map<BlockState, Optional<TEActionReward>> placeRewardCache = new ConcurrentHashMap<>();
+
     public void loadConfigNode(String action, ConfigurationNode node) {
         ConfigurationNode idTraitNode = node.getNode("idTrait");
         ConfigurationNode growthTraitNode = node.getNode("growthTrait");
@@ -84,37 +88,37 @@ public class TEAction {
         this.growthTrait = growthTraitNode.getString(null);
     }
 
-    public Optional<TEActionReward> evaluateBreak(Logger logger, BlockState state, UUID blockCreator) {
+    public Optional<TEActionReward> evaluateBreak(Logger logger, BlockState state, boolean playerPlaced) {
         // Disqualifying checks first for performance
         if (!state.getType().getId().equals(this.targetId)) {
             return Optional.empty();
         }
 
         // A player placed the block and it doesn't indicate growth. Do not pay to prevent exploits
-        if (growthTrait == null && blockCreator != null) {
+        if (growthTrait == null && playerPlaced) {
             return Optional.empty();
         }
 
-        // Determine base reward. Use complicated way if this block has an ID trait
-        TEActionReward reward = null;
-
-        if (idTrait != null) {
-            Optional<BlockTrait<?>> trait = state.getTrait(idTrait);
+        Optional<TEActionReward> reward = breakRewardCache.get(state);
 
-            if (trait.isPresent()) {
-                Optional<?> traitVal = state.getTraitValue(trait.get());
+        if (reward == null) {
+            reward = resolveBreakReward(logger, state);
+            breakRewardCache.put(state, reward);
+        }
 
-                if (traitVal.isPresent()) {
-                    String key = traitVal.get().toString();
-                    reward = rewards.getOrDefault(key, null);
-                }
-            } else {
-                logger.warn("ID trait \"" + idTrait + "\" not found during action: " + action + ':' + targetId);
-            }
+        return reward;
+    }
 
-        } else {
-            reward = this.reward;
-        }
+    /**
+     * Resolves the reward for breaking a block in the passed in state. Only called once per state, the result is cached.
+     *
+     * @param logger Logger used to report misconfigured traits
+     * @param state The state of the broken block
+     * @return Optional The reward, or empty if the state is not rewarded
+     */
+    private Optional<TEActionReward> resolveBreakReward(Logger logger, BlockState state) {
+        // Determine base reward. Use complicated way if this block has an ID trait
+        TEActionReward reward = resolveBaseReward(logger, state);
 
         if (reward == null) {
             return Optional.empty();
@@ -129,7 +133,7 @@ public class TEAction {
                     Optional<?> traitVal = state.getTraitValue(trait.get());
 
                     if (traitVal.isPresent()) {
-                        reward = generateReward((Integer) traitVal.get(), (Collection<Integer>) trait.get().getPossibleValues());
+                        reward = generateReward(reward, (Integer) traitVal.get(), (Collection<Integer>) trait.get().getPossibleValues());
                     } else {
                         logger.warn("Growth trait \"" + growthTrait + "\" has missing value during action: " + action + ':' + targetId);
                     }
@@ -144,16 +148,39 @@ public class TEAction {
         return Optional.ofNullable(reward);
     }
 
-    private TEActionReward generateReward(Integer traitValue, Collection<Integer> possibleValues) {
+    /**
+     * Resolves the unmodified reward for a block state, using the ID trait if this action has one.
+     *
+     * @param logger Logger used to report misconfigured traits
+     * @param state The block state
+     * @return TEActionReward The base reward; {@code null} if there is none
+     */
+    private TEActionReward resolveBaseReward(Logger logger, BlockState state) {
+        if (idTrait == null) {
+            return this.reward;
+        }
+
+        Optional<BlockTrait<?>> trait = state.getTrait(idTrait);
+
+        if (trait.isPresent()) {
+            Optional<?> traitVal = state.getTraitValue(trait.get());
+
+            if (traitVal.isPresent()) {
+                return rewards.getOrDefault(traitVal.get().toString(), null);
+            }
+        } else {
+            logger.warn("ID trait \"" + idTrait + "\" not found during action: " + action + ':' + targetId);
+        }
+
+        return null;
+    }
+
+    private TEActionReward generateReward(TEActionReward baseReward, Integer traitValue, Collection<Integer> possibleValues) {
         int max = possibleValues.stream().max(Comparator.comparingInt(Integer::intValue)).orElse(0);
         int min = possibleValues.stream().min(Comparator.comparingInt(Integer::intValue)).orElse(0);
         double percent = (double) (traitValue - min) / (double) (max - min);
-        int expReward = (int) (reward.getExpReward() * percent);
-        double moneyReward = reward.getMoneyReward() * percent;
 
-        TEActionReward partialReward = new TEActionReward();
-        partialReward.setValues(expReward, moneyReward, reward.getCurrencyId());
-        return partialReward;
+        return baseReward.scale(percent);
     }
 
     public Optional<TEActionReward> evaluatePlace(Logger logger, BlockState state) {
@@ -162,27 +189,14 @@ public class TEAction {
             return Optional.empty();
         }
 
-        // Determine base reward. Use complicated way if this block has an ID trait
-        TEActionReward reward = null;
-
-        if (idTrait != null) {
-            Optional<BlockTrait<?>> trait = state.getTrait(idTrait);
+        Optional<TEActionReward> reward = placeRewardCache.get(state);
 
-            if (trait.isPresent()) {
-                Optional<?> traitVal = state.getTraitValue(trait.get());
-
-                if (traitVal.isPresent()) {
-                    String key = traitVal.get().toString();
-                    reward = rewards.getOrDefault(key, null);
-                }
-            } else {
-                logger.warn("ID trait \"" + idTrait + "\" not found during action: " + action + ':' + targetId);
-            }
-        } else {
-            reward = this.reward;
+        if (reward == null) {
+            reward = Optional.ofNullable(resolveBaseReward(logger, state));
+            placeRewardCache.put(state, reward);
         }
 
-        return Optional.ofNullable(reward);
+        return reward;
     }
 
     public boolean isValid() {
@@ -25,6 +25,7 @@
 
 package com.erigitic.jobs;
 
+import java.util.Optional;
 import ninja.leaping.configurate.ConfigurationNode;
 
 public class TEActionReward {
@@ -33,18 +34,128 @@ public class TEActionReward {
     private double moneyReward;
     private String currencyId;
 
+    // Set instead of the fixed values when exp or money is configured as an expression
+    private RewardFormula expFormula;
+    private RewardFormula moneyFormula;
+
+    // Growth percentage of the block (0 to 1) for growing blocks, available to formulas
+    private double growth = 1;
+
     public void loadConfigNode(ConfigurationNode node) {
-        this.expReward = node.getNode("exp").getInt(0);
-        this.moneyReward = node.getNode("money").getDouble(0.00d);
+        this.expFormula = loadFormula(node.getNode("exp"));
+        this.moneyFormula = loadFormula(node.getNode("money"));
+        this.expReward = expFormula == null ? node.getNode("exp").getInt(0) : 0;
+        this.moneyReward = moneyFormula == null ? node.getNode("money").getDouble(0.00d) : 0;
         this.currencyId = node.getNode("currency").getString(null);
     }
 
+    /**
+     * Compile the value of a node if it is an expression rather than a number.
+     *
+     * @param node The exp or money node
+     * @return RewardFormula The compiled expression, null if the value is a number
+     */
+    private static RewardFormula loadFormula(ConfigurationNode node) {
+        Object value = node.getValue();
+
+        if (!(value instanceof String)) {
+            return null;
+        }
+
+        try {
+            Double.parseDouble((String) value);
+
+            return null;
+        } catch (NumberFormatException e) {
+            return RewardFormula.compile((String) value);
+        }
+    }
+
     public void setValues(Integer expReward, Double moneyReward, String currencyID) {
         this.expReward = expReward;
         this.moneyReward = moneyReward;
         this.currencyId = currencyID;
     }
 
+    /**
+     * Create a copy of this reward for a partially grown block. Fixed values are scaled by the growth percentage,
+     * formulas are kept and get the percentage as the growth variable.
+     *
+     * @param percent The growth percentage (0 to 1)
+     * @return TEActionReward The scaled reward
+     */
+    public TEActionReward scale(double percent) {
+        TEActionReward scaledReward = new TEActionReward();
+        scaledReward.setValues((int) (expReward * percent), moneyReward * percent, currencyId);
+        scaledReward.expFormula = expFormula;
+        scaledReward.moneyFormula = moneyFormula;
+        scaledReward.growth = percent;
+
+        return scaledReward;
+    }
+
+    /**
+     * Create a copy of this reward with exp and money multiplied. Formulas are not copied, so only use this on
+     * evaluated rewards.
+     *
+     * @param factor The multiplier
+     * @return TEActionReward The multiplied reward
+     */
+    public TEActionReward multiply(double factor) {
+        TEActionReward multipliedReward = new TEActionReward();
+        multipliedReward.setValues((int) (expReward * factor), moneyReward * factor, currencyId);
+
+        return multipliedReward;
+    }
+
+    /**
+     * Evaluate the formulas of this reward. Negative, infinite and NaN results (ex. division by zero) are treated as 0.
+     *
+     * @param context The values of the variables, except growth which is taken from this reward
+     * @return TEActionReward A reward with fixed values, this reward if it has no formulas
+     */
+    public TEActionReward evaluate(RewardFormula.Context context) {
+        if (!isDynamic()) {
+            return this;
+        }
+
+        context.set(RewardFormula.Variable.GROWTH, growth);
+
+        int exp = expFormula != null ? (int) clampResult(expFormula.evaluate(context)) : expReward;
+        double money = moneyFormula != null ? clampResult(moneyFormula.evaluate(context)) : moneyReward;
+
+        TEActionReward evaluatedReward = new TEActionReward();
+        evaluatedReward.setValues(exp, money, currencyId);
+
+        return evaluatedReward;
+    }
+
+    private double clampResult(double result) {
+        return Double.isFinite(result) ? Math.max(0, result) : 0;
+    }
+
+    public boolean isDynamic() {
+        return expFormula != null || moneyFormula != null;
+    }
+
+    /**
+     * Check if one of the formulas of this reward uses a variable.
+     *
+     * @param variable The variable
+     * @return boolean If the variable is used
+     */
+    public boolean uses(RewardFormula.Variable variable) {
+        return (expFormula != null && expFormula.uses(variable)) || (moneyFormula != null && moneyFormula.uses(variable));
+    }
+
+    public Optional<String> getExpFormula() {
+        return expFormula != null ? Optional.of(expFormula.getSource()) : Optional.empty();
+    }
+
+    public Optional<String> getMoneyFormula() {
+        return moneyFormula != null ? Optional.of(moneyFormula.getSource()) : Optional.empty();
+    }
+
     public Integer getExpReward() {
         return expReward;
     }
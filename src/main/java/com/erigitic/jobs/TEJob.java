@@ -38,11 +38,13 @@ public class TEJob {
     private BigDecimal salary;
     private List<String> sets = new ArrayList<>();
     private JobBasedRequirement requirement;
+    private LevelCurve levelCurve;
     private boolean isValid;
 
     public TEJob(ConfigurationNode node) {
         name = node.getKey().toString();
         salary = new BigDecimal(node.getNode("salary").getString());
+        levelCurve = new LevelCurve(node.getNode("levelexp").getInt(100), node.getNode("maxlevel").getInt(0));
 
         try {
             sets = node.getNode("sets").getList(TypeToken.of(String.class), new ArrayList<>());
@@ -84,6 +86,10 @@ public class TEJob {
         return salary;
     }
 
+    public LevelCurve getLevelCurve() {
+        return levelCurve;
+    }
+
     public Optional<JobBasedRequirement> getRequirement() {
         return Optional.ofNullable(requirement);
     }
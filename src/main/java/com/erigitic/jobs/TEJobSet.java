@@ -26,13 +26,19 @@
 package com.erigitic.jobs;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import ninja.leaping.configurate.ConfigurationNode;
 
 public class TEJobSet {
     private List<TEAction> actions = new ArrayList();
 
+    // Actions by action type and target id, the first action wins for duplicate targets
+    private Map<String, Map<String, TEAction>> actionIndex = new HashMap<>();
+
     public TEJobSet(ConfigurationNode node) {
         node.getChildrenMap().forEach((actionStr, targetNode) -> {
             if ((actionStr instanceof String) &&  targetNode != null) {
@@ -43,6 +49,7 @@ public class TEJobSet {
 
                         if (action.isValid()) {
                             actions.add(action);
+                            actionIndex.computeIfAbsent(action.getAction(), k -> new HashMap<>()).putIfAbsent(action.getTargetId(), action);
                         }
                     }
                 });
@@ -51,10 +58,17 @@ public class TEJobSet {
     }
 
     public Optional<TEAction> getActionFor(String action, String targetID) {
-        return actions.stream()
-                .filter(teAction -> teAction.getAction().equals(action))
-                .filter(teAction -> teAction.getTargetId().equals(targetID))
-                .findFirst();
+        return Optional.ofNullable(getActionsFor(action).get(targetID));
+    }
+
+    /**
+     * Get all actions of a type.
+     *
+     * @param action The action type (ex. kill)
+     * @return Map The actions by target id
+     */
+    public Map<String, TEAction> getActionsFor(String action) {
+        return actionIndex.getOrDefault(action, Collections.emptyMap());
     }
 
     public List<TEAction> getActions() {
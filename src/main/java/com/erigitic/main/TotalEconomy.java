@@ -29,6 +29,7 @@ import com.erigitic.commands.AdminPayCommand;
 import com.erigitic.commands.BalanceCommand;
 import com.erigitic.commands.BalanceTopCommand;
 import com.erigitic.commands.JobCommand;
+import com.erigitic.commands.MarketCommand;
 import com.erigitic.commands.PayCommand;
 import com.erigitic.commands.SetBalanceCommand;
 import com.erigitic.commands.ShopCommand;
@@ -37,6 +38,7 @@ import com.erigitic.config.AccountManager;
 import com.erigitic.config.TECurrency;
 import com.erigitic.config.TECurrencyRegistryModule;
 import com.erigitic.jobs.JobManager;
+import com.erigitic.market.MarketManager;
 import com.erigitic.shops.PlayerShopInfo;
 import com.erigitic.shops.Shop;
 import com.erigitic.shops.ShopItem;
@@ -121,6 +123,7 @@ public class TotalEconomy {
     private JobManager jobManager;
     private MessageManager messageManager;
     private ShopManager shopManager;
+    private MarketManager marketManager;
 
     private TECurrencyRegistryModule teCurrencyRegistryModule;
 
@@ -137,6 +140,7 @@ public class TotalEconomy {
 
     // Shop Variables
     private boolean chestShopEnabled = true;
+    private boolean marketEnabled = true;
 
     // Database Variables
     private boolean databaseEnabled = false;
@@ -167,7 +171,7 @@ public class TotalEconomy {
             sqlManager = new SqlManager(this, logger);
         }
 
-        messageManager = new MessageManager(this, logger, Locale.forLanguageTag(languageTag));
+        messageManager = new MessageManager(this, logger, Locale.forLanguageTag(languageTag), config.getNode("per-player-language").getBoolean(false));
         accountManager = new AccountManager(this, messageManager, logger);
         teCurrencyRegistryModule = new TECurrencyRegistryModule(this);
 
@@ -183,7 +187,11 @@ public class TotalEconomy {
         }
 
         if (chestShopEnabled) {
-            shopManager = new ShopManager(this, accountManager, messageManager);
+            shopManager = new ShopManager(this, accountManager, messageManager, logger);
+        }
+
+        if (marketEnabled) {
+            marketManager = new MarketManager(this, accountManager, messageManager, logger);
         }
 
         // Allows for retrieving of all/individual currencies in Total Economy by other plugins
@@ -208,10 +216,26 @@ public class TotalEconomy {
     public void onServerStopping(GameStoppingServerEvent event) {
         logger.info("Total Economy Stopping");
 
+        // Pays out market trades, so it has to happen before the accounts are saved
+        if (marketEnabled) {
+            marketManager.shutdown();
+        }
+
         if (!databaseEnabled) {
             accountManager.saveConfiguration();
         }
 
+        if (jobFeatureEnabled) {
+            jobManager.getPlacedBlockTracker().save();
+        }
+
+        if (chestShopEnabled) {
+            shopManager.getLedger().flush();
+            shopManager.getSettlementQueue().save();
+            shopManager.getShopRegistry().save();
+            shopManager.getSearchIndex().save();
+        }
+
         // Remove PlayerShopInfoData from all online users
         for (Player player : game.getServer().getOnlinePlayers()) {
             checkForAndRemovePlayerShopInfoData(player);
@@ -232,6 +256,15 @@ public class TotalEconomy {
         checkForAndRemovePlayerShopInfoData(player);
     }
 
+    @Listener
+    public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event) {
+        accountManager.unloadUserOptions(event.getTargetEntity().getUniqueId());
+
+        if (jobFeatureEnabled) {
+            jobManager.unloadPlayer(event.getTargetEntity().getUniqueId());
+        }
+    }
+
     /**
      * Reloads configuration files.
      *
@@ -271,6 +304,10 @@ public class TotalEconomy {
         dm.registerBuilder(ShopItem.class, new ShopItem.Builder());
         dm.registerBuilder(PlayerShopInfo.class, new PlayerShopInfo.Builder());
 
+        // ShopItem prices changed from a double amount to minor units in content version 2
+        dm.registerContentUpdater(ShopItem.class, new ShopItem.PriceUpdater());
+        dm.registerContentUpdater(ShopItemData.class, new ShopItemData.PriceUpdater());
+
         DataRegistration.builder()
                 .dataClass(ShopData.class)
                 .immutableClass(ImmutableShopData.class)
@@ -318,6 +355,10 @@ public class TotalEconomy {
         if (chestShopEnabled) {
             game.getCommandManager().register(this, new ShopCommand().commandSpec(), "shop");
         }
+
+        if (marketEnabled) {
+            game.getCommandManager().register(this, new MarketCommand().commandSpec(), "market");
+        }
     }
 
     /**
@@ -362,10 +403,18 @@ public class TotalEconomy {
 
         if (jobFeatureEnabled) {
             eventManager.registerListeners(this, jobManager);
+            eventManager.registerListeners(this, jobManager.getPlacedBlockTracker());
+            eventManager.registerListeners(this, jobManager.getJobSignRegistry());
         }
 
         if (chestShopEnabled) {
             eventManager.registerListeners(this, shopManager);
+            eventManager.registerListeners(this, shopManager.getShopRegistry());
+            eventManager.registerListeners(this, shopManager.getSettlementQueue());
+        }
+
+        if (marketEnabled) {
+            eventManager.registerListeners(this, marketManager);
         }
     }
 
@@ -379,6 +428,7 @@ public class TotalEconomy {
         databaseEnabled = config.getNode("database", "enable").getBoolean(false);
         moneyCapEnabled = config.getNode("features", "moneycap", "enable").getBoolean(true);
         chestShopEnabled = config.getNode("features", "shops", "chestshop", "enable").getBoolean(true);
+        marketEnabled = config.getNode("features", "shops", "market", "enable").getBoolean(true);
     }
 
     private void checkForAndRemovePlayerShopInfoData(Player player) {
@@ -409,6 +459,14 @@ public class TotalEconomy {
         return shopManager;
     }
 
+    public MarketManager getMarketManager() {
+        return marketManager;
+    }
+
+    public ConfigurationNode getJobNode() {
+        return config.getNode("features", "jobs");
+    }
+
     public ConfigurationNode getShopNode() {
         return config.getNode("features", "shops");
     }
@@ -0,0 +1,860 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.market;
+
+import com.erigitic.config.AccountManager;
+import com.erigitic.config.TEAccount;
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.shops.ShopItem;
+import com.erigitic.shops.ShopLedger;
+import com.erigitic.util.InventoryUtils;
+import com.erigitic.util.MessageManager;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.slf4j.Logger;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.data.DataView;
+import org.spongepowered.api.data.key.Keys;
+import org.spongepowered.api.data.persistence.DataTranslators;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.event.filter.Getter;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
+import org.spongepowered.api.item.inventory.Inventory;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
+import org.spongepowered.api.item.inventory.entity.Hotbar;
+import org.spongepowered.api.item.inventory.query.QueryOperationTypes;
+import org.spongepowered.api.item.inventory.type.GridInventory;
+import org.spongepowered.api.service.economy.transaction.ResultType;
+import org.spongepowered.api.service.economy.transaction.TransactionResult;
+import org.spongepowered.api.text.Text;
+
+/**
+ * Player to player market with an order book per item. Buy orders put their money in escrow and sell orders their
+ * items, so a trade never has to touch the inventory or balance of a player who may be offline. Sellers are paid in
+ * batches every second, bought items wait as claims until the buyer is online and has room for them. Orders, unpaid
+ * money and claims are persisted in market.conf. Every change queues a save, which takes a snapshot on the next tick
+ * and writes it off the main thread.
+ *
+ * <p>Only accessed from the main thread.</p>
+ */
+public class MarketManager {
+
+    private static final DataQuery COUNT_QUERY = DataQuery.of("Count");
+    private static final DataQuery DAMAGE_QUERY = DataQuery.of("UnsafeDamage");
+
+    // Settlements run every second
+    private static final int CAPPED_RETRY_RUNS = 60;
+
+    public enum Status {
+        SUCCESS, INVALID, LIMIT, INSUFFICIENT_FUNDS, INSUFFICIENT_ITEMS, NOT_FOUND
+    }
+
+    private TotalEconomy totalEconomy;
+    private AccountManager accountManager;
+    private MessageManager messageManager;
+    private Logger logger;
+
+    private File marketFile;
+    private ConfigurationLoader<CommentedConfigurationNode> loader;
+    private boolean savePending = false;
+    private long saveVersion = 0;
+
+    // Version of the last snapshot written to the file, guarded by the loader
+    private long writtenVersion = 0;
+
+    private final int maxOrders;
+
+    // Item price limits in minor units of the default currency
+    private final long minPrice;
+    private final long maxPrice;
+
+    private long nextId = 1;
+
+    // Order books by item key
+    private final Map<String, OrderBook> books = new HashMap<>();
+
+    // Open orders by id
+    private final Map<Long, MarketOrder> orders = new HashMap<>();
+
+    // Ids of open orders by owner, oldest first
+    private final Map<UUID, Set<Long>> ordersByOwner = new HashMap<>();
+
+    // Money owed to players in minor units, paid out by the next settlement
+    private final Map<UUID, Long> credits = new HashMap<>();
+
+    // Money of settlements that are being paid, saved until the deposits finished so a crash can not lose it
+    private final Map<UUID, Long> inFlight = new HashMap<>();
+
+    // Players whose balance was at the money cap on the last settlement
+    private final Set<UUID> capped = new HashSet<>();
+    private long settleRuns = 0;
+
+    // Items waiting to be delivered, by player
+    private final Map<UUID, List<Claim>> claims = new HashMap<>();
+
+    public MarketManager(TotalEconomy totalEconomy, AccountManager accountManager, MessageManager messageManager, Logger logger) {
+        this.totalEconomy = totalEconomy;
+        this.accountManager = accountManager;
+        this.messageManager = messageManager;
+        this.logger = logger;
+
+        maxOrders = totalEconomy.getShopNode().getNode("market", "max-orders").getInt(50);
+        minPrice = ShopItem.toMinorUnits(BigDecimal.valueOf(totalEconomy.getShopNode().getNode("min-item-price").getDouble(0)), totalEconomy.getDefaultCurrency());
+        maxPrice = ShopItem.toMinorUnits(BigDecimal.valueOf(totalEconomy.getShopNode().getNode("max-item-price").getDouble(1000000000)), totalEconomy.getDefaultCurrency());
+
+        marketFile = new File(totalEconomy.getConfigDir(), "market.conf");
+        loader = HoconConfigurationLoader.builder().setFile(marketFile).build();
+
+        load();
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .interval(1, TimeUnit.SECONDS)
+                .execute(this::settle)
+                .name("Settle Market Trades")
+                .submit(totalEconomy);
+    }
+
+    private void load() {
+        if (!marketFile.exists()) {
+            return;
+        }
+
+        try {
+            ConfigurationNode marketConfig = loader.load();
+            List<MarketOrder> loadedOrders = new ArrayList<>();
+
+            nextId = marketConfig.getNode("next-id").getLong(1);
+
+            for (Map.Entry<Object, ? extends ConfigurationNode> orderEntry : marketConfig.getNode("orders").getChildrenMap().entrySet()) {
+                ConfigurationNode orderNode = orderEntry.getValue();
+                Optional<ItemStackSnapshot> itemOpt = readItem(orderNode.getNode("item"));
+
+                if (!itemOpt.isPresent()) {
+                    logger.warn("[TE] Could not load the item of market order #" + orderEntry.getKey() + ", the order was skipped.");
+                    continue;
+                }
+
+                loadedOrders.add(new MarketOrder(
+                        Long.parseLong(orderEntry.getKey().toString()),
+                        UUID.fromString(orderNode.getNode("owner").getString()),
+                        MarketOrder.Side.valueOf(orderNode.getNode("side").getString()),
+                        getItemKey(itemOpt.get()),
+                        itemOpt.get(),
+                        orderNode.getNode("price").getLong(),
+                        orderNode.getNode("quantity").getInt(),
+                        orderNode.getNode("remaining").getInt(),
+                        orderNode.getNode("time").getLong()
+                ));
+            }
+
+            // Orders have to be added in the order they were placed to keep time priority
+            loadedOrders.sort(Comparator.comparingLong(MarketOrder::getId));
+            for (MarketOrder order : loadedOrders) {
+                books.computeIfAbsent(order.getItemKey(), key -> new OrderBook()).add(order);
+                addOrder(order);
+            }
+
+            marketConfig.getNode("credits").getChildrenMap().forEach((uuid, amountNode) ->
+                    credits.put(UUID.fromString(uuid.toString()), amountNode.getLong())
+            );
+
+            // A settlement was interrupted, it is not known which of its deposits were made so it is paid again
+            Map<Object, ? extends ConfigurationNode> inFlightNodes = marketConfig.getNode("in-flight").getChildrenMap();
+
+            if (!inFlightNodes.isEmpty()) {
+                logger.warn("[TE] The market was stopped while paying out " + inFlightNodes.size() + " players, their payments will be made again.");
+
+                inFlightNodes.forEach((uuid, amountNode) -> credit(UUID.fromString(uuid.toString()), amountNode.getLong()));
+            }
+
+            for (Map.Entry<Object, ? extends ConfigurationNode> claimEntry : marketConfig.getNode("claims").getChildrenMap().entrySet()) {
+                UUID playerUniqueId = UUID.fromString(claimEntry.getKey().toString());
+
+                for (ConfigurationNode claimNode : claimEntry.getValue().getChildrenList()) {
+                    readItem(claimNode.getNode("item")).ifPresent(item -> addClaim(playerUniqueId, item, claimNode.getNode("quantity").getInt()));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("An error occurred while loading the market configuration file!");
+            e.printStackTrace();
+        }
+    }
+
+    private Optional<ItemStackSnapshot> readItem(ConfigurationNode itemNode) {
+        if (itemNode.isVirtual()) {
+            return Optional.empty();
+        }
+
+        return Sponge.getDataManager().deserialize(ItemStackSnapshot.class, DataTranslators.CONFIGURATION_NODE.translate(itemNode));
+    }
+
+    private ConfigurationNode createSaveNode() {
+        ConfigurationNode marketConfig = loader.createEmptyNode();
+
+        marketConfig.getNode("next-id").setValue(nextId);
+
+        for (MarketOrder order : orders.values()) {
+            ConfigurationNode orderNode = marketConfig.getNode("orders", String.valueOf(order.getId()));
+
+            orderNode.getNode("owner").setValue(order.getOwner().toString());
+            orderNode.getNode("side").setValue(order.getSide().name());
+            orderNode.getNode("price").setValue(order.getPrice());
+            orderNode.getNode("quantity").setValue(order.getQuantity());
+            orderNode.getNode("remaining").setValue(order.getRemaining());
+            orderNode.getNode("time").setValue(order.getTime());
+            orderNode.getNode("item").setValue(DataTranslators.CONFIGURATION_NODE.translate(order.getItem().toContainer()));
+        }
+
+        credits.forEach((uuid, amount) -> marketConfig.getNode("credits", uuid.toString()).setValue(amount));
+        inFlight.forEach((uuid, amount) -> marketConfig.getNode("in-flight", uuid.toString()).setValue(amount));
+
+        claims.forEach((uuid, playerClaims) -> {
+            for (Claim claim : playerClaims) {
+                ConfigurationNode claimNode = marketConfig.getNode("claims", uuid.toString()).getAppendedNode();
+
+                claimNode.getNode("quantity").setValue(claim.quantity);
+                claimNode.getNode("item").setValue(DataTranslators.CONFIGURATION_NODE.translate(claim.item.toContainer()));
+            }
+        });
+
+        return marketConfig;
+    }
+
+    /**
+     * Queue a save of the market for the next tick, so all changes made during a tick are written together. Snapshots
+     * are written in the order they were taken, a snapshot finishing after a newer one is dropped.
+     */
+    private void requestSave() {
+        if (savePending) {
+            return;
+        }
+
+        savePending = true;
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .execute(() -> {
+                    savePending = false;
+
+                    ConfigurationNode marketConfig = createSaveNode();
+                    long version = ++saveVersion;
+
+                    totalEconomy.getGame().getScheduler().createTaskBuilder()
+                            .async()
+                            .execute(() -> write(marketConfig, version))
+                            .name("Save Market")
+                            .submit(totalEconomy);
+                })
+                .name("Queue Market Save")
+                .submit(totalEconomy);
+    }
+
+    /**
+     * Save the market right away on the calling thread.
+     */
+    private void save() {
+        write(createSaveNode(), ++saveVersion);
+    }
+
+    private void write(ConfigurationNode marketConfig, long version) {
+        synchronized (loader) {
+            if (version < writtenVersion) {
+                return;
+            }
+
+            try {
+                loader.save(marketConfig);
+                writtenVersion = version;
+            } catch (IOException e) {
+                logger.warn("An error occurred while saving the market configuration file!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Pay out what is owed and save the market right away. Used when the server stops.
+     */
+    public void shutdown() {
+        if (!credits.isEmpty()) {
+            Map<UUID, Long> batch = new HashMap<>(credits);
+            startSettlement(batch);
+            save();
+
+            finishSettlement(batch, accountManager.creditBalances(totalEconomy.getDefaultCurrency(), toAmounts(batch), false));
+        }
+
+        save();
+    }
+
+    /**
+     * Place an order and match it against the book of its item. Bids have their money withdrawn and asks have their
+     * items taken from the player's inventory before matching. Whatever is not traded right away stays on the market.
+     *
+     * @param player The player placing the order
+     * @param side Whether to buy or sell
+     * @param item The item to trade, the quantity of the stack is ignored
+     * @param quantity The quantity to trade
+     * @param price The price of one item in minor units of the default currency, limited to the shop price limits
+     * @param cause The cause of the escrow withdraw
+     * @return Status The outcome
+     */
+    public Status placeOrder(Player player, MarketOrder.Side side, ItemStack item, int quantity, long price, Cause cause) {
+        price = Math.max(minPrice, Math.min(maxPrice, price));
+
+        if (quantity <= 0 || price <= 0) {
+            return Status.INVALID;
+        }
+
+        if (ordersByOwner.getOrDefault(player.getUniqueId(), Collections.emptySet()).size() >= maxOrders) {
+            return Status.LIMIT;
+        }
+
+        ItemStack template = item.copy();
+        template.setQuantity(1);
+
+        if (side == MarketOrder.Side.BID) {
+            long total;
+
+            try {
+                total = Math.multiplyExact(price, quantity);
+            } catch (ArithmeticException e) {
+                return Status.INVALID;
+            }
+
+            TEAccount account = (TEAccount) accountManager.getOrCreateAccount(player.getUniqueId()).get();
+            TransactionResult withdrawResult = account.withdraw(totalEconomy.getDefaultCurrency(), ShopItem.toAmount(total, totalEconomy.getDefaultCurrency()), cause);
+
+            if (withdrawResult.getResult() != ResultType.SUCCESS) {
+                return Status.INSUFFICIENT_FUNDS;
+            }
+        } else {
+            if (InventoryUtils.getItemAmountInInventory(player.getInventory(), item) < quantity) {
+                return Status.INSUFFICIENT_ITEMS;
+            }
+
+            InventoryUtils.removeItem(player.getInventory(), item, quantity);
+        }
+
+        ItemStackSnapshot templateSnapshot = template.createSnapshot();
+        String itemKey = getItemKey(templateSnapshot);
+        MarketOrder order = new MarketOrder(nextId++, player.getUniqueId(), side, itemKey, templateSnapshot, price, quantity, quantity, System.currentTimeMillis());
+        OrderBook book = books.computeIfAbsent(itemKey, key -> new OrderBook());
+        Set<UUID> buyers = new HashSet<>();
+        int traded = 0;
+
+        for (OrderBook.Fill fill : book.match(order)) {
+            MarketOrder maker = fill.getMaker();
+            long amount = fill.getPrice() * fill.getQuantity();
+            MarketOrder bid = side == MarketOrder.Side.BID ? order : maker;
+            MarketOrder ask = side == MarketOrder.Side.BID ? maker : order;
+
+            // The seller is paid at the price of the resting order, a buyer who bid more gets the difference back
+            credit(ask.getOwner(), amount);
+
+            if (bid.getPrice() > fill.getPrice()) {
+                credit(bid.getOwner(), (bid.getPrice() - fill.getPrice()) * fill.getQuantity());
+            }
+
+            addClaim(bid.getOwner(), ask.getItem(), fill.getQuantity());
+            buyers.add(bid.getOwner());
+            traded += fill.getQuantity();
+
+            if (maker.isFilled()) {
+                removeOrder(maker);
+            }
+
+            Sponge.getServer().getPlayer(maker.getOwner()).ifPresent(makerPlayer -> sendFilled(makerPlayer, maker, fill.getQuantity()));
+        }
+
+        if (traded > 0) {
+            sendFilled(player, order, traded);
+        }
+
+        if (!order.isFilled()) {
+            book.add(order);
+            addOrder(order);
+
+            Map<String, String> messageValues = new HashMap<>();
+            messageValues.put("id", String.valueOf(order.getId()));
+            messageValues.put("quantity", String.valueOf(order.getRemaining()));
+            messageValues.put("item", getItemName(order.getItem()));
+            messageValues.put("price", formatPrice(order.getPrice()));
+
+            player.sendMessage(messageManager.getMessage(player, side == MarketOrder.Side.BID ? "market.order.bid" : "market.order.ask", messageValues));
+        } else if (book.isEmpty()) {
+            books.remove(itemKey);
+        }
+
+        for (UUID buyer : buyers) {
+            Sponge.getServer().getPlayer(buyer).ifPresent(this::deliver);
+        }
+
+        requestSave();
+
+        return Status.SUCCESS;
+    }
+
+    /**
+     * Cancel an open order of a player. The money held for a bid is paid back and the items held for an ask are
+     * returned as a claim.
+     *
+     * @param player The player cancelling the order
+     * @param id The id of the order
+     * @return Status SUCCESS, or NOT_FOUND if the player has no open order with the id
+     */
+    public Status cancelOrder(Player player, long id) {
+        MarketOrder order = orders.get(id);
+
+        if (order == null || !order.getOwner().equals(player.getUniqueId())) {
+            return Status.NOT_FOUND;
+        }
+
+        OrderBook book = books.get(order.getItemKey());
+
+        if (book != null) {
+            book.remove(order);
+
+            if (book.isEmpty()) {
+                books.remove(order.getItemKey());
+            }
+        }
+
+        removeOrder(order);
+
+        if (order.getSide() == MarketOrder.Side.BID) {
+            credit(order.getOwner(), order.getPrice() * order.getRemaining());
+        } else {
+            addClaim(order.getOwner(), order.getItem(), order.getRemaining());
+            deliver(player);
+        }
+
+        requestSave();
+
+        return Status.SUCCESS;
+    }
+
+    private void addOrder(MarketOrder order) {
+        orders.put(order.getId(), order);
+        ordersByOwner.computeIfAbsent(order.getOwner(), uuid -> new LinkedHashSet<>()).add(order.getId());
+
+    }
+
+    private void removeOrder(MarketOrder order) {
+        orders.remove(order.getId());
+
+        Set<Long> ownerOrders = ordersByOwner.get(order.getOwner());
+
+        if (ownerOrders != null) {
+            ownerOrders.remove(order.getId());
+
+            if (ownerOrders.isEmpty()) {
+                ordersByOwner.remove(order.getOwner());
+            }
+        }
+    }
+
+    /**
+     * Get the open orders of a player.
+     *
+     * @param owner The {@link UUID} of the player
+     * @return List The orders, oldest first
+     */
+    public List<MarketOrder> getOrders(UUID owner) {
+        List<MarketOrder> ownerOrders = new ArrayList<>();
+
+        for (Long id : ordersByOwner.getOrDefault(owner, Collections.emptySet())) {
+            ownerOrders.add(orders.get(id));
+        }
+
+        return ownerOrders;
+    }
+
+    /**
+     * Get the order book of an item.
+     *
+     * @param item The item
+     * @return Optional The book, empty if the item has no open orders
+     */
+    public Optional<OrderBook> getBook(ItemStack item) {
+        ItemStack template = item.copy();
+        template.setQuantity(1);
+
+        return Optional.ofNullable(books.get(getItemKey(template.createSnapshot())));
+    }
+
+    /**
+     * Get the key an item is traded under. Besides the item type and variant it covers all other data of the item
+     * (ex. enchantments, potion effects or the entity of a spawn egg), so only identical items trade with each other.
+     *
+     * @param item A single one of the item
+     * @return String The item id and variant, followed by a hash of the rest of the item data
+     */
+    public static String getItemKey(ItemStackSnapshot item) {
+        DataContainer container = item.toContainer();
+        container.remove(COUNT_QUERY);
+
+        StringBuilder canonical = new StringBuilder();
+        appendCanonical(canonical, container);
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hash = new StringBuilder();
+
+            for (int i = 0; i < 8; i++) {
+                hash.append(String.format("%02x", digest[i]));
+            }
+
+            return ShopLedger.getItemKey(item.getType().getId(), container.getInt(DAMAGE_QUERY).orElse(0)) + "#" + hash;
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write item data with the keys of every view sorted, so equal data always gives the same text.
+     */
+    private static void appendCanonical(StringBuilder builder, Object value) {
+        if (value instanceof DataView) {
+            Map<DataQuery, Object> values = ((DataView) value).getValues(false);
+            List<DataQuery> queries = new ArrayList<>(values.keySet());
+            queries.sort(Comparator.comparing(DataQuery::toString));
+
+            builder.append('{');
+
+            for (DataQuery query : queries) {
+                builder.append(query).append('=');
+                appendCanonical(builder, values.get(query));
+                builder.append(',');
+            }
+
+            builder.append('}');
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            List<Object> keys = new ArrayList<>(map.keySet());
+            keys.sort(Comparator.comparing(Object::toString));
+
+            builder.append('{');
+
+            for (Object key : keys) {
+                builder.append(key).append('=');
+                appendCanonical(builder, map.get(key));
+                builder.append(',');
+            }
+
+            builder.append('}');
+        } else if (value instanceof List) {
+            builder.append('[');
+
+            for (Object element : (List<?>) value) {
+                appendCanonical(builder, element);
+                builder.append(',');
+            }
+
+            builder.append(']');
+        } else {
+            builder.append(value);
+        }
+    }
+
+    private void credit(UUID player, long amount) {
+        if (amount > 0) {
+            credits.merge(player, amount, Long::sum);
+        }
+    }
+
+    private Map<UUID, BigDecimal> toAmounts(Map<UUID, Long> batch) {
+        Map<UUID, BigDecimal> amounts = new HashMap<>();
+
+        batch.forEach((uuid, amount) -> amounts.put(uuid, ShopItem.toAmount(amount, totalEconomy.getDefaultCurrency())));
+
+        return amounts;
+    }
+
+    /**
+     * Pay out everything owed as one batch. With the database enabled the deposits run off the main thread.
+     */
+    private void settle() {
+        // Retry players at the money cap only once a minute
+        if (++settleRuns % CAPPED_RETRY_RUNS == 0) {
+            capped.clear();
+        }
+
+        Map<UUID, Long> batch = new HashMap<>();
+
+        for (Map.Entry<UUID, Long> credit : credits.entrySet()) {
+            if (!capped.contains(credit.getKey())) {
+                batch.put(credit.getKey(), credit.getValue());
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, BigDecimal> amounts = toAmounts(batch);
+
+        startSettlement(batch);
+        requestSave();
+
+        if (totalEconomy.isDatabaseEnabled()) {
+            totalEconomy.getGame().getScheduler().createTaskBuilder()
+                    .async()
+                    .execute(() -> {
+                        Map<UUID, ResultType> results = accountManager.creditBalances(totalEconomy.getDefaultCurrency(), amounts, false);
+
+                        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                                .execute(() -> finishSettlement(batch, results))
+                                .submit(totalEconomy);
+                    })
+                    .name("Settle Market Trades - Deposit")
+                    .submit(totalEconomy);
+        } else {
+            finishSettlement(batch, accountManager.creditBalances(totalEconomy.getDefaultCurrency(), amounts, false));
+        }
+    }
+
+    /**
+     * Move a batch from the money owed to the money being paid. It stays in the saved file until the settlement
+     * finished, a settlement that was interrupted by a crash is paid again on the next start.
+     */
+    private void startSettlement(Map<UUID, Long> batch) {
+        for (Map.Entry<UUID, Long> entry : batch.entrySet()) {
+            credits.remove(entry.getKey());
+            inFlight.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+    }
+
+    private void finishSettlement(Map<UUID, Long> batch, Map<UUID, ResultType> results) {
+        for (Map.Entry<UUID, Long> entry : batch.entrySet()) {
+            UUID uuid = entry.getKey();
+            long amount = entry.getValue();
+            ResultType result = results.getOrDefault(uuid, ResultType.FAILED);
+
+            if (inFlight.merge(uuid, -amount, Long::sum) <= 0) {
+                inFlight.remove(uuid);
+            }
+
+            if (result != ResultType.SUCCESS) {
+                // Players at the money cap keep what they are owed until they have room for it
+                if (result == ResultType.ACCOUNT_NO_SPACE) {
+                    capped.add(uuid);
+                } else {
+                    logger.warn("[TE] Could not pay " + ShopItem.toAmount(amount, totalEconomy.getDefaultCurrency()) + " of market trades to " + uuid + ", it will be retried.");
+                }
+
+                credit(uuid, amount);
+            }
+        }
+
+        requestSave();
+    }
+
+    private void addClaim(UUID player, ItemStackSnapshot item, int quantity) {
+        List<Claim> playerClaims = claims.computeIfAbsent(player, uuid -> new ArrayList<>());
+        String itemKey = getItemKey(item);
+
+        for (Claim claim : playerClaims) {
+            if (claim.itemKey.equals(itemKey)) {
+                claim.quantity += quantity;
+                return;
+            }
+        }
+
+        playerClaims.add(new Claim(item, itemKey, quantity));
+    }
+
+    public boolean hasClaims(UUID player) {
+        return claims.containsKey(player);
+    }
+
+    /**
+     * Deliver the items waiting for a player, as far as their inventory has room.
+     *
+     * @param player The player
+     * @return int The number of items still waiting
+     */
+    public int deliver(Player player) {
+        List<Claim> playerClaims = claims.get(player.getUniqueId());
+
+        if (playerClaims == null) {
+            return 0;
+        }
+
+        Inventory inventory = player.getInventory().query(QueryOperationTypes.INVENTORY_TYPE.of(GridInventory.class), QueryOperationTypes.INVENTORY_TYPE.of(Hotbar.class));
+        Iterator<Claim> claimIterator = playerClaims.iterator();
+        int delivered = 0;
+        int waiting = 0;
+        boolean full = false;
+
+        while (claimIterator.hasNext()) {
+            Claim claim = claimIterator.next();
+
+            while (!full && claim.quantity > 0) {
+                ItemStack stack = claim.item.createStack();
+                stack.setQuantity(Math.min(claim.quantity, stack.getMaxStackQuantity()));
+
+                int rejected = 0;
+
+                for (ItemStackSnapshot rejectedItem : inventory.offer(stack.copy()).getRejectedItems()) {
+                    rejected += rejectedItem.getQuantity();
+                }
+
+                claim.quantity -= stack.getQuantity() - rejected;
+                delivered += stack.getQuantity() - rejected;
+                full = rejected > 0;
+            }
+
+            if (claim.quantity <= 0) {
+                claimIterator.remove();
+            } else {
+                waiting += claim.quantity;
+            }
+        }
+
+        if (playerClaims.isEmpty()) {
+            claims.remove(player.getUniqueId());
+        }
+
+        if (delivered > 0) {
+            Map<String, String> messageValues = new HashMap<>();
+            messageValues.put("quantity", String.valueOf(delivered));
+
+            player.sendMessage(messageManager.getMessage(player, "market.claim.delivered", messageValues));
+            requestSave();
+        }
+
+        if (waiting > 0) {
+            Map<String, String> messageValues = new HashMap<>();
+            messageValues.put("quantity", String.valueOf(waiting));
+
+            player.sendMessage(messageManager.getMessage(player, "market.claim.waiting", messageValues));
+        }
+
+        return waiting;
+    }
+
+    /**
+     * Deliver items bought while a player was offline when they join.
+     *
+     * @param event ClientConnectionEvent.Join
+     * @param player The player who joined
+     */
+    @Listener
+    public void onPlayerJoin(ClientConnectionEvent.Join event, @Getter("getTargetEntity") Player player) {
+        if (hasClaims(player.getUniqueId())) {
+            deliver(player);
+        }
+    }
+
+    private void sendFilled(Player player, MarketOrder order, int quantity) {
+        Map<String, String> messageValues = new HashMap<>();
+        messageValues.put("id", String.valueOf(order.getId()));
+        messageValues.put("quantity", String.valueOf(quantity));
+        messageValues.put("item", getItemName(order.getItem()));
+
+        player.sendMessage(messageManager.getMessage(player, "market.order.filled", messageValues));
+    }
+
+    /**
+     * Tell a player why their order could not be placed or cancelled.
+     *
+     * @param player The player
+     * @param status The outcome of placing or cancelling the order
+     */
+    public void sendFailure(Player player, Status status) {
+        Map<String, String> messageValues = new HashMap<>();
+        messageValues.put("limit", String.valueOf(maxOrders));
+
+        switch (status) {
+            case LIMIT:
+                player.sendMessage(messageManager.getMessage(player, "market.order.limit", messageValues));
+                break;
+            case INSUFFICIENT_FUNDS:
+                player.sendMessage(messageManager.getMessage(player, "market.order.insufficientfunds"));
+                break;
+            case INSUFFICIENT_ITEMS:
+                player.sendMessage(messageManager.getMessage(player, "market.order.insufficientitems"));
+                break;
+            case NOT_FOUND:
+                player.sendMessage(messageManager.getMessage(player, "market.order.notfound"));
+                break;
+            default:
+                player.sendMessage(messageManager.getMessage(player, "market.order.invalid"));
+                break;
+        }
+    }
+
+    public String getItemName(ItemStackSnapshot item) {
+        return item.get(Keys.DISPLAY_NAME).orElse(Text.of(item.getTranslation())).toPlain();
+    }
+
+    public String formatPrice(long price) {
+        return totalEconomy.getDefaultCurrency().format(ShopItem.toAmount(price, totalEconomy.getDefaultCurrency()), 2).toPlain();
+    }
+
+    /**
+     * Items bought by or returned to a player that have not been delivered yet.
+     */
+    private static class Claim {
+
+        private final ItemStackSnapshot item;
+        private final String itemKey;
+        private int quantity;
+
+        Claim(ItemStackSnapshot item, String itemKey, int quantity) {
+            this.item = item;
+            this.itemKey = itemKey;
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.market;
+
+import java.util.UUID;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
+
+/**
+ * An open buy (bid) or sell (ask) order on the market. Bids hold the money for the remaining quantity in escrow, asks
+ * hold the remaining items.
+ */
+public class MarketOrder {
+
+    public enum Side {
+        BID, ASK
+    }
+
+    private final long id;
+    private final UUID owner;
+    private final Side side;
+    private final String itemKey;
+    private final ItemStackSnapshot item;
+    private final long price;
+    private final int quantity;
+    private final long time;
+    private int remaining;
+
+    /**
+     * @param id The order id, ids increase with the time orders are placed
+     * @param owner The {@link UUID} of the player who placed the order
+     * @param side Whether the order buys or sells
+     * @param itemKey The key of the traded item, see {@link MarketManager#getItemKey(ItemStackSnapshot)}
+     * @param item A single one of the traded item. For asks this is the escrowed item buyers receive.
+     * @param price The price of one item in minor units of the default currency
+     * @param quantity The quantity the order was placed for
+     * @param remaining The quantity not traded yet
+     * @param time The time the order was placed at in milliseconds
+     */
+    public MarketOrder(long id, UUID owner, Side side, String itemKey, ItemStackSnapshot item, long price, int quantity, int remaining, long time) {
+        this.id = id;
+        this.owner = owner;
+        this.side = side;
+        this.itemKey = itemKey;
+        this.item = item;
+        this.price = price;
+        this.quantity = quantity;
+        this.remaining = remaining;
+        this.time = time;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public String getItemKey() {
+        return itemKey;
+    }
+
+    public ItemStackSnapshot getItem() {
+        return item;
+    }
+
+    /**
+     * Get the price of one item.
+     *
+     * @return long The price in minor units of the default currency
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getRemaining() {
+        return remaining;
+    }
+
+    void fill(int quantity) {
+        remaining -= quantity;
+    }
+
+    public boolean isFilled() {
+        return remaining <= 0;
+    }
+
+    public long getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.market;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The open orders of one item. Orders are kept in price levels sorted by price, best price first, and within a level in
+ * the order they were placed, so matching and cancelling never have to look at orders that are not involved.
+ */
+public class OrderBook {
+
+    // Highest price first
+    private final TreeMap<Long, Level> bids = new TreeMap<>(Collections.reverseOrder());
+
+    // Lowest price first
+    private final TreeMap<Long, Level> asks = new TreeMap<>();
+
+    private TreeMap<Long, Level> getLevels(MarketOrder.Side side) {
+        return side == MarketOrder.Side.BID ? bids : asks;
+    }
+
+    /**
+     * Add an order to the book. Orders must be added in the order they were placed.
+     *
+     * @param order The order
+     */
+    public void add(MarketOrder order) {
+        Level level = getLevels(order.getSide()).computeIfAbsent(order.getPrice(), price -> new Level());
+
+        level.orders.put(order.getId(), order);
+        level.quantity += order.getRemaining();
+    }
+
+    /**
+     * Remove an order from the book.
+     *
+     * @param order The order
+     * @return boolean Whether the order was in the book
+     */
+    public boolean remove(MarketOrder order) {
+        TreeMap<Long, Level> levels = getLevels(order.getSide());
+        Level level = levels.get(order.getPrice());
+
+        if (level == null || level.orders.remove(order.getId()) == null) {
+            return false;
+        }
+
+        level.quantity -= order.getRemaining();
+
+        if (level.orders.isEmpty()) {
+            levels.remove(order.getPrice());
+        }
+
+        return true;
+    }
+
+    /**
+     * Match an incoming order against the other side of the book. Resting orders are filled best price first, oldest
+     * first within a price, at their own price. Filled resting orders are removed from the book. The incoming order is
+     * not added to the book.
+     *
+     * @param taker The incoming order
+     * @return List The fills, in the order they happened
+     */
+    public List<Fill> match(MarketOrder taker) {
+        List<Fill> fills = new ArrayList<>();
+        boolean buying = taker.getSide() == MarketOrder.Side.BID;
+        Iterator<Map.Entry<Long, Level>> levelIterator = getLevels(buying ? MarketOrder.Side.ASK : MarketOrder.Side.BID).entrySet().iterator();
+
+        while (!taker.isFilled() && levelIterator.hasNext()) {
+            Map.Entry<Long, Level> levelEntry = levelIterator.next();
+            long price = levelEntry.getKey();
+
+            if (buying ? price > taker.getPrice() : price < taker.getPrice()) {
+                break;
+            }
+
+            Level level = levelEntry.getValue();
+            Iterator<MarketOrder> orderIterator = level.orders.values().iterator();
+
+            while (!taker.isFilled() && orderIterator.hasNext()) {
+                MarketOrder maker = orderIterator.next();
+                int quantity = Math.min(taker.getRemaining(), maker.getRemaining());
+
+                maker.fill(quantity);
+                taker.fill(quantity);
+                level.quantity -= quantity;
+
+                if (maker.isFilled()) {
+                    orderIterator.remove();
+                }
+
+                fills.add(new Fill(maker, quantity, price));
+            }
+
+            if (level.orders.isEmpty()) {
+                levelIterator.remove();
+            }
+        }
+
+        return fills;
+    }
+
+    /**
+     * Get the best price levels of one side of the book.
+     *
+     * @param side The side
+     * @param limit The maximum number of levels
+     * @return List Price and total quantity of each level, best price first
+     */
+    public List<Map.Entry<Long, Long>> getDepth(MarketOrder.Side side, int limit) {
+        List<Map.Entry<Long, Long>> depth = new ArrayList<>();
+
+        for (Map.Entry<Long, Level> levelEntry : getLevels(side).entrySet()) {
+            if (depth.size() >= limit) {
+                break;
+            }
+
+            depth.add(new AbstractMap.SimpleImmutableEntry<>(levelEntry.getKey(), levelEntry.getValue().quantity));
+        }
+
+        return depth;
+    }
+
+    public boolean isEmpty() {
+        return bids.isEmpty() && asks.isEmpty();
+    }
+
+    private static class Level {
+
+        // Orders by id, in the order they were placed
+        private final Map<Long, MarketOrder> orders = new LinkedHashMap<>();
+        private long quantity;
+    }
+
+    /**
+     * A trade between an incoming order and an order resting in the book.
+     */
+    public static class Fill {
+
+        private final MarketOrder maker;
+        private final int quantity;
+        private final long price;
+
+        Fill(MarketOrder maker, int quantity, long price) {
+            this.maker = maker;
+            this.quantity = quantity;
+            this.price = price;
+        }
+
+        /**
+         * Get the order that was resting in the book.
+         *
+         * @return MarketOrder The order
+         */
+        public MarketOrder getMaker() {
+            return maker;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        /**
+         * Get the price one item traded at.
+         *
+         * @return long The price in minor units of the default currency
+         */
+        public long getPrice() {
+            return price;
+        }
+    }
+}
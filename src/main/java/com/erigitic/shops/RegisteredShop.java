@@ -0,0 +1,80 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.shops;
+
+import com.erigitic.util.PositionUtils;
+import java.util.UUID;
+
+/**
+ * A chest shop as known by the {@link ShopRegistry}, available without loading the chunk it is in.
+ */
+public class RegisteredShop {
+
+    private final UUID worldUniqueId;
+    private final long position;
+    private final UUID owner;
+    private final String title;
+
+    public RegisteredShop(UUID worldUniqueId, long position, UUID owner, String title) {
+        this.worldUniqueId = worldUniqueId;
+        this.position = position;
+        this.owner = owner;
+        this.title = title;
+    }
+
+    public UUID getWorldUniqueId() {
+        return worldUniqueId;
+    }
+
+    /**
+     * Get the position of the shop chest, packed with {@link PositionUtils#pack(int, int, int)}.
+     *
+     * @return long The packed position
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public int getX() {
+        return PositionUtils.unpackX(position);
+    }
+
+    public int getY() {
+        return PositionUtils.unpackY(position);
+    }
+
+    public int getZ() {
+        return PositionUtils.unpackZ(position);
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+}
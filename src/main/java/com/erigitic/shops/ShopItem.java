@@ -26,11 +26,15 @@
 package com.erigitic.shops;
 
 import com.erigitic.config.TECurrency;
+import com.erigitic.main.TotalEconomy;
 import com.erigitic.shops.data.ShopItemData;
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.math.BigInteger;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.spongepowered.api.data.DataContainer;
 import org.spongepowered.api.data.DataQuery;
@@ -38,7 +42,9 @@ import org.spongepowered.api.data.DataSerializable;
 import org.spongepowered.api.data.DataView;
 import org.spongepowered.api.data.Queries;
 import org.spongepowered.api.data.persistence.AbstractDataBuilder;
+import org.spongepowered.api.data.persistence.DataContentUpdater;
 import org.spongepowered.api.data.persistence.InvalidDataException;
+import org.spongepowered.api.service.economy.Currency;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 
@@ -46,9 +52,18 @@ public class ShopItem implements DataSerializable {
 
     public static final DataQuery PRICE_QUERY = DataQuery.of("Price");
 
-    private double price;
+    private static final int LORE_CACHE_SIZE = 1024;
 
-    public ShopItem(double price) {
+    private static final BigInteger MIN_MINOR_UNITS = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX_MINOR_UNITS = BigInteger.valueOf(Long.MAX_VALUE);
+
+    // Lore by currency and price. Shops reuse a small set of prices, so the same lore is rendered over and over.
+    private static final Map<String, List<Text>> loreCache = new ConcurrentHashMap<>();
+
+    // Price in minor units of the default currency (ex. cents)
+    private long price;
+
+    public ShopItem(long price) {
         this.price = price;
     }
 
@@ -64,21 +79,77 @@ public class ShopItem implements DataSerializable {
         return ShopItemData.CONTENT_VERSION;
     }
 
-    public double getPrice() {
+    /**
+     * Get the price in minor units of the default currency.
+     *
+     * @return long The price (ex. 150 for $1.50)
+     */
+    public long getPrice() {
         return price;
     }
 
-    public void setPrice(double price) {
+    public void setPrice(long price) {
         this.price = price;
     }
 
+    /**
+     * Get the price as an amount of a currency.
+     *
+     * @param currency The currency the price is in
+     * @return BigDecimal The price
+     */
+    public BigDecimal getPrice(Currency currency) {
+        return toAmount(price, currency);
+    }
+
+    /**
+     * Get the lore showing the price of the item.
+     *
+     * @param currency The currency to show the price in
+     * @return List The lore. The list is shared and must not be modified.
+     */
     public List<Text> getLore(TECurrency currency) {
-        List<Text> lore = new ArrayList<>();
-        lore.add(Text.of(TextColors.GRAY, "Price: ", TextColors.GOLD, currency.format(BigDecimal.valueOf(price), 2)));
+        String cacheKey = currency.getId() + ":" + price;
+        List<Text> lore = loreCache.get(cacheKey);
+
+        if (lore == null) {
+            lore = Collections.singletonList(Text.of(TextColors.GRAY, "Price: ", TextColors.GOLD, currency.format(getPrice(currency), currency.getDefaultFractionDigits())));
+
+            if (loreCache.size() >= LORE_CACHE_SIZE) {
+                loreCache.clear();
+            }
+
+            loreCache.put(cacheKey, lore);
+        }
 
         return lore;
     }
 
+    /**
+     * Convert an amount of a currency to minor units, rounding half up. Amounts too large for a long are cut off at
+     * {@link Long#MAX_VALUE} or {@link Long#MIN_VALUE} instead of wrapping around, so callers can clamp the result.
+     *
+     * @param amount The amount
+     * @param currency The currency of the amount
+     * @return long The amount in minor units
+     */
+    public static long toMinorUnits(BigDecimal amount, Currency currency) {
+        BigInteger minorUnits = amount.setScale(currency.getDefaultFractionDigits(), BigDecimal.ROUND_HALF_UP).unscaledValue();
+
+        return minorUnits.max(MIN_MINOR_UNITS).min(MAX_MINOR_UNITS).longValue();
+    }
+
+    /**
+     * Convert minor units of a currency to an amount.
+     *
+     * @param minorUnits The amount in minor units
+     * @param currency The currency of the amount
+     * @return BigDecimal The amount
+     */
+    public static BigDecimal toAmount(long minorUnits, Currency currency) {
+        return BigDecimal.valueOf(minorUnits, currency.getDefaultFractionDigits());
+    }
+
     public static class Builder extends AbstractDataBuilder<ShopItem> {
 
         public Builder() {
@@ -88,7 +159,7 @@ public class ShopItem implements DataSerializable {
         @Override
         public Optional<ShopItem> buildContent(DataView container) throws InvalidDataException {
             if (container.contains(ShopItem.PRICE_QUERY)) {
-                double price = container.getDouble(ShopItem.PRICE_QUERY).get();
+                long price = container.getLong(ShopItem.PRICE_QUERY).get();
 
                 return Optional.of(new ShopItem(price));
             }
@@ -96,4 +167,31 @@ public class ShopItem implements DataSerializable {
             return Optional.empty();
         }
     }
+
+    /**
+     * Converts prices stored as a double amount (content version 1) to minor units of the default currency.
+     */
+    public static class PriceUpdater implements DataContentUpdater {
+
+        @Override
+        public int getInputVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getOutputVersion() {
+            return 2;
+        }
+
+        @Override
+        public DataView update(DataView content) {
+            Optional<Double> priceOpt = content.getDouble(PRICE_QUERY);
+
+            if (priceOpt.isPresent()) {
+                content.set(PRICE_QUERY, toMinorUnits(BigDecimal.valueOf(priceOpt.get()), TotalEconomy.getTotalEconomy().getDefaultCurrency()));
+            }
+
+            return content.set(Queries.CONTENT_VERSION, getOutputVersion());
+        }
+    }
 }
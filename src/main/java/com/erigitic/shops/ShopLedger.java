@@ -0,0 +1,313 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.shops;
+
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.sql.SqlManager;
+import com.erigitic.util.PositionUtils;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+/**
+ * Records every chest shop sale. Sales are queued and written in batches off the main thread, to the shop_sales table
+ * when the database is enabled and to shopsales.csv otherwise. Revenue, units sold and best selling items are kept per
+ * shop and per owner as sales are recorded, so statistics never need to go through the stored sales. The totals are
+ * seeded from the stored sales once at startup.
+ */
+public class ShopLedger {
+
+    private static final int FLUSH_INTERVAL = 10;
+
+    private TotalEconomy totalEconomy;
+    private Logger logger;
+    private SqlManager sqlManager;
+    private boolean databaseEnabled;
+
+    private File salesFile;
+
+    private final Queue<ShopSale> pendingSales = new ConcurrentLinkedQueue<>();
+
+    // Statistics by packed position, per world
+    private final Map<UUID, Map<Long, ShopStats>> shopStats = new ConcurrentHashMap<>();
+
+    // Statistics of all shops of an owner
+    private final Map<UUID, ShopStats> ownerStats = new ConcurrentHashMap<>();
+
+    public ShopLedger(TotalEconomy totalEconomy, Logger logger) {
+        this.totalEconomy = totalEconomy;
+        this.logger = logger;
+
+        databaseEnabled = totalEconomy.isDatabaseEnabled();
+        salesFile = new File(totalEconomy.getConfigDir(), "shopsales.csv");
+
+        if (databaseEnabled) {
+            sqlManager = totalEconomy.getSqlManager();
+
+            sqlManager.createTable("shop_sales", "id bigint(20) unsigned NOT NULL AUTO_INCREMENT,"
+                    + "world varchar(36) NOT NULL,"
+                    + "x int(11) NOT NULL,"
+                    + "y int(11) NOT NULL,"
+                    + "z int(11) NOT NULL,"
+                    + "owner varchar(60) NOT NULL,"
+                    + "buyer varchar(60) NOT NULL,"
+                    + "item varchar(100) NOT NULL,"
+                    + "variant int(11) NOT NULL DEFAULT '0',"
+                    + "quantity int(11) NOT NULL,"
+                    + "unit_price decimal(19,2) NOT NULL,"
+                    + "time bigint(20) NOT NULL,"
+                    + "PRIMARY KEY (id),"
+                    + "KEY shop (world, x, y, z),"
+                    + "KEY owner (owner)"
+            );
+        }
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .async()
+                .execute(this::seed)
+                .name("Seed Shop Statistics")
+                .submit(totalEconomy);
+    }
+
+    /**
+     * Seed the statistics from the stored sales, then start writing queued sales. Sales recorded before seeding is done
+     * stay queued so they are not counted twice.
+     */
+    private void seed() {
+        if (databaseEnabled) {
+            seedFromDatabase();
+        } else {
+            seedFromFile();
+        }
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .async()
+                .interval(FLUSH_INTERVAL, TimeUnit.SECONDS)
+                .execute(this::flush)
+                .name("Flush Shop Sales")
+                .submit(totalEconomy);
+    }
+
+    private void seedFromDatabase() {
+        String query = "SELECT world, x, y, z, owner, item, variant, SUM(quantity), SUM(quantity * unit_price), COUNT(*) FROM shop_sales"
+                + " GROUP BY world, x, y, z, owner, item, variant";
+
+        try (Connection conn = sqlManager.dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(query);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                addToStats(
+                        UUID.fromString(resultSet.getString(1)),
+                        PositionUtils.pack(resultSet.getInt(2), resultSet.getInt(3), resultSet.getInt(4)),
+                        UUID.fromString(resultSet.getString(5)),
+                        getItemKey(resultSet.getString(6), resultSet.getInt(7)),
+                        resultSet.getLong(8),
+                        resultSet.getBigDecimal(9),
+                        resultSet.getLong(10)
+                );
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            logger.warn("An error occurred while loading the shop sales from the database!");
+            e.printStackTrace();
+        }
+    }
+
+    private void seedFromFile() {
+        if (!salesFile.exists()) {
+            return;
+        }
+
+        synchronized (salesFile) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(salesFile))) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    String[] values = line.split(",");
+
+                    if (values.length < 11) {
+                        continue;
+                    }
+
+                    int quantity = Integer.parseInt(values[9]);
+
+                    addToStats(
+                            UUID.fromString(values[1]),
+                            PositionUtils.pack(Integer.parseInt(values[2]), Integer.parseInt(values[3]), Integer.parseInt(values[4])),
+                            UUID.fromString(values[5]),
+                            getItemKey(values[7], Integer.parseInt(values[8])),
+                            quantity,
+                            new BigDecimal(values[10]).multiply(BigDecimal.valueOf(quantity)),
+                            1
+                    );
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("An error occurred while loading the shop sales file!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Write the queued sales. Called periodically off the main thread and once when the server stops.
+     */
+    public void flush() {
+        List<ShopSale> sales = new ArrayList<>();
+        ShopSale sale;
+
+        while ((sale = pendingSales.poll()) != null) {
+            sales.add(sale);
+        }
+
+        if (sales.isEmpty()) {
+            return;
+        }
+
+        if (databaseEnabled) {
+            flushToDatabase(sales);
+        } else {
+            flushToFile(sales);
+        }
+    }
+
+    private void flushToDatabase(List<ShopSale> sales) {
+        String query = "INSERT INTO shop_sales (world, x, y, z, owner, buyer, item, variant, quantity, unit_price, time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (Connection conn = sqlManager.dataSource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(query)) {
+            for (ShopSale sale : sales) {
+                statement.setString(1, sale.getWorldUniqueId().toString());
+                statement.setInt(2, sale.getX());
+                statement.setInt(3, sale.getY());
+                statement.setInt(4, sale.getZ());
+                statement.setString(5, sale.getOwner().toString());
+                statement.setString(6, sale.getBuyer().toString());
+                statement.setString(7, sale.getItemId());
+                statement.setInt(8, sale.getVariant());
+                statement.setInt(9, sale.getQuantity());
+                statement.setBigDecimal(10, sale.getUnitPrice());
+                statement.setLong(11, sale.getTime());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        } catch (SQLException e) {
+            logger.warn("An error occurred while saving " + sales.size() + " shop sales to the database!");
+            e.printStackTrace();
+        }
+    }
+
+    private void flushToFile(List<ShopSale> sales) {
+        synchronized (salesFile) {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(salesFile, true))) {
+                for (ShopSale sale : sales) {
+                    writer.write(sale.getTime() + "," + sale.getWorldUniqueId() + "," + sale.getX() + "," + sale.getY() + "," + sale.getZ() + ","
+                            + sale.getOwner() + "," + sale.getBuyer() + "," + sale.getItemId() + "," + sale.getVariant() + ","
+                            + sale.getQuantity() + "," + sale.getUnitPrice().toPlainString());
+                    writer.newLine();
+                }
+            } catch (IOException e) {
+                logger.warn("An error occurred while saving " + sales.size() + " shop sales to the shop sales file!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void addToStats(UUID worldUniqueId, long position, UUID owner, String itemKey, long units, BigDecimal amount, long saleCount) {
+        shopStats.computeIfAbsent(worldUniqueId, uuid -> new ConcurrentHashMap<>())
+                .computeIfAbsent(position, key -> new ShopStats())
+                .add(itemKey, units, amount, saleCount);
+        ownerStats.computeIfAbsent(owner, uuid -> new ShopStats()).add(itemKey, units, amount, saleCount);
+    }
+
+    /**
+     * Get the key sales of an item are counted under.
+     *
+     * @param itemId The id of the item type
+     * @param variant The data variant of the item
+     * @return String The item id, followed by the variant for items with variants
+     */
+    public static String getItemKey(String itemId, int variant) {
+        return variant != 0 ? itemId + "/" + variant : itemId;
+    }
+
+    /**
+     * Record a sale.
+     *
+     * @param sale The sale
+     */
+    public void record(ShopSale sale) {
+        addToStats(sale.getWorldUniqueId(), PositionUtils.pack(sale.getX(), sale.getY(), sale.getZ()), sale.getOwner(),
+                getItemKey(sale.getItemId(), sale.getVariant()), sale.getQuantity(),
+                sale.getUnitPrice().multiply(BigDecimal.valueOf(sale.getQuantity())), 1);
+        pendingSales.add(sale);
+    }
+
+    /**
+     * Get the sales statistics of a shop.
+     *
+     * @param location The location of the shop chest
+     * @return Optional The statistics, empty if the shop never sold anything
+     */
+    public Optional<ShopStats> getShopStats(Location<World> location) {
+        Map<Long, ShopStats> worldStats = shopStats.get(location.getExtent().getUniqueId());
+
+        if (worldStats == null) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(worldStats.get(PositionUtils.pack(location)));
+    }
+
+    /**
+     * Get the combined sales statistics of all shops of an owner.
+     *
+     * @param owner The {@link UUID} of the owner
+     * @return Optional The statistics, empty if none of the owner's shops ever sold anything
+     */
+    public Optional<ShopStats> getOwnerStats(UUID owner) {
+        return Optional.ofNullable(ownerStats.get(owner));
+    }
+}
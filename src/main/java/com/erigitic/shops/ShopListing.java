@@ -0,0 +1,101 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.shops;
+
+import com.erigitic.util.PositionUtils;
+import java.util.UUID;
+
+/**
+ * The stock a chest shop has of one item at one price.
+ */
+public class ShopListing {
+
+    private final UUID worldUniqueId;
+    private final long position;
+    private final String itemId;
+    private final int variant;
+    private final long price;
+    private int quantity;
+
+    public ShopListing(UUID worldUniqueId, long position, String itemId, int variant, long price, int quantity) {
+        this.worldUniqueId = worldUniqueId;
+        this.position = position;
+        this.itemId = itemId;
+        this.variant = variant;
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    public UUID getWorldUniqueId() {
+        return worldUniqueId;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public int getX() {
+        return PositionUtils.unpackX(position);
+    }
+
+    public int getY() {
+        return PositionUtils.unpackY(position);
+    }
+
+    public int getZ() {
+        return PositionUtils.unpackZ(position);
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    /**
+     * Get the data variant of the item (ex. the color of wool).
+     *
+     * @return int The variant, 0 for items without variants
+     */
+    public int getVariant() {
+        return variant;
+    }
+
+    /**
+     * Get the price of one item.
+     *
+     * @return long The price in minor units of the default currency
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -26,17 +26,18 @@
 package com.erigitic.shops;
 
 import com.erigitic.config.AccountManager;
-import com.erigitic.config.TEAccount;
 import com.erigitic.main.TotalEconomy;
-import com.erigitic.shops.data.PlayerShopInfoData;
 import com.erigitic.shops.data.ShopKeys;
 import com.erigitic.util.MessageManager;
 import java.math.BigDecimal;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.slf4j.Logger;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
@@ -54,17 +55,17 @@ import org.spongepowered.api.event.filter.cause.First;
 import org.spongepowered.api.event.filter.type.Exclude;
 import org.spongepowered.api.event.item.inventory.ClickInventoryEvent;
 import org.spongepowered.api.event.item.inventory.InteractInventoryEvent;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
+import org.spongepowered.api.event.world.chunk.LoadChunkEvent;
 import org.spongepowered.api.item.inventory.Inventory;
 import org.spongepowered.api.item.inventory.ItemStack;
-import org.spongepowered.api.item.inventory.ItemStackSnapshot;
 import org.spongepowered.api.item.inventory.Slot;
-import org.spongepowered.api.item.inventory.entity.Hotbar;
-import org.spongepowered.api.item.inventory.query.QueryOperationTypes;
 import org.spongepowered.api.item.inventory.transaction.SlotTransaction;
-import org.spongepowered.api.item.inventory.type.GridInventory;
+import org.spongepowered.api.text.Text;
 import org.spongepowered.api.util.Direction;
 import org.spongepowered.api.util.blockray.BlockRay;
 import org.spongepowered.api.util.blockray.BlockRayHit;
+import org.spongepowered.api.world.Chunk;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
@@ -73,18 +74,35 @@ public class ShopManager {
     private TotalEconomy totalEconomy;
     private AccountManager accountManager;
     private MessageManager messageManager;
-
-    private final double minPrice;
-    private final double maxPrice;
+    private ShopRegistry shopRegistry;
+    private ShopSearchIndex searchIndex;
+    private ShopPurchasePipeline purchasePipeline;
+    private ShopLedger ledger;
+    private ShopStockMonitor stockMonitor;
+    private ShopSettlementQueue settlementQueue;
+
+    // Item price limits in minor units of the default currency
+    private final long minPrice;
+    private final long maxPrice;
     private final double chestShopPrice;
 
-    public ShopManager(TotalEconomy totalEconomy, AccountManager accountManager, MessageManager messageManager) {
+    // Shops players currently have open. A click by a player without an entry is not a shop click.
+    private final Map<UUID, ShopSession> sessions = new ConcurrentHashMap<>();
+
+    public ShopManager(TotalEconomy totalEconomy, AccountManager accountManager, MessageManager messageManager, Logger logger) {
         this.totalEconomy = totalEconomy;
         this.accountManager = accountManager;
         this.messageManager = messageManager;
 
-        minPrice = this.totalEconomy.getShopNode().getNode("min-item-price").getDouble(0);
-        maxPrice = this.totalEconomy.getShopNode().getNode("max-item-price").getDouble(1000000000);
+        shopRegistry = new ShopRegistry(totalEconomy, logger);
+        searchIndex = new ShopSearchIndex(totalEconomy, logger);
+        purchasePipeline = new ShopPurchasePipeline(totalEconomy, accountManager, this, logger);
+        ledger = new ShopLedger(totalEconomy, logger);
+        stockMonitor = new ShopStockMonitor(totalEconomy, messageManager);
+        settlementQueue = new ShopSettlementQueue(totalEconomy, accountManager, messageManager, logger);
+
+        minPrice = ShopItem.toMinorUnits(BigDecimal.valueOf(this.totalEconomy.getShopNode().getNode("min-item-price").getDouble(0)), totalEconomy.getDefaultCurrency());
+        maxPrice = ShopItem.toMinorUnits(BigDecimal.valueOf(this.totalEconomy.getShopNode().getNode("max-item-price").getDouble(1000000000)), totalEconomy.getDefaultCurrency());
         chestShopPrice = this.totalEconomy.getShopNode().getNode("chestshop", "price").getDouble(1000);
     }
 
@@ -98,59 +116,31 @@ public class ShopManager {
     @Listener
     @Exclude(ClickInventoryEvent.Shift.class)
     public void onItemPurchase(ClickInventoryEvent.Primary event, @First Player player, @Getter("getTargetInventory") Inventory inventory) {
-        Optional<PlayerShopInfo> playerShopInfoOpt = player.get(ShopKeys.PLAYER_SHOP_INFO);
-
-        if (playerShopInfoOpt.isPresent()) {
-            Location location = playerShopInfoOpt.get().getOpenShopLocation();
-            Optional<TileEntity> tileEntityOpt = location.getTileEntity();
-
-            if (tileEntityOpt.isPresent()) {
-                Optional<Shop> shopOpt = tileEntityOpt.get().get(ShopKeys.SINGLE_SHOP);
+        ShopSession session = sessions.get(player.getUniqueId());
 
-                if (shopOpt.isPresent()) {
-                    Shop shop = shopOpt.get();
-                    ItemStack clickedItem = ItemStack.builder().fromSnapshot(event.getCursorTransaction().getDefault().copy()).build();
-                    Optional<ShopItem> shopItemOpt = clickedItem.get(ShopKeys.SHOP_ITEM);
-
-                    if (shopItemOpt.isPresent()) {
-                        event.getCursorTransaction().setValid(false);
-
-                        ShopItem shopItem = shopItemOpt.get();
-                        TEAccount ownerAccount = (TEAccount) accountManager.getOrCreateAccount(shop.getOwner()).get();
-                        TEAccount customerAccount = (TEAccount) accountManager.getOrCreateAccount(player.getUniqueId()).get();
-
-                        if (customerAccount.getBalance(totalEconomy.getDefaultCurrency()).doubleValue() >= shopItem.getPrice()) {
-                            ItemStack purchasedItem = removeShopItemData(clickedItem.copy());
+        if (session != null) {
+            ItemStack clickedItem = ItemStack.builder().fromSnapshot(event.getCursorTransaction().getDefault().copy()).build();
+            Optional<ShopItem> shopItemOpt = clickedItem.get(ShopKeys.SHOP_ITEM);
 
-                            Collection<ItemStackSnapshot> rejectedItems = player.getInventory().query(QueryOperationTypes.INVENTORY_TYPE.of(GridInventory.class), QueryOperationTypes.INVENTORY_TYPE.of(Hotbar.class)).offer(purchasedItem).getRejectedItems();
+            if (shopItemOpt.isPresent()) {
+                event.getCursorTransaction().setValid(false);
 
-                            if (rejectedItems.size() == 0) {
-                                customerAccount.transfer(ownerAccount, totalEconomy.getDefaultCurrency(), BigDecimal.valueOf(shopItem.getPrice()), event.getCause());
+                ShopPurchasePipeline.PurchaseResult result = purchasePipeline.purchase(player, session, event.getTransactions().get(0), 1, event.getCause());
 
-                                Slot clickedSlot = event.getTransactions().get(0).getSlot();
+                if (result.getStatus() != ShopPurchasePipeline.Status.SUCCESS) {
+                    event.getTransactions().get(0).setValid(false);
 
-                                updateItemInSlot(clickedSlot, clickedItem, clickedItem.getQuantity() - 1);
-                            } else {
-                                event.getTransactions().get(0).setValid(false);
-
-                                player.sendMessage(messageManager.getMessage("shops.purchase.noroom"));
-                            }
-                        } else {
-                            event.getTransactions().get(0).setValid(false);
-
-                            player.sendMessage(messageManager.getMessage("shops.purchase.insufficientfunds"));
-                        }
-                    } else {
-                        event.getCursorTransaction().setValid(false);
-                        invalidateTransactions(event.getTransactions());
-                    }
+                    sendPurchaseFailure(player, result.getStatus());
                 }
+            } else {
+                event.getCursorTransaction().setValid(false);
+                invalidateTransactions(event.getTransactions());
             }
         }
     }
 
     /**
-     * Prevents right clicking items within a shop.
+     * Prevents right clicking items within a shop. Buying more than one item at a time is done with /shop purchase.
      *
      * @param event Secondary (Right mouse) click inventory
      * @param player The player clicking within an inventory
@@ -158,20 +148,9 @@ public class ShopManager {
     @Listener
     @Exclude(ClickInventoryEvent.Shift.class)
     public void onShopSecondaryClick(ClickInventoryEvent.Secondary event, @First Player player) {
-        Optional<PlayerShopInfo> playerShopInfoOpt = player.get(ShopKeys.PLAYER_SHOP_INFO);
-
-        if (playerShopInfoOpt.isPresent()) {
-            Location location = player.get(ShopKeys.PLAYER_SHOP_INFO).get().getOpenShopLocation();
-            Optional<TileEntity> tileEntityOpt = location.getTileEntity();
-
-            if (tileEntityOpt.isPresent()) {
-                Optional<Shop> shopOpt = tileEntityOpt.get().get(ShopKeys.SINGLE_SHOP);
-
-                if (shopOpt.isPresent()) {
-                    invalidateTransactions(event.getTransactions());
-                    event.setCancelled(true);
-                }
-            }
+        if (sessions.containsKey(player.getUniqueId())) {
+            invalidateTransactions(event.getTransactions());
+            event.setCancelled(true);
         }
     }
 
@@ -185,63 +164,40 @@ public class ShopManager {
      */
     @Listener
     public void onShiftClickInventory(ClickInventoryEvent.Shift event, @First Player player, @Getter("getTargetInventory") Inventory inventory) {
-        Optional<PlayerShopInfo> playerShopInfoOpt = player.get(ShopKeys.PLAYER_SHOP_INFO);
-
-        if (playerShopInfoOpt.isPresent()) {
-            Location location = player.get(ShopKeys.PLAYER_SHOP_INFO).get().getOpenShopLocation();
-            Optional<TileEntity> tileEntityOpt = location.getTileEntity();
+        ShopSession session = sessions.get(player.getUniqueId());
 
-            if (tileEntityOpt.isPresent()) {
-                Optional<Shop> shopOpt = tileEntityOpt.get().get(ShopKeys.SINGLE_SHOP);
-
-                if (shopOpt.isPresent()) {
-                    Shop shop = shopOpt.get();
-                    ItemStack clickedItem = ItemStack.builder().fromSnapshot(event.getTransactions().get(0).getOriginal()).build();
-                    Optional<ShopItem> shopItemOpt = clickedItem.get(ShopKeys.SHOP_ITEM);
-
-                    if (player.getUniqueId().equals(shop.getOwner()) && shopItemOpt.isPresent()) {
-                        for (SlotTransaction transaction : event.getTransactions()) {
-                            transaction.setCustom(ItemStack.empty());
-                        }
-
-                        ItemStack returnedItem = removeShopItemData(clickedItem.copy());
-                        returnedItem.setQuantity(clickedItem.getQuantity());
-
-                        player.getInventory().offer(returnedItem);
-                    } else if (player.getUniqueId().equals(shop.getOwner())) {
-                        event.setCancelled(false);
-                    } else if (shopItemOpt.isPresent()) {
-                        ShopItem shopItem = shopItemOpt.get();
+        if (session != null) {
+            Shop shop = session.getShop();
+            ItemStack clickedItem = ItemStack.builder().fromSnapshot(event.getTransactions().get(0).getOriginal()).build();
+            Optional<ShopItem> shopItemOpt = clickedItem.get(ShopKeys.SHOP_ITEM);
 
-                        int purchasedQuantity = clickedItem.getQuantity();
-
-                        TEAccount ownerAccount = (TEAccount) accountManager.getOrCreateAccount(shop.getOwner()).get();
-                        TEAccount customerAccount = (TEAccount) accountManager.getOrCreateAccount(player.getUniqueId()).get();
-
-                        if (customerAccount.getBalance(totalEconomy.getDefaultCurrency()).doubleValue() >= purchasedQuantity * shopItem.getPrice()) {
-                            ItemStack purchasedItem = removeShopItemData(clickedItem.copy());
-                            purchasedItem.setQuantity(purchasedQuantity);
+            if (player.getUniqueId().equals(shop.getOwner()) && shopItemOpt.isPresent()) {
+                for (SlotTransaction transaction : event.getTransactions()) {
+                    transaction.setCustom(ItemStack.empty());
+                }
 
-                            Collection<ItemStackSnapshot> rejectedItems = player.getInventory().query(QueryOperationTypes.INVENTORY_TYPE.of(GridInventory.class), QueryOperationTypes.INVENTORY_TYPE.of(Hotbar.class)).offer(purchasedItem).getRejectedItems();
+                ItemStack returnedItem = removeShopItemData(clickedItem.copy());
+                returnedItem.setQuantity(clickedItem.getQuantity());
 
-                            if (rejectedItems.size() == 0) {
-                                for (SlotTransaction transaction : event.getTransactions()) {
-                                    transaction.setCustom(ItemStack.empty());
-                                }
+                player.getInventory().offer(returnedItem);
 
-                                customerAccount.transfer(ownerAccount, totalEconomy.getDefaultCurrency(), BigDecimal.valueOf(purchasedQuantity * shopItem.getPrice()), event.getCause());
+                int previousStock = searchIndex.getStock(session.getLocation(), clickedItem);
 
-                                player.getInventory().offer(purchasedItem);
-                            } else {
-                                event.getTransactions().get(0).setValid(false);
+                searchIndex.removeStock(session.getLocation(), clickedItem, shopItemOpt.get().getPrice(), clickedItem.getQuantity());
+                stockMonitor.check(session.getLocation(), shop.getOwner(), clickedItem, previousStock, searchIndex.getStock(session.getLocation(), clickedItem));
+            } else if (player.getUniqueId().equals(shop.getOwner())) {
+                event.setCancelled(false);
+            } else if (shopItemOpt.isPresent()) {
+                ShopPurchasePipeline.PurchaseResult result = purchasePipeline.purchase(player, session, event.getTransactions().get(0), clickedItem.getQuantity(), event.getCause());
 
-                                player.sendMessage(messageManager.getMessage("shops.purchase.noroom"));
-                            }
-                        } else {
-                            invalidateTransactions(event.getTransactions());
-                            player.sendMessage(messageManager.getMessage("shops.purchase.insufficientfunds"));
-                        }
+                if (result.getStatus() == ShopPurchasePipeline.Status.SUCCESS) {
+                    for (SlotTransaction transaction : event.getTransactions()) {
+                        transaction.setCustom(ItemStack.empty());
                     }
+                } else {
+                    invalidateTransactions(event.getTransactions());
+
+                    sendPurchaseFailure(player, result.getStatus());
                 }
             }
         }
@@ -255,19 +211,10 @@ public class ShopManager {
      */
     @Listener
     public void onInventoryNumberPress(ClickInventoryEvent.NumberPress event, @First Player player) {
-        Optional<PlayerShopInfo> playerShopInfoOpt = player.get(ShopKeys.PLAYER_SHOP_INFO);
+        ShopSession session = sessions.get(player.getUniqueId());
 
-        if (playerShopInfoOpt.isPresent()) {
-            Location location = player.get(ShopKeys.PLAYER_SHOP_INFO).get().getOpenShopLocation();
-            Optional<TileEntity> tileEntityOpt = location.getTileEntity();
-
-            if (tileEntityOpt.isPresent()) {
-                Optional<Shop> shopOpt = tileEntityOpt.get().get(ShopKeys.SINGLE_SHOP);
-
-                if (shopOpt.isPresent()) {
-                    event.setCancelled(true);
-                }
-            }
+        if (session != null) {
+            event.setCancelled(true);
         }
     }
 
@@ -281,29 +228,88 @@ public class ShopManager {
     public void onInventoryOpen(InteractInventoryEvent.Open event, @First Player player) {
         Optional<BlockSnapshot> blockSnapshotOpt = event.getCause().getContext().get(EventContextKeys.BLOCK_HIT);
 
-        if (blockSnapshotOpt.isPresent()) {
-            BlockSnapshot blockSnapshot = blockSnapshotOpt.get();
-            Optional<Shop> shopOpt = blockSnapshot.get(ShopKeys.SINGLE_SHOP);
+        sessions.remove(player.getUniqueId());
 
-            if (shopOpt.isPresent()) {
-                player.offer(new PlayerShopInfoData(new PlayerShopInfo(blockSnapshot.getLocation().get())));
+        if (blockSnapshotOpt.isPresent() && blockSnapshotOpt.get().getLocation().isPresent()) {
+            Location<World> location = blockSnapshotOpt.get().getLocation().get();
+            Optional<TileEntity> tileEntityOpt = location.getTileEntity();
+
+            if (tileEntityOpt.isPresent() && tileEntityOpt.get() instanceof Chest) {
+                Optional<Shop> shopOpt = tileEntityOpt.get().get(ShopKeys.SINGLE_SHOP);
+
+                if (shopOpt.isPresent()) {
+                    // Shops created before the registry existed are registered the first time they are opened
+                    shopRegistry.register(location, shopOpt.get());
+                    searchIndex.indexShop(location, ((Chest) tileEntityOpt.get()).getInventory());
+
+                    sessions.put(player.getUniqueId(), new ShopSession(shopOpt.get(), location, (Chest) tileEntityOpt.get()));
+                }
             }
         }
     }
 
     /**
-     * Removes PlayerShopInfoData from a player when an inventory is closed.
+     * Ends the shop session of a player when an inventory is closed.
      *
      * @param event Close inventory
      * @param player The player who closed the inventory
      */
     @Listener
     public void onInventoryClose(InteractInventoryEvent.Close event, @First Player player) {
-        Optional<PlayerShopInfo> playerShopInfoOpt = player.get(ShopKeys.PLAYER_SHOP_INFO);
+        sessions.remove(player.getUniqueId());
+    }
+
+    /**
+     * Ends the shop session of a player who leaves the server.
+     *
+     * @param event Disconnect
+     */
+    @Listener
+    public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event) {
+        sessions.remove(event.getTargetEntity().getUniqueId());
+    }
+
+    /**
+     * Get the shop a player currently has open.
+     *
+     * @param player The player
+     * @return Optional The open shop session, empty if the player has no shop open
+     */
+    public Optional<ShopSession> getSession(Player player) {
+        return Optional.ofNullable(sessions.get(player.getUniqueId()));
+    }
 
-        if (playerShopInfoOpt.isPresent()) {
-            player.remove(ShopKeys.PLAYER_SHOP_INFO);
+    /**
+     * Reconciles the stock counters of the shops in a chunk with their inventories when the chunk loads. Shops that no
+     * longer exist are removed from the registry. Done a tick later, once the tile entities of the chunk are available.
+     *
+     * @param event Load chunk
+     */
+    @Listener
+    public void onChunkLoad(LoadChunkEvent event) {
+        Chunk chunk = event.getTargetChunk();
+        List<RegisteredShop> shops = shopRegistry.getShopsInChunk(chunk.getWorld().getUniqueId(), chunk.getPosition().getX(), chunk.getPosition().getZ());
+
+        if (shops.isEmpty()) {
+            return;
         }
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .delayTicks(1)
+                .execute(() -> {
+                    for (RegisteredShop shop : shops) {
+                        Location<World> location = chunk.getWorld().getLocation(shop.getX(), shop.getY(), shop.getZ());
+                        Optional<TileEntity> tileEntityOpt = location.getTileEntity();
+
+                        if (tileEntityOpt.isPresent() && tileEntityOpt.get() instanceof Chest && tileEntityOpt.get().get(ShopKeys.SINGLE_SHOP).isPresent()) {
+                            searchIndex.indexShop(location, ((Chest) tileEntityOpt.get()).getInventory());
+                        } else if (chunk.isLoaded()) {
+                            shopRegistry.unregister(location);
+                        }
+                    }
+                })
+                .name("Reconcile Shop Stock")
+                .submit(totalEconomy);
     }
 
     /**
@@ -328,12 +334,14 @@ public class ShopManager {
                 if (!player.getUniqueId().equals(shopOwner)) {
                     event.setCancelled(true);
 
-                    player.sendMessage(messageManager.getMessage("shops.remove.notowner"));
+                    player.sendMessage(messageManager.getMessage(player, "shops.remove.notowner"));
                 } else if (player.getUniqueId().equals(shopOwner) && chest.getInventory().totalItems() > 0) {
                     event.setCancelled(true);
 
-                    player.sendMessage(messageManager.getMessage("shops.remove.stocked"));
+                    player.sendMessage(messageManager.getMessage(player, "shops.remove.stocked"));
                 } else {
+                    shopRegistry.unregister(event.getLocations().get(0));
+
                     event.getLocations().get(0).removeBlock();
                     event.getLocations().get(0).setBlockType(BlockTypes.CHEST);
                 }
@@ -350,7 +358,7 @@ public class ShopManager {
     public void onChestPlace(ChangeBlockEvent.Place event) {
         BlockSnapshot blockSnapshot = event.getTransactions().get(0).getDefault();
         BlockType blockType = blockSnapshot.getState().getType();
-        Location location = blockSnapshot.getLocation().get();
+        Location<World> location = blockSnapshot.getLocation().get();
 
         if (blockType.equals(BlockTypes.CHEST) && isPlacedNextToShop(location)) {
             event.setCancelled(true);
@@ -363,7 +371,7 @@ public class ShopManager {
      * @param itemStack The ItemStack to remove ShopItemData from
      * @return ItemStack An ItemStack with ShopItemData removed
      */
-    private ItemStack removeShopItemData(ItemStack itemStack) {
+    ItemStack removeShopItemData(ItemStack itemStack) {
         itemStack.remove(Keys.ITEM_LORE);
         itemStack.remove(ShopKeys.SHOP_ITEM);
 
@@ -380,30 +388,33 @@ public class ShopManager {
      * @param location The location to check for adjacent chest shops
      * @return boolean If the location is adjacent to a chest shop
      */
-    private boolean isPlacedNextToShop(Location location) {
-        boolean isPlacedNextToShop = false;
-
-        Optional<TileEntity> northTileEntity = location.getBlockRelative(Direction.NORTH).getTileEntity();
-        if (northTileEntity.isPresent()) {
-            isPlacedNextToShop = northTileEntity.get().get(ShopKeys.SINGLE_SHOP).isPresent();
-        }
+    private boolean isPlacedNextToShop(Location<World> location) {
+        return isShop(location.getBlockRelative(Direction.NORTH))
+                || isShop(location.getBlockRelative(Direction.EAST))
+                || isShop(location.getBlockRelative(Direction.SOUTH))
+                || isShop(location.getBlockRelative(Direction.WEST));
+    }
 
-        Optional<TileEntity> eastTileEntity = location.getBlockRelative(Direction.EAST).getTileEntity();
-        if (eastTileEntity.isPresent()) {
-            isPlacedNextToShop = eastTileEntity.get().get(ShopKeys.SINGLE_SHOP).isPresent();
+    /**
+     * Checks if there is a chest shop at a location. Chests the registry does not know are checked for shop data and
+     * registered if they have it, which picks up shops created before the registry existed that were never opened.
+     *
+     * @param location The location to check
+     * @return boolean If there is a chest shop at the location
+     */
+    private boolean isShop(Location<World> location) {
+        if (shopRegistry.isShop(location)) {
+            return true;
         }
 
-        Optional<TileEntity> southTileEntity = location.getBlockRelative(Direction.SOUTH).getTileEntity();
-        if (southTileEntity.isPresent()) {
-            isPlacedNextToShop = southTileEntity.get().get(ShopKeys.SINGLE_SHOP).isPresent();
+        if (location.getBlockType() != BlockTypes.CHEST) {
+            return false;
         }
 
-        Optional<TileEntity> westTileEntity = location.getBlockRelative(Direction.WEST).getTileEntity();
-        if (westTileEntity.isPresent()) {
-            isPlacedNextToShop = westTileEntity.get().get(ShopKeys.SINGLE_SHOP).isPresent();
-        }
+        Optional<Shop> shopOpt = location.getTileEntity().flatMap(tileEntity -> tileEntity.get(ShopKeys.SINGLE_SHOP));
+        shopOpt.ifPresent(shop -> shopRegistry.register(location, shop));
 
-        return isPlacedNextToShop;
+        return shopOpt.isPresent();
     }
 
     /**
@@ -413,7 +424,7 @@ public class ShopManager {
      * @param itemStack The item in the slot
      * @param quantity The item quantity
      */
-    private void updateItemInSlot(Slot slot, ItemStack itemStack, int quantity) {
+    void updateItemInSlot(Slot slot, ItemStack itemStack, int quantity) {
         if (quantity == 0) {
             clearSlot(slot);
         } else {
@@ -427,6 +438,45 @@ public class ShopManager {
         slot.set(ItemStack.empty());
     }
 
+    /**
+     * Tell a player what they bought with a bulk purchase.
+     *
+     * @param player The player who bought the items
+     * @param item The item bought
+     * @param result The result of the purchase
+     */
+    public void sendBulkPurchaseSuccess(Player player, ItemStack item, ShopPurchasePipeline.PurchaseResult result) {
+        Map<String, String> messageValues = new HashMap<>();
+        messageValues.put("quantity", String.valueOf(result.getQuantity()));
+        messageValues.put("item", item.get(Keys.DISPLAY_NAME).orElse(Text.of(item.getTranslation())).toPlain());
+        messageValues.put("price", totalEconomy.getDefaultCurrency().format(result.getTotal(), 2).toPlain());
+
+        player.sendMessage(messageManager.getMessage(player, "shops.purchase.bulk", messageValues));
+    }
+
+    /**
+     * Tell a player why a purchase failed.
+     *
+     * @param player The player who tried to buy
+     * @param status The status of the failed purchase
+     */
+    public void sendPurchaseFailure(Player player, ShopPurchasePipeline.Status status) {
+        switch (status) {
+            case OUT_OF_STOCK:
+                player.sendMessage(messageManager.getMessage(player, "shops.purchase.outofstock"));
+                break;
+            case INSUFFICIENT_FUNDS:
+                player.sendMessage(messageManager.getMessage(player, "shops.purchase.insufficientfunds"));
+                break;
+            case NO_ROOM:
+                player.sendMessage(messageManager.getMessage(player, "shops.purchase.noroom"));
+                break;
+            default:
+                player.sendMessage(messageManager.getMessage(player, "shops.purchase.failed"));
+                break;
+        }
+    }
+
     private void invalidateTransactions(List<SlotTransaction> transactions) {
         for (SlotTransaction transaction : transactions) {
             transaction.setValid(false);
@@ -449,11 +499,35 @@ public class ShopManager {
         return Optional.empty();
     }
 
-    public double getMinPrice() {
+    public ShopRegistry getShopRegistry() {
+        return shopRegistry;
+    }
+
+    public ShopStockMonitor getStockMonitor() {
+        return stockMonitor;
+    }
+
+    public ShopSettlementQueue getSettlementQueue() {
+        return settlementQueue;
+    }
+
+    public ShopLedger getLedger() {
+        return ledger;
+    }
+
+    public ShopPurchasePipeline getPurchasePipeline() {
+        return purchasePipeline;
+    }
+
+    public ShopSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public long getMinPrice() {
         return minPrice;
     }
 
-    public double getMaxPrice() {
+    public long getMaxPrice() {
         return maxPrice;
     }
 
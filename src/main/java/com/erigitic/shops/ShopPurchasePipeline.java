@@ -0,0 +1,370 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.shops;
+
+import com.erigitic.config.AccountManager;
+import com.erigitic.config.TEAccount;
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.market.MarketManager;
+import com.erigitic.shops.data.ShopKeys;
+import com.erigitic.util.InventoryUtils;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.item.inventory.Inventory;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.item.inventory.ItemStackSnapshot;
+import org.spongepowered.api.item.inventory.Slot;
+import org.spongepowered.api.item.inventory.entity.Hotbar;
+import org.spongepowered.api.item.inventory.query.QueryOperationTypes;
+import org.spongepowered.api.item.inventory.transaction.SlotTransaction;
+import org.spongepowered.api.item.inventory.type.GridInventory;
+import org.spongepowered.api.service.economy.transaction.ResultType;
+import org.spongepowered.api.service.economy.transaction.TransactionResult;
+
+/**
+ * Buys items from a chest shop as a single unit. The price is reserved from the customer first, then the stock in the
+ * shop is checked and the items are delivered, and only then is the owner paid. When a stage fails everything done by
+ * the earlier stages is rolled back, so a customer never keeps items without paying or pays without getting them.
+ */
+public class ShopPurchasePipeline {
+
+    public enum Stage {
+        VALIDATE, RESERVE, DELIVER, SETTLE
+    }
+
+    public enum Status {
+        SUCCESS, OUT_OF_STOCK, INSUFFICIENT_FUNDS, NO_ROOM, FAILED
+    }
+
+    private TotalEconomy totalEconomy;
+    private AccountManager accountManager;
+    private ShopManager shopManager;
+    private Logger logger;
+
+    public ShopPurchasePipeline(TotalEconomy totalEconomy, AccountManager accountManager, ShopManager shopManager, Logger logger) {
+        this.totalEconomy = totalEconomy;
+        this.accountManager = accountManager;
+        this.shopManager = shopManager;
+        this.logger = logger;
+    }
+
+    /**
+     * Buy items from a slot of a chest shop that a click changed. The stock is taken from the state of the slot before
+     * the click, which is what the server had when the click was processed, so a repeated click on a slot that was
+     * already bought from fails validation instead of being paid for twice.
+     *
+     * @param customer The player buying
+     * @param session The shop the player has open
+     * @param transaction The transaction of the clicked shop slot
+     * @param quantity The number of items to buy
+     * @param cause The cause of the purchase
+     * @return PurchaseResult The outcome of the purchase and each stage it went through
+     */
+    public PurchaseResult purchase(Player customer, ShopSession session, SlotTransaction transaction, int quantity, Cause cause) {
+        return purchase(customer, session, transaction.getSlot(), transaction.getOriginal().createStack(), quantity, cause);
+    }
+
+    /**
+     * Buy items from a slot of a chest shop.
+     *
+     * @param customer The player buying
+     * @param session The shop the player has open
+     * @param slot The slot of the shop to buy from
+     * @param stock The contents of the slot
+     * @param quantity The number of items to buy
+     * @param cause The cause of the purchase
+     * @return PurchaseResult The outcome of the purchase and each stage it went through
+     */
+    public PurchaseResult purchase(Player customer, ShopSession session, Slot slot, ItemStack stock, int quantity, Cause cause) {
+        return purchase(customer, session, Collections.singletonList(new Allocation(slot, stock, quantity)), cause);
+    }
+
+    /**
+     * Buy a quantity of an item from a chest shop, taking it from as many slots as needed, cheapest first. The total is
+     * charged with a single withdrawal and a single deposit. The quantity is capped at the stock of the shop.
+     *
+     * @param customer The player buying
+     * @param session The shop to buy from
+     * @param item The item to buy. All of its data is matched apart from the shop price and lore, see
+     *             {@link MarketManager#getItemKey(ItemStackSnapshot)}
+     * @param quantity The number of items to buy
+     * @param maxPrice Slots selling the item for more than this, in minor units, are skipped
+     * @param cause The cause of the purchase
+     * @return PurchaseResult The outcome of the purchase and each stage it went through
+     */
+    public PurchaseResult purchaseBulk(Player customer, ShopSession session, ItemStack item, int quantity, long maxPrice, Cause cause) {
+        List<Allocation> candidates = new ArrayList<>();
+        String itemKey = getItemKey(item);
+
+        for (Slot slot : session.getChest().getInventory().<Slot>slots()) {
+            Optional<ItemStack> stockOpt = slot.peek();
+
+            if (stockOpt.isPresent() && stockOpt.get().getType().equals(item.getType()) && getItemKey(stockOpt.get()).equals(itemKey)) {
+                Optional<ShopItem> shopItemOpt = stockOpt.get().get(ShopKeys.SHOP_ITEM);
+
+                if (shopItemOpt.isPresent() && shopItemOpt.get().getPrice() <= maxPrice) {
+                    candidates.add(new Allocation(slot, stockOpt.get(), 0));
+                }
+            }
+        }
+
+        candidates.sort(Comparator.comparingLong(Allocation::getPrice));
+
+        List<Allocation> allocations = new ArrayList<>();
+        int remaining = quantity;
+
+        for (Allocation candidate : candidates) {
+            if (remaining <= 0) {
+                break;
+            }
+
+            int taken = Math.min(remaining, candidate.stock.getQuantity());
+
+            allocations.add(new Allocation(candidate.slot, candidate.stock, taken));
+            remaining -= taken;
+        }
+
+        return purchase(customer, session, allocations, cause);
+    }
+
+    private PurchaseResult purchase(Player customer, ShopSession session, List<Allocation> allocations, Cause cause) {
+        PurchaseResult result = new PurchaseResult();
+        long totalMinorUnits = 0;
+        int quantity = 0;
+
+        for (Allocation allocation : allocations) {
+            if (!allocation.stock.get(ShopKeys.SHOP_ITEM).isPresent() || allocation.quantity <= 0 || allocation.stock.getQuantity() < allocation.quantity) {
+                result.record(Stage.VALIDATE, false);
+
+                return result.finish(Status.OUT_OF_STOCK);
+            }
+
+            totalMinorUnits += allocation.getPrice() * allocation.quantity;
+            quantity += allocation.quantity;
+        }
+
+        result.record(Stage.VALIDATE, quantity > 0);
+
+        if (quantity <= 0) {
+            return result.finish(Status.OUT_OF_STOCK);
+        }
+
+        BigDecimal total = ShopItem.toAmount(totalMinorUnits, totalEconomy.getDefaultCurrency());
+
+        result.quantity = quantity;
+        result.total = total;
+
+        TEAccount customerAccount = (TEAccount) accountManager.getOrCreateAccount(customer.getUniqueId()).get();
+
+        TransactionResult reserveResult = customerAccount.withdraw(totalEconomy.getDefaultCurrency(), total, cause);
+        result.record(Stage.RESERVE, reserveResult.getResult() == ResultType.SUCCESS);
+
+        if (reserveResult.getResult() != ResultType.SUCCESS) {
+            return result.finish(reserveResult.getResult() == ResultType.ACCOUNT_NO_FUNDS ? Status.INSUFFICIENT_FUNDS : Status.FAILED);
+        }
+
+        Inventory customerInventory = customer.getInventory().query(QueryOperationTypes.INVENTORY_TYPE.of(GridInventory.class), QueryOperationTypes.INVENTORY_TYPE.of(Hotbar.class));
+        List<ItemStack> delivered = new ArrayList<>();
+        int rejected = 0;
+
+        for (Allocation allocation : allocations) {
+            ItemStack purchasedItem = shopManager.removeShopItemData(allocation.stock.copy());
+            purchasedItem.setQuantity(allocation.quantity);
+
+            int allocationRejected = 0;
+
+            for (ItemStackSnapshot rejectedItem : customerInventory.offer(purchasedItem.copy()).getRejectedItems()) {
+                allocationRejected += rejectedItem.getQuantity();
+            }
+
+            purchasedItem.setQuantity(allocation.quantity - allocationRejected);
+            delivered.add(purchasedItem);
+            rejected += allocationRejected;
+
+            if (rejected > 0) {
+                break;
+            }
+        }
+
+        result.record(Stage.DELIVER, rejected == 0);
+
+        if (rejected > 0) {
+            takeBack(customer, delivered);
+            refund(customerAccount, total, cause);
+
+            return result.finish(Status.NO_ROOM);
+        }
+
+        boolean settled = settle(session.getShop().getOwner(), total, cause);
+        result.record(Stage.SETTLE, settled);
+
+        if (!settled) {
+            takeBack(customer, delivered);
+            refund(customerAccount, total, cause);
+
+            return result.finish(Status.FAILED);
+        }
+
+        long time = System.currentTimeMillis();
+        int previousStock = shopManager.getSearchIndex().getStock(session.getLocation(), allocations.get(0).stock);
+
+        for (Allocation allocation : allocations) {
+            shopManager.updateItemInSlot(allocation.slot, allocation.stock, allocation.stock.getQuantity() - allocation.quantity);
+            shopManager.getSearchIndex().removeStock(session.getLocation(), allocation.stock, allocation.getPrice(), allocation.quantity);
+            shopManager.getLedger().record(new ShopSale(
+                    session.getLocation().getExtent().getUniqueId(),
+                    session.getLocation().getBlockX(),
+                    session.getLocation().getBlockY(),
+                    session.getLocation().getBlockZ(),
+                    session.getShop().getOwner(),
+                    customer.getUniqueId(),
+                    allocation.stock.getType().getId(),
+                    ShopSearchIndex.getVariant(allocation.stock),
+                    allocation.quantity,
+                    ShopItem.toAmount(allocation.getPrice(), totalEconomy.getDefaultCurrency()),
+                    time
+            ));
+        }
+
+        shopManager.getStockMonitor().check(session.getLocation(), session.getShop().getOwner(), allocations.get(0).stock, previousStock,
+                shopManager.getSearchIndex().getStock(session.getLocation(), allocations.get(0).stock));
+
+        return result.finish(Status.SUCCESS);
+    }
+
+    /**
+     * Pay the shop owner. Owners who are online are paid right away, revenue for offline owners goes to the settlement
+     * queue so their account does not have to be loaded during the purchase. Revenue that would take an online owner
+     * over the money cap is queued as well, where it is held until there is room like it is for offline owners.
+     *
+     * @return boolean Whether the owner was paid or the revenue was queued
+     */
+    private boolean settle(UUID owner, BigDecimal total, Cause cause) {
+        if (!totalEconomy.getServer().getPlayer(owner).isPresent()) {
+            shopManager.getSettlementQueue().enqueue(owner, total);
+
+            return true;
+        }
+
+        TEAccount ownerAccount = (TEAccount) accountManager.getOrCreateAccount(owner).get();
+
+        if (ownerAccount.getBalance(totalEconomy.getDefaultCurrency()).add(total).compareTo(totalEconomy.getMoneyCap()) > 0) {
+            shopManager.getSettlementQueue().enqueue(owner, total);
+
+            return true;
+        }
+
+        return ownerAccount.deposit(totalEconomy.getDefaultCurrency(), total, cause).getResult() == ResultType.SUCCESS;
+    }
+
+    /**
+     * Get the key of an item without the price and lore a shop adds to it, so stock matches the item a customer asks for.
+     */
+    private String getItemKey(ItemStack item) {
+        return MarketManager.getItemKey(shopManager.removeShopItemData(item.copy()).createSnapshot());
+    }
+
+    private void takeBack(Player customer, List<ItemStack> delivered) {
+        for (ItemStack item : delivered) {
+            if (item.getQuantity() > 0) {
+                InventoryUtils.removeItem(customer.getInventory(), item, item.getQuantity());
+            }
+        }
+    }
+
+    private void refund(TEAccount customerAccount, BigDecimal amount, Cause cause) {
+        TransactionResult refundResult = customerAccount.deposit(totalEconomy.getDefaultCurrency(), amount, cause);
+
+        if (refundResult.getResult() != ResultType.SUCCESS) {
+            logger.warn("[TE] Could not refund " + amount + " to " + customerAccount.getUniqueId() + " after a failed shop purchase (" + refundResult.getResult() + ")!");
+        }
+    }
+
+    private static class Allocation {
+        private final Slot slot;
+        private final ItemStack stock;
+        private final int quantity;
+
+        private Allocation(Slot slot, ItemStack stock, int quantity) {
+            this.slot = slot;
+            this.stock = stock;
+            this.quantity = quantity;
+        }
+
+        private long getPrice() {
+            return stock.get(ShopKeys.SHOP_ITEM).map(ShopItem::getPrice).orElse(0L);
+        }
+    }
+
+    public static class PurchaseResult {
+        private final Map<Stage, Boolean> outcomes = new EnumMap<>(Stage.class);
+        private Status status;
+        private int quantity;
+        private BigDecimal total = BigDecimal.ZERO;
+
+        private void record(Stage stage, boolean success) {
+            outcomes.put(stage, success);
+        }
+
+        private PurchaseResult finish(Status status) {
+            this.status = status;
+
+            return this;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public BigDecimal getTotal() {
+            return total;
+        }
+
+        /**
+         * Get the outcome of a stage.
+         *
+         * @param stage The stage
+         * @return Optional If the stage succeeded, empty if the purchase never reached the stage
+         */
+        public Optional<Boolean> getOutcome(Stage stage) {
+            return Optional.ofNullable(outcomes.get(stage));
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.shops;
+
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.util.PositionUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.slf4j.Logger;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.Order;
+import org.spongepowered.api.event.block.ChangeBlockEvent;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+/**
+ * Keeps the location, owner and title of every chest shop so shops can be found without loading the chunks they are
+ * in. Shops are indexed by packed block position and by chunk, per world, and by owner, and persisted in shops.conf.
+ */
+public class ShopRegistry {
+
+    private TotalEconomy totalEconomy;
+    private Logger logger;
+
+    private File shopsFile;
+    private ConfigurationLoader<CommentedConfigurationNode> loader;
+    private boolean savePending = false;
+    private long saveVersion = 0;
+
+    // Version of the last snapshot written to the file, guarded by the loader
+    private long writtenVersion = 0;
+
+    // Shops by packed position, per world
+    private final Map<UUID, Map<Long, RegisteredShop>> worldShops = new ConcurrentHashMap<>();
+
+    // Packed shop positions by chunk key, per world
+    private final Map<UUID, Map<Long, Set<Long>>> worldChunks = new ConcurrentHashMap<>();
+
+    // Packed shop positions by world, per owner
+    private final Map<UUID, Map<UUID, Set<Long>>> ownerShops = new ConcurrentHashMap<>();
+
+    public ShopRegistry(TotalEconomy totalEconomy, Logger logger) {
+        this.totalEconomy = totalEconomy;
+        this.logger = logger;
+
+        shopsFile = new File(totalEconomy.getConfigDir(), "shops.conf");
+        loader = HoconConfigurationLoader.builder().setFile(shopsFile).build();
+
+        load();
+    }
+
+    private void load() {
+        if (!shopsFile.exists()) {
+            return;
+        }
+
+        try {
+            ConfigurationNode shopsConfig = loader.load();
+
+            for (Map.Entry<Object, ? extends ConfigurationNode> worldEntry : shopsConfig.getChildrenMap().entrySet()) {
+                UUID worldUniqueId = UUID.fromString(worldEntry.getKey().toString());
+
+                for (Map.Entry<Object, ? extends ConfigurationNode> shopEntry : worldEntry.getValue().getChildrenMap().entrySet()) {
+                    String[] position = shopEntry.getKey().toString().split(",");
+                    ConfigurationNode shopNode = shopEntry.getValue();
+
+                    index(new RegisteredShop(
+                            worldUniqueId,
+                            PositionUtils.pack(Integer.parseInt(position[0]), Integer.parseInt(position[1]), Integer.parseInt(position[2])),
+                            UUID.fromString(shopNode.getNode("owner").getString()),
+                            shopNode.getNode("title").getString("")
+                    ));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("An error occurred while loading the shops configuration file!");
+            e.printStackTrace();
+        }
+    }
+
+    private ConfigurationNode createSaveNode() {
+        ConfigurationNode shopsConfig = loader.createEmptyNode();
+
+        worldShops.forEach((worldUniqueId, shops) ->
+                shops.values().forEach(shop -> {
+                    ConfigurationNode shopNode = shopsConfig.getNode(worldUniqueId.toString(), shop.getX() + "," + shop.getY() + "," + shop.getZ());
+
+                    shopNode.getNode("owner").setValue(shop.getOwner().toString());
+                    shopNode.getNode("title").setValue(shop.getTitle());
+                })
+        );
+
+        return shopsConfig;
+    }
+
+    /**
+     * Save the registered shops once per tick at most. The file is written off the main thread, older snapshots that
+     * finish late are dropped so they can not lose or bring back shops.
+     */
+    private void requestSave() {
+        if (savePending) {
+            return;
+        }
+
+        savePending = true;
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .execute(() -> {
+                    savePending = false;
+
+                    ConfigurationNode shopsConfig = createSaveNode();
+                    long version = ++saveVersion;
+
+                    totalEconomy.getGame().getScheduler().createTaskBuilder()
+                            .async()
+                            .execute(() -> write(shopsConfig, version))
+                            .name("Save Shops")
+                            .submit(totalEconomy);
+                })
+                .name("Queue Shops Save")
+                .submit(totalEconomy);
+    }
+
+    /**
+     * Save the registered shops right away. Used when the server stops, before a queued save would get to run.
+     */
+    public void save() {
+        write(createSaveNode(), ++saveVersion);
+    }
+
+    private void write(ConfigurationNode shopsConfig, long version) {
+        synchronized (loader) {
+            if (version < writtenVersion) {
+                return;
+            }
+
+            try {
+                loader.save(shopsConfig);
+                writtenVersion = version;
+            } catch (IOException e) {
+                logger.warn("An error occurred while saving the shops configuration file!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void index(RegisteredShop shop) {
+        long position = shop.getPosition();
+        long chunkKey = chunkKey(shop.getX(), shop.getZ());
+
+        RegisteredShop previous = worldShops.computeIfAbsent(shop.getWorldUniqueId(), uuid -> new ConcurrentHashMap<>()).put(position, shop);
+        worldChunks.computeIfAbsent(shop.getWorldUniqueId(), uuid -> new ConcurrentHashMap<>())
+                .computeIfAbsent(chunkKey, key -> ConcurrentHashMap.newKeySet())
+                .add(position);
+
+        if (previous != null) {
+            unindexOwner(previous);
+        }
+
+        ownerShops.computeIfAbsent(shop.getOwner(), uuid -> new ConcurrentHashMap<>())
+                .computeIfAbsent(shop.getWorldUniqueId(), uuid -> ConcurrentHashMap.newKeySet())
+                .add(position);
+    }
+
+    private void unindexOwner(RegisteredShop shop) {
+        Map<UUID, Set<Long>> worlds = ownerShops.get(shop.getOwner());
+
+        if (worlds == null) {
+            return;
+        }
+
+        Set<Long> positions = worlds.get(shop.getWorldUniqueId());
+
+        if (positions != null) {
+            positions.remove(shop.getPosition());
+
+            if (positions.isEmpty()) {
+                worlds.remove(shop.getWorldUniqueId());
+            }
+        }
+
+        if (worlds.isEmpty()) {
+            ownerShops.remove(shop.getOwner());
+        }
+    }
+
+    private static long chunkKey(int blockX, int blockZ) {
+        return ((long) (blockX >> 4) << 32) | ((blockZ >> 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the shop at a location.
+     *
+     * @param location The location of the shop chest
+     * @return Optional The shop, empty if there is no registered shop at the location
+     */
+    public Optional<RegisteredShop> getShop(Location<World> location) {
+        return getShop(location.getExtent().getUniqueId(), PositionUtils.pack(location));
+    }
+
+    /**
+     * Get the shop at a packed position.
+     *
+     * @param worldUniqueId The world of the shop
+     * @param position The packed position of the shop chest
+     * @return Optional The shop, empty if there is no registered shop at the position
+     */
+    public Optional<RegisteredShop> getShop(UUID worldUniqueId, long position) {
+        Map<Long, RegisteredShop> shops = worldShops.get(worldUniqueId);
+
+        if (shops == null) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(shops.get(position));
+    }
+
+    public boolean isShop(Location<World> location) {
+        return getShop(location).isPresent();
+    }
+
+    /**
+     * Register a shop, replacing any shop at the same location.
+     *
+     * @param location The location of the shop chest
+     * @param shop The shop
+     */
+    public void register(Location<World> location, Shop shop) {
+        Optional<RegisteredShop> previousOpt = getShop(location);
+
+        if (previousOpt.isPresent() && previousOpt.get().getOwner().equals(shop.getOwner()) && previousOpt.get().getTitle().equals(shop.getTitle())) {
+            return;
+        }
+
+        index(new RegisteredShop(location.getExtent().getUniqueId(), PositionUtils.pack(location), shop.getOwner(), shop.getTitle()));
+        requestSave();
+    }
+
+    /**
+     * Remove the shop at a location, if there is one.
+     *
+     * @param location The location of the shop chest
+     * @return boolean If a shop was removed
+     */
+    public boolean unregister(Location<World> location) {
+        UUID worldUniqueId = location.getExtent().getUniqueId();
+        Map<Long, RegisteredShop> shops = worldShops.get(worldUniqueId);
+        long position = PositionUtils.pack(location);
+
+        RegisteredShop shop = shops != null ? shops.remove(position) : null;
+
+        if (shop == null) {
+            return false;
+        }
+
+        unindexOwner(shop);
+
+        Map<Long, Set<Long>> chunks = worldChunks.get(worldUniqueId);
+        long chunkKey = chunkKey(location.getBlockX(), location.getBlockZ());
+        Set<Long> positions = chunks.get(chunkKey);
+
+        if (positions != null) {
+            positions.remove(position);
+
+            if (positions.isEmpty()) {
+                chunks.remove(chunkKey);
+            }
+        }
+
+        totalEconomy.getShopManager().getSearchIndex().removeShop(worldUniqueId, position);
+        requestSave();
+
+        return true;
+    }
+
+    /**
+     * Get the shops within a chunk.
+     *
+     * @param worldUniqueId The world of the chunk
+     * @param chunkX The x coordinate of the chunk
+     * @param chunkZ The z coordinate of the chunk
+     * @return List The shops in the chunk
+     */
+    public List<RegisteredShop> getShopsInChunk(UUID worldUniqueId, int chunkX, int chunkZ) {
+        Map<Long, RegisteredShop> shops = worldShops.get(worldUniqueId);
+        Map<Long, Set<Long>> chunks = worldChunks.get(worldUniqueId);
+
+        if (shops == null || chunks == null) {
+            return Collections.emptyList();
+        }
+
+        Set<Long> positions = chunks.getOrDefault(chunkKey(chunkX << 4, chunkZ << 4), Collections.emptySet());
+        List<RegisteredShop> chunkShops = new ArrayList<>(positions.size());
+
+        for (long position : positions) {
+            RegisteredShop shop = shops.get(position);
+
+            if (shop != null) {
+                chunkShops.add(shop);
+            }
+        }
+
+        return chunkShops;
+    }
+
+    /**
+     * Get the shops owned by a player.
+     *
+     * @param owner The {@link UUID} of the owner
+     * @return List The shops owned by the player
+     */
+    public List<RegisteredShop> getShopsOwnedBy(UUID owner) {
+        List<RegisteredShop> ownedShops = new ArrayList<>();
+
+        ownerShops.getOrDefault(owner, Collections.emptyMap()).forEach((worldUniqueId, positions) -> {
+            for (long position : positions) {
+                getShop(worldUniqueId, position).ifPresent(ownedShops::add);
+            }
+        });
+
+        return ownedShops;
+    }
+
+    /**
+     * Get all registered shops.
+     *
+     * @return Collection All shops in every world
+     */
+    public Collection<RegisteredShop> getShops() {
+        List<RegisteredShop> allShops = new ArrayList<>();
+
+        worldShops.values().forEach(shops -> allShops.addAll(shops.values()));
+
+        return allShops;
+    }
+
+    /**
+     * Remove shops whose chest was broken, whatever broke it.
+     *
+     * @param event ChangeBlockEvent.Break
+     */
+    @Listener(order = Order.POST)
+    public void onBlockBreak(ChangeBlockEvent.Break event) {
+        for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
+            if (transaction.isValid()) {
+                transaction.getOriginal().getLocation().ifPresent(this::unregister);
+            }
+        }
+    }
+}
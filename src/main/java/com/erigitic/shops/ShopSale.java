@@ -0,0 +1,110 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.shops;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * A purchase from a chest shop as recorded in the {@link ShopLedger}.
+ */
+public class ShopSale {
+
+    private final UUID worldUniqueId;
+    private final int x;
+    private final int y;
+    private final int z;
+    private final UUID owner;
+    private final UUID buyer;
+    private final String itemId;
+    private final int variant;
+    private final int quantity;
+    private final BigDecimal unitPrice;
+    private final long time;
+
+    public ShopSale(UUID worldUniqueId, int x, int y, int z, UUID owner, UUID buyer, String itemId, int variant, int quantity, BigDecimal unitPrice, long time) {
+        this.worldUniqueId = worldUniqueId;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.owner = owner;
+        this.buyer = buyer;
+        this.itemId = itemId;
+        this.variant = variant;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+        this.time = time;
+    }
+
+    public UUID getWorldUniqueId() {
+        return worldUniqueId;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public UUID getOwner() {
+        return owner;
+    }
+
+    public UUID getBuyer() {
+        return buyer;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public int getVariant() {
+        return variant;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    /**
+     * Get the time of the sale.
+     *
+     * @return long Milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.shops;
+
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.shops.data.ShopKeys;
+import com.erigitic.util.PositionUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.slf4j.Logger;
+import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.item.inventory.Inventory;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.item.inventory.Slot;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+/**
+ * Inverted index from item to the shops selling it, cheapest first. Listings are updated as shops are stocked and
+ * bought from instead of being found by scanning chests, and persisted in shoplistings.conf. The listings of a shop
+ * double as its stock counters. They are rebuilt from its inventory whenever it is opened or its chunk loads, which
+ * corrects any drift and picks up shops stocked before the index existed.
+ *
+ * <p>Only accessed from the main thread.</p>
+ */
+public class ShopSearchIndex {
+
+    private static final DataQuery DAMAGE_QUERY = DataQuery.of("UnsafeDamage");
+
+    private static final Comparator<ShopListing> PRICE_ORDER = Comparator.comparingLong(ShopListing::getPrice)
+            .thenComparing(ShopListing::getWorldUniqueId)
+            .thenComparingLong(ShopListing::getPosition)
+            .thenComparingInt(ShopListing::getVariant);
+
+    private TotalEconomy totalEconomy;
+    private Logger logger;
+
+    private File listingsFile;
+    private ConfigurationLoader<CommentedConfigurationNode> loader;
+    private boolean savePending = false;
+    private long saveVersion = 0;
+
+    // Version of the last snapshot written to the file, guarded by the loader
+    private long writtenVersion = 0;
+
+    // Listings by item id, cheapest first
+    private final Map<String, TreeSet<ShopListing>> listingsByItem = new HashMap<>();
+
+    // Listings by listing key, per shop position, per world
+    private final Map<UUID, Map<Long, Map<String, ShopListing>>> listingsByShop = new HashMap<>();
+
+    public ShopSearchIndex(TotalEconomy totalEconomy, Logger logger) {
+        this.totalEconomy = totalEconomy;
+        this.logger = logger;
+
+        listingsFile = new File(totalEconomy.getConfigDir(), "shoplistings.conf");
+        loader = HoconConfigurationLoader.builder().setFile(listingsFile).build();
+
+        load();
+    }
+
+    private void load() {
+        if (!listingsFile.exists()) {
+            return;
+        }
+
+        try {
+            ConfigurationNode listingsConfig = loader.load();
+
+            for (Map.Entry<Object, ? extends ConfigurationNode> worldEntry : listingsConfig.getChildrenMap().entrySet()) {
+                UUID worldUniqueId = UUID.fromString(worldEntry.getKey().toString());
+
+                for (Map.Entry<Object, ? extends ConfigurationNode> shopEntry : worldEntry.getValue().getChildrenMap().entrySet()) {
+                    String[] position = shopEntry.getKey().toString().split(",");
+                    long packedPosition = PositionUtils.pack(Integer.parseInt(position[0]), Integer.parseInt(position[1]), Integer.parseInt(position[2]));
+
+                    for (ConfigurationNode listingNode : shopEntry.getValue().getChildrenList()) {
+                        add(worldUniqueId, packedPosition, listingNode.getNode("item").getString(), listingNode.getNode("variant").getInt(0),
+                                listingNode.getNode("price").getLong(), listingNode.getNode("quantity").getInt());
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("An error occurred while loading the shop listings configuration file!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Save the listings a few seconds after the first change, so a burst of purchases results in a single write. The
+     * file is written off the main thread.
+     */
+    private void requestSave() {
+        if (savePending) {
+            return;
+        }
+
+        savePending = true;
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .delay(5, TimeUnit.SECONDS)
+                .execute(() -> {
+                    savePending = false;
+
+                    ConfigurationNode listingsConfig = createSaveNode();
+                    long version = ++saveVersion;
+
+                    totalEconomy.getGame().getScheduler().createTaskBuilder()
+                            .async()
+                            .execute(() -> write(listingsConfig, version))
+                            .name("Save Shop Listings")
+                            .submit(totalEconomy);
+                })
+                .name("Queue Shop Listings Save")
+                .submit(totalEconomy);
+    }
+
+    /**
+     * Write the listings immediately instead of waiting for a queued save. Called when the server stops.
+     */
+    public void save() {
+        write(createSaveNode(), ++saveVersion);
+    }
+
+    private ConfigurationNode createSaveNode() {
+        ConfigurationNode listingsConfig = loader.createEmptyNode();
+
+        listingsByShop.forEach((worldUniqueId, shops) ->
+                shops.forEach((position, listings) -> {
+                    ConfigurationNode shopNode = listingsConfig.getNode(worldUniqueId.toString(), PositionUtils.unpackX(position) + ","
+                            + PositionUtils.unpackY(position) + "," + PositionUtils.unpackZ(position));
+
+                    for (ShopListing listing : listings.values()) {
+                        ConfigurationNode listingNode = shopNode.getAppendedNode();
+
+                        listingNode.getNode("item").setValue(listing.getItemId());
+                        listingNode.getNode("variant").setValue(listing.getVariant());
+                        listingNode.getNode("price").setValue(listing.getPrice());
+                        listingNode.getNode("quantity").setValue(listing.getQuantity());
+                    }
+                })
+        );
+
+        return listingsConfig;
+    }
+
+    private void write(ConfigurationNode listingsConfig, long version) {
+        synchronized (loader) {
+            if (version < writtenVersion) {
+                return;
+            }
+
+            try {
+                loader.save(listingsConfig);
+                writtenVersion = version;
+            } catch (IOException e) {
+                logger.warn("An error occurred while saving the shop listings configuration file!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static String getListingKey(String itemId, int variant, long price) {
+        return itemId + "/" + variant + "/" + price;
+    }
+
+    /**
+     * Get the data variant of an item (ex. the color of wool).
+     *
+     * @param itemStack The item
+     * @return int The variant, 0 for items without variants
+     */
+    public static int getVariant(ItemStack itemStack) {
+        return itemStack.toContainer().getInt(DAMAGE_QUERY).orElse(0);
+    }
+
+    private void add(UUID worldUniqueId, long position, String itemId, int variant, long price, int quantity) {
+        Map<String, ShopListing> shopListings = listingsByShop.computeIfAbsent(worldUniqueId, uuid -> new HashMap<>())
+                .computeIfAbsent(position, key -> new HashMap<>());
+        String listingKey = getListingKey(itemId, variant, price);
+        ShopListing listing = shopListings.get(listingKey);
+
+        if (listing == null) {
+            listing = new ShopListing(worldUniqueId, position, itemId, variant, price, quantity);
+
+            shopListings.put(listingKey, listing);
+            listingsByItem.computeIfAbsent(itemId, key -> new TreeSet<>(PRICE_ORDER)).add(listing);
+        } else {
+            listing.setQuantity(listing.getQuantity() + quantity);
+        }
+    }
+
+    private void remove(ShopListing listing) {
+        TreeSet<ShopListing> itemListings = listingsByItem.get(listing.getItemId());
+
+        if (itemListings != null) {
+            itemListings.remove(listing);
+
+            if (itemListings.isEmpty()) {
+                listingsByItem.remove(listing.getItemId());
+            }
+        }
+    }
+
+    /**
+     * Add stock to the listing of a shop.
+     *
+     * @param location The location of the shop chest
+     * @param itemStack The stocked item
+     * @param price The price of one item, in minor units
+     * @param quantity The number of items stocked
+     */
+    public void addStock(Location<World> location, ItemStack itemStack, long price, int quantity) {
+        add(location.getExtent().getUniqueId(), PositionUtils.pack(location), itemStack.getType().getId(), getVariant(itemStack), price, quantity);
+        requestSave();
+    }
+
+    /**
+     * Remove stock from the listing of a shop, removing the listing when it runs out.
+     *
+     * @param location The location of the shop chest
+     * @param itemStack The bought or removed item
+     * @param price The price of one item, in minor units
+     * @param quantity The number of items bought or removed
+     */
+    public void removeStock(Location<World> location, ItemStack itemStack, long price, int quantity) {
+        Map<Long, Map<String, ShopListing>> shops = listingsByShop.get(location.getExtent().getUniqueId());
+        long position = PositionUtils.pack(location);
+
+        if (shops == null || !shops.containsKey(position)) {
+            return;
+        }
+
+        Map<String, ShopListing> shopListings = shops.get(position);
+        ShopListing listing = shopListings.get(getListingKey(itemStack.getType().getId(), getVariant(itemStack), price));
+
+        if (listing == null) {
+            return;
+        }
+
+        listing.setQuantity(listing.getQuantity() - quantity);
+
+        if (listing.getQuantity() <= 0) {
+            shopListings.remove(getListingKey(listing.getItemId(), listing.getVariant(), listing.getPrice()));
+            remove(listing);
+
+            if (shopListings.isEmpty()) {
+                shops.remove(position);
+            }
+        }
+
+        requestSave();
+    }
+
+    /**
+     * Remove all listings of a shop.
+     *
+     * @param worldUniqueId The world of the shop
+     * @param position The packed position of the shop chest
+     */
+    public void removeShop(UUID worldUniqueId, long position) {
+        Map<Long, Map<String, ShopListing>> shops = listingsByShop.get(worldUniqueId);
+
+        if (shops == null) {
+            return;
+        }
+
+        Map<String, ShopListing> shopListings = shops.remove(position);
+
+        if (shopListings != null) {
+            shopListings.values().forEach(this::remove);
+            requestSave();
+        }
+    }
+
+    /**
+     * Replace the listings of a shop with what is in its inventory.
+     *
+     * @param location The location of the shop chest
+     * @param inventory The inventory of the shop chest
+     */
+    public void indexShop(Location<World> location, Inventory inventory) {
+        UUID worldUniqueId = location.getExtent().getUniqueId();
+        long position = PositionUtils.pack(location);
+        Map<String, Integer> stock = new HashMap<>();
+        Map<String, ItemStack> stockItems = new HashMap<>();
+        Map<String, Long> stockPrices = new HashMap<>();
+
+        for (Slot slot : inventory.<Slot>slots()) {
+            Optional<ItemStack> itemStackOpt = slot.peek();
+
+            if (!itemStackOpt.isPresent()) {
+                continue;
+            }
+
+            ItemStack itemStack = itemStackOpt.get();
+            Optional<ShopItem> shopItemOpt = itemStack.get(ShopKeys.SHOP_ITEM);
+
+            if (shopItemOpt.isPresent()) {
+                long price = shopItemOpt.get().getPrice();
+                String listingKey = getListingKey(itemStack.getType().getId(), getVariant(itemStack), price);
+
+                stock.merge(listingKey, itemStack.getQuantity(), Integer::sum);
+                stockItems.putIfAbsent(listingKey, itemStack);
+                stockPrices.putIfAbsent(listingKey, price);
+            }
+        }
+
+        Map<String, ShopListing> current = listingsByShop.getOrDefault(worldUniqueId, Collections.emptyMap()).getOrDefault(position, Collections.emptyMap());
+        boolean changed = current.size() != stock.size();
+
+        for (Map.Entry<String, Integer> entry : stock.entrySet()) {
+            ShopListing listing = current.get(entry.getKey());
+
+            if (listing == null || listing.getQuantity() != entry.getValue()) {
+                changed = true;
+            }
+        }
+
+        if (!changed) {
+            return;
+        }
+
+        removeShop(worldUniqueId, position);
+
+        for (Map.Entry<String, Integer> entry : stock.entrySet()) {
+            ItemStack itemStack = stockItems.get(entry.getKey());
+
+            add(worldUniqueId, position, itemStack.getType().getId(), getVariant(itemStack), stockPrices.get(entry.getKey()), entry.getValue());
+        }
+
+        requestSave();
+    }
+
+    /**
+     * Get the listings of a shop.
+     *
+     * @param location The location of the shop chest
+     * @return List The listings, empty if the shop has nothing in stock
+     */
+    public List<ShopListing> getStock(Location<World> location) {
+        Map<Long, Map<String, ShopListing>> shops = listingsByShop.get(location.getExtent().getUniqueId());
+
+        if (shops == null || !shops.containsKey(PositionUtils.pack(location))) {
+            return Collections.emptyList();
+        }
+
+        return new ArrayList<>(shops.get(PositionUtils.pack(location)).values());
+    }
+
+    /**
+     * Get how many of an item a shop has in stock, at any price.
+     *
+     * @param location The location of the shop chest
+     * @param itemStack The item. Its type and variant are matched.
+     * @return int The number of items in stock
+     */
+    public int getStock(Location<World> location, ItemStack itemStack) {
+        String itemId = itemStack.getType().getId();
+        int variant = getVariant(itemStack);
+        int quantity = 0;
+
+        for (ShopListing listing : getStock(location)) {
+            if (listing.getItemId().equals(itemId) && listing.getVariant() == variant) {
+                quantity += listing.getQuantity();
+            }
+        }
+
+        return quantity;
+    }
+
+    /**
+     * Get the cheapest listing of an item.
+     *
+     * @param itemId The id of the item type
+     * @return Optional The cheapest listing, empty if no shop sells the item
+     */
+    public Optional<ShopListing> getBestListing(String itemId) {
+        TreeSet<ShopListing> itemListings = listingsByItem.get(itemId);
+
+        if (itemListings == null || itemListings.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(itemListings.first());
+    }
+
+    /**
+     * Get a page of the listings of an item, cheapest first.
+     *
+     * @param itemId The id of the item type
+     * @param offset The number of listings to skip
+     * @param limit The maximum number of listings to return
+     * @return List The listings
+     */
+    public List<ShopListing> getListings(String itemId, int offset, int limit) {
+        TreeSet<ShopListing> itemListings = listingsByItem.get(itemId);
+        List<ShopListing> listings = new ArrayList<>();
+
+        if (itemListings == null) {
+            return listings;
+        }
+
+        Iterator<ShopListing> iterator = itemListings.iterator();
+
+        for (int i = 0; i < offset && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+
+        while (iterator.hasNext() && listings.size() < limit) {
+            listings.add(iterator.next());
+        }
+
+        return listings;
+    }
+
+    public int getListingCount(String itemId) {
+        TreeSet<ShopListing> itemListings = listingsByItem.get(itemId);
+
+        return itemListings != null ? itemListings.size() : 0;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.shops;
+
+import com.erigitic.config.AccountManager;
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.util.MessageManager;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.slf4j.Logger;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.filter.Getter;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
+import org.spongepowered.api.service.economy.transaction.ResultType;
+
+/**
+ * Holds shop revenue for owners who are offline, so a purchase does not have to load the owner's account, and for owners
+ * whose balance it would take over the money cap, until they have room for it. Revenue is added up per owner, persisted
+ * in shopsettlements.conf, and paid out in batches every few minutes or when the owner joins, whichever comes first.
+ * Owners are told what their shops earned while they were away when they join.
+ */
+public class ShopSettlementQueue {
+
+    private TotalEconomy totalEconomy;
+    private AccountManager accountManager;
+    private MessageManager messageManager;
+    private Logger logger;
+
+    private ConfigurationLoader<CommentedConfigurationNode> loader;
+    private boolean savePending = false;
+
+    // Revenue waiting to be paid, by owner
+    private final Map<UUID, BigDecimal> pending = new ConcurrentHashMap<>();
+
+    // Revenue paid while the owner was offline that they have not been told about yet, by owner
+    private final Map<UUID, BigDecimal> unreported = new ConcurrentHashMap<>();
+
+    public ShopSettlementQueue(TotalEconomy totalEconomy, AccountManager accountManager, MessageManager messageManager, Logger logger) {
+        this.totalEconomy = totalEconomy;
+        this.accountManager = accountManager;
+        this.messageManager = messageManager;
+        this.logger = logger;
+
+        File settlementsFile = new File(totalEconomy.getConfigDir(), "shopsettlements.conf");
+        loader = HoconConfigurationLoader.builder().setFile(settlementsFile).build();
+
+        if (settlementsFile.exists()) {
+            load();
+        }
+
+        int interval = totalEconomy.getShopNode().getNode("chestshop", "settlement-interval").getInt(300);
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .interval(interval, TimeUnit.SECONDS)
+                .execute(this::settleAll)
+                .name("Settle Shop Revenue")
+                .submit(totalEconomy);
+    }
+
+    private void load() {
+        try {
+            ConfigurationNode settlementsConfig = loader.load();
+
+            settlementsConfig.getNode("pending").getChildrenMap().forEach((uuid, amountNode) ->
+                    pending.put(UUID.fromString(uuid.toString()), new BigDecimal(amountNode.getString()))
+            );
+            settlementsConfig.getNode("unreported").getChildrenMap().forEach((uuid, amountNode) ->
+                    unreported.put(UUID.fromString(uuid.toString()), new BigDecimal(amountNode.getString()))
+            );
+        } catch (IOException | RuntimeException e) {
+            logger.warn("An error occurred while loading the shop settlements configuration file!");
+            e.printStackTrace();
+        }
+    }
+
+    private ConfigurationNode createSaveNode() {
+        ConfigurationNode settlementsConfig = loader.createEmptyNode();
+
+        pending.forEach((uuid, amount) -> settlementsConfig.getNode("pending", uuid.toString()).setValue(amount.toPlainString()));
+        unreported.forEach((uuid, amount) -> settlementsConfig.getNode("unreported", uuid.toString()).setValue(amount.toPlainString()));
+
+        return settlementsConfig;
+    }
+
+    /**
+     * Save the queue a second after the first change, so a burst of purchases results in a single write. The file is
+     * written off the main thread.
+     */
+    private void requestSave() {
+        if (savePending) {
+            return;
+        }
+
+        savePending = true;
+
+        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                .delayTicks(20)
+                .execute(() -> {
+                    savePending = false;
+
+                    ConfigurationNode settlementsConfig = createSaveNode();
+
+                    totalEconomy.getGame().getScheduler().createTaskBuilder()
+                            .async()
+                            .execute(() -> {
+                                synchronized (loader) {
+                                    try {
+                                        loader.save(settlementsConfig);
+                                    } catch (IOException e) {
+                                        logger.warn("An error occurred while saving the shop settlements configuration file!");
+                                        e.printStackTrace();
+                                    }
+                                }
+                            })
+                            .name("Save Shop Settlements")
+                            .submit(totalEconomy);
+                })
+                .name("Queue Shop Settlements Save")
+                .submit(totalEconomy);
+    }
+
+    /**
+     * Save the queue right away. Used when the server stops, anything still pending is paid out after the next start.
+     */
+    public void save() {
+        synchronized (loader) {
+            try {
+                loader.save(createSaveNode());
+            } catch (IOException e) {
+                logger.warn("An error occurred while saving the shop settlements configuration file!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Queue revenue for a shop owner.
+     *
+     * @param owner The {@link UUID} of the owner
+     * @param amount The amount to pay the owner
+     */
+    public void enqueue(UUID owner, BigDecimal amount) {
+        pending.merge(owner, amount, BigDecimal::add);
+        requestSave();
+    }
+
+    /**
+     * Get the revenue waiting to be paid to an owner.
+     *
+     * @param owner The {@link UUID} of the owner
+     * @return BigDecimal The amount, zero if nothing is waiting
+     */
+    public BigDecimal getPending(UUID owner) {
+        return pending.getOrDefault(owner, BigDecimal.ZERO);
+    }
+
+    /**
+     * Pay all owners their queued revenue. With the database enabled the deposits run off the main thread as one batch.
+     */
+    private void settleAll() {
+        Map<UUID, BigDecimal> batch = new HashMap<>();
+
+        for (UUID owner : pending.keySet()) {
+            BigDecimal amount = pending.remove(owner);
+
+            if (amount != null) {
+                batch.put(owner, amount);
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        if (totalEconomy.isDatabaseEnabled()) {
+            totalEconomy.getGame().getScheduler().createTaskBuilder()
+                    .async()
+                    .execute(() -> {
+                        Map<UUID, ResultType> results = accountManager.creditBalances(totalEconomy.getDefaultCurrency(), batch, false);
+
+                        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                                .execute(() -> finishSettlement(batch, results, true))
+                                .submit(totalEconomy);
+                    })
+                    .name("Settle Shop Revenue - Deposit")
+                    .submit(totalEconomy);
+        } else {
+            finishSettlement(batch, accountManager.creditBalances(totalEconomy.getDefaultCurrency(), batch, false), true);
+        }
+    }
+
+    /**
+     * Requeue failed deposits and remember or report the successful ones. Must run on the main thread.
+     */
+    private void finishSettlement(Map<UUID, BigDecimal> batch, Map<UUID, ResultType> results, boolean reportOnJoin) {
+        batch.forEach((owner, amount) -> {
+            ResultType result = results.getOrDefault(owner, ResultType.FAILED);
+
+            if (result != ResultType.SUCCESS) {
+                // Owners at the money cap keep their revenue queued until they have room for it
+                if (result != ResultType.ACCOUNT_NO_SPACE) {
+                    logger.warn("[TE] Could not pay " + amount + " of shop revenue to " + owner + ", it will be retried.");
+                }
+
+                pending.merge(owner, amount, BigDecimal::add);
+            } else if (reportOnJoin && !totalEconomy.getServer().getPlayer(owner).isPresent()) {
+                unreported.merge(owner, amount, BigDecimal::add);
+            } else {
+                totalEconomy.getServer().getPlayer(owner).ifPresent(player -> report(player, amount));
+            }
+        });
+
+        requestSave();
+    }
+
+    private void report(Player player, BigDecimal amount) {
+        Map<String, String> messageValues = new HashMap<>();
+        messageValues.put("amount", totalEconomy.getDefaultCurrency().format(amount, 2).toPlain());
+
+        player.sendMessage(messageManager.getMessage(player, "shops.settlement.received", messageValues));
+    }
+
+    /**
+     * Pay an owner their queued revenue when they join, and tell them what their shops earned while they were away.
+     * With the database enabled the deposit runs off the main thread.
+     *
+     * @param event ClientConnectionEvent.Join
+     * @param player The player who joined
+     */
+    @Listener
+    public void onPlayerJoin(ClientConnectionEvent.Join event, @Getter("getTargetEntity") Player player) {
+        UUID owner = player.getUniqueId();
+        BigDecimal amount = pending.remove(owner);
+        BigDecimal earned = unreported.remove(owner);
+
+        if (amount == null) {
+            if (earned != null) {
+                report(player, earned);
+                requestSave();
+            }
+
+            return;
+        }
+
+        Map<UUID, BigDecimal> batch = new HashMap<>();
+        batch.put(owner, amount);
+
+        if (totalEconomy.isDatabaseEnabled()) {
+            totalEconomy.getGame().getScheduler().createTaskBuilder()
+                    .async()
+                    .execute(() -> {
+                        Map<UUID, ResultType> results = accountManager.creditBalances(totalEconomy.getDefaultCurrency(), batch, false);
+
+                        totalEconomy.getGame().getScheduler().createTaskBuilder()
+                                .execute(() -> finishJoinSettlement(owner, batch, results, earned))
+                                .submit(totalEconomy);
+                    })
+                    .name("Settle Shop Revenue - Join")
+                    .submit(totalEconomy);
+        } else {
+            finishJoinSettlement(owner, batch, accountManager.creditBalances(totalEconomy.getDefaultCurrency(), batch, false), earned);
+        }
+    }
+
+    /**
+     * Report what an owner was paid on joining together with what was paid while they were away. Must run on the main
+     * thread. An owner who already left again is told on their next join.
+     */
+    private void finishJoinSettlement(UUID owner, Map<UUID, BigDecimal> batch, Map<UUID, ResultType> results, BigDecimal earned) {
+        BigDecimal total = earned;
+
+        if (results.get(owner) == ResultType.SUCCESS) {
+            total = total != null ? total.add(batch.get(owner)) : batch.get(owner);
+        } else {
+            finishSettlement(batch, results, false);
+        }
+
+        if (total != null) {
+            Optional<Player> playerOpt = totalEconomy.getServer().getPlayer(owner);
+
+            if (playerOpt.isPresent()) {
+                report(playerOpt.get(), total);
+            } else {
+                unreported.merge(owner, total, BigDecimal::add);
+            }
+        }
+
+        requestSave();
+    }
+}
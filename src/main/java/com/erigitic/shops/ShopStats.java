@@ -0,0 +1,80 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.shops;
+
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running sales totals of a shop, or of all shops of an owner.
+ */
+public class ShopStats {
+
+    private BigDecimal revenue = BigDecimal.ZERO;
+    private long unitsSold;
+    private long sales;
+
+    // Units sold by item key
+    private final Map<String, Long> itemUnits = new HashMap<>();
+
+    synchronized void add(String itemKey, long units, BigDecimal amount, long saleCount) {
+        revenue = revenue.add(amount);
+        unitsSold += units;
+        sales += saleCount;
+        itemUnits.merge(itemKey, units, Long::sum);
+    }
+
+    public synchronized BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public synchronized long getUnitsSold() {
+        return unitsSold;
+    }
+
+    public synchronized long getSales() {
+        return sales;
+    }
+
+    /**
+     * Get the best selling items.
+     *
+     * @param limit The maximum number of items to return
+     * @return List Item keys and the units sold of each, most sold first
+     */
+    public synchronized List<Map.Entry<String, Long>> getTopItems(int limit) {
+        List<Map.Entry<String, Long>> topItems = new ArrayList<>();
+
+        itemUnits.forEach((itemKey, units) -> topItems.add(new AbstractMap.SimpleImmutableEntry<>(itemKey, units)));
+        topItems.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        return new ArrayList<>(topItems.subList(0, Math.min(limit, topItems.size())));
+    }
+}
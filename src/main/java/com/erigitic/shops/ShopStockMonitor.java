@@ -0,0 +1,127 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.shops;
+
+import com.erigitic.main.TotalEconomy;
+import com.erigitic.util.MessageManager;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.item.inventory.ItemStack;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+/**
+ * Tells shop owners when an item in one of their shops drops below the low stock threshold. Each item of a shop is
+ * reported at most once per cooldown, and reports are sent a second after the drop so a bulk purchase results in a
+ * single message.
+ */
+public class ShopStockMonitor {
+
+    private TotalEconomy totalEconomy;
+    private MessageManager messageManager;
+
+    private final int threshold;
+    private final long cooldownMillis;
+
+    // Last report time by shop and item
+    private final Map<String, Long> lastNotified = new HashMap<>();
+
+    // Reports waiting to be sent, by owner
+    private final Map<UUID, Map<String, Map<String, String>>> pending = new HashMap<>();
+    private boolean sendScheduled = false;
+
+    public ShopStockMonitor(TotalEconomy totalEconomy, MessageManager messageManager) {
+        this.totalEconomy = totalEconomy;
+        this.messageManager = messageManager;
+
+        threshold = totalEconomy.getShopNode().getNode("chestshop", "low-stock", "threshold").getInt(8);
+        cooldownMillis = totalEconomy.getShopNode().getNode("chestshop", "low-stock", "cooldown").getLong(300) * 1000;
+    }
+
+    /**
+     * Check the stock of an item after it was bought or taken out of a shop.
+     *
+     * @param location The location of the shop chest
+     * @param owner The owner of the shop
+     * @param item The item
+     * @param previous The number of items in stock before
+     * @param current The number of items in stock now
+     */
+    public void check(Location<World> location, UUID owner, ItemStack item, int previous, int current) {
+        if (threshold <= 0 || current >= threshold || previous < threshold) {
+            return;
+        }
+
+        String key = location.getExtent().getUniqueId() + "/" + location.getBlockPosition() + "/" + item.getType().getId() + "/" + ShopSearchIndex.getVariant(item);
+        long now = System.currentTimeMillis();
+        Long notifiedAt = lastNotified.get(key);
+
+        if (notifiedAt != null && now - notifiedAt < cooldownMillis) {
+            return;
+        }
+
+        lastNotified.put(key, now);
+
+        Map<String, String> messageValues = new HashMap<>();
+        messageValues.put("item", item.getTranslation().get());
+        messageValues.put("quantity", String.valueOf(current));
+        messageValues.put("location", location.getBlockX() + ", " + location.getBlockY() + ", " + location.getBlockZ());
+
+        pending.computeIfAbsent(owner, uuid -> new LinkedHashMap<>()).put(key, messageValues);
+
+        if (!sendScheduled) {
+            sendScheduled = true;
+
+            totalEconomy.getGame().getScheduler().createTaskBuilder()
+                    .delayTicks(20)
+                    .execute(this::sendPending)
+                    .name("Send Low Stock Notifications")
+                    .submit(totalEconomy);
+        }
+    }
+
+    private void sendPending() {
+        sendScheduled = false;
+
+        // Reports past their cooldown no longer suppress anything
+        long now = System.currentTimeMillis();
+        lastNotified.values().removeIf(notifiedAt -> now - notifiedAt >= cooldownMillis);
+
+        pending.forEach((owner, reports) -> {
+            Optional<Player> ownerOpt = totalEconomy.getServer().getPlayer(owner);
+
+            ownerOpt.ifPresent(player ->
+                    reports.values().forEach(messageValues -> player.sendMessage(messageManager.getMessage(player, "shops.stock.low", messageValues)))
+            );
+        });
+
+        pending.clear();
+    }
+}
@@ -32,16 +32,18 @@ import org.spongepowered.api.Sponge;
 import org.spongepowered.api.data.DataContainer;
 import org.spongepowered.api.data.DataHolder;
 import org.spongepowered.api.data.DataView;
+import org.spongepowered.api.data.Queries;
 import org.spongepowered.api.data.manipulator.DataManipulatorBuilder;
 import org.spongepowered.api.data.manipulator.mutable.common.AbstractSingleData;
 import org.spongepowered.api.data.merge.MergeFunction;
 import org.spongepowered.api.data.persistence.AbstractDataBuilder;
+import org.spongepowered.api.data.persistence.DataContentUpdater;
 import org.spongepowered.api.data.persistence.InvalidDataException;
 import org.spongepowered.api.data.value.mutable.Value;
 
 public class ShopItemData extends AbstractSingleData<ShopItem, ShopItemData, ImmutableShopItemData> {
 
-    public static final int CONTENT_VERSION = 1;
+    public static final int CONTENT_VERSION = 2;
 
     public ShopItemData() {
         super(null, ShopKeys.SHOP_ITEM);
@@ -132,4 +134,31 @@ public class ShopItemData extends AbstractSingleData<ShopItem, ShopItemData, Imm
             return new ShopItemData(shopItem);
         }
     }
+
+    /**
+     * Upgrades ShopItemData of content version 1, whose ShopItem stores its price as a double amount.
+     */
+    public static class PriceUpdater implements DataContentUpdater {
+
+        @Override
+        public int getInputVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getOutputVersion() {
+            return 2;
+        }
+
+        @Override
+        public DataView update(DataView content) {
+            Optional<DataView> shopItemViewOpt = content.getView(ShopKeys.SHOP_ITEM.getQuery());
+
+            if (shopItemViewOpt.isPresent() && shopItemViewOpt.get().getInt(Queries.CONTENT_VERSION).orElse(1) < 2) {
+                content.set(ShopKeys.SHOP_ITEM.getQuery(), new ShopItem.PriceUpdater().update(shopItemViewOpt.get()));
+            }
+
+            return content.set(Queries.CONTENT_VERSION, getOutputVersion());
+        }
+    }
 }
@@ -331,6 +331,12 @@ public class SqlQuery {
             return this;
         }
 
+        public Builder andSet(String column) {
+            statement += ", " + column;
+
+            return this;
+        }
+
         public SqlQuery build() {
             return new SqlQuery(this);
         }
@@ -0,0 +1,85 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import ninja.leaping.configurate.ConfigurationNode;
+
+/**
+ * The compiled messages of one language. Keys missing from the language are looked up in the fallback bundle once and
+ * then remembered.
+ */
+public class MessageBundle {
+
+    private final String language;
+    private final MessageBundle fallback;
+    private final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * @param language The language of the messages (ex. en)
+     * @param messagesConfig The loaded messages_[lang].conf file
+     * @param fallback Bundle to use for missing keys, null if there is none
+     */
+    public MessageBundle(String language, ConfigurationNode messagesConfig, MessageBundle fallback) {
+        this.language = language;
+        this.fallback = fallback;
+
+        for (Map.Entry<Object, ? extends ConfigurationNode> entry : messagesConfig.getChildrenMap().entrySet()) {
+            String message = entry.getValue().getString();
+
+            if (message != null) {
+                templates.put(entry.getKey().toString(), MessageTemplate.compile(message));
+            }
+        }
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * Get the template of a message.
+     *
+     * @param messageKey The key of the message
+     * @return MessageTemplate The template from this bundle, the fallback bundle, or a "Message not found" message
+     */
+    public MessageTemplate getTemplate(String messageKey) {
+        MessageTemplate template = templates.get(messageKey);
+
+        if (template == null) {
+            if (fallback != null) {
+                template = fallback.getTemplate(messageKey);
+            } else {
+                template = MessageTemplate.compile("Message not found (" + language + "): " + messageKey);
+            }
+
+            templates.put(messageKey, template);
+        }
+
+        return template;
+    }
+}
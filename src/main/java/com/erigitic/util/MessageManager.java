@@ -31,79 +31,192 @@ import java.io.IOException;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import ninja.leaping.configurate.ConfigurationNode;
+import java.util.concurrent.ConcurrentHashMap;
+import ninja.leaping.configurate.SimpleConfigurationNode;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
 import ninja.leaping.configurate.loader.ConfigurationLoader;
-import org.apache.commons.lang3.text.StrSubstitutor;
 import org.slf4j.Logger;
 import org.spongepowered.api.asset.Asset;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.serializer.TextSerializers;
 
 public class MessageManager {
 
+    private static final String FALLBACK_LANGUAGE = "en";
+
     private TotalEconomy totalEconomy;
     private Logger logger;
-    private ConfigurationNode messagesConfig;
-    private Locale locale;
+    private boolean perPlayerLanguage;
+
+    private MessageBundle defaultBundle;
+
+    // Bundles by language, loaded the first time a player using the language needs a message
+    private Map<String, MessageBundle> bundles = new ConcurrentHashMap<>();
 
     /**
      * Grabs a message from the messages_[lang].conf file and converts it to a usable String/Text object ready for printing. Colors
      * are changed, and value placeholders are changed to their corresponding values which are passed in.
+     *
+     * @param locale The server wide language
+     * @param perPlayerLanguage Whether players get their messages in the language of their client when available
      */
-    public MessageManager(TotalEconomy totalEconomy, Logger logger, Locale locale) {
+    public MessageManager(TotalEconomy totalEconomy, Logger logger, Locale locale, boolean perPlayerLanguage) {
         this.totalEconomy = totalEconomy;
         this.logger = logger;
-        this.locale = locale;
+        this.perPlayerLanguage = perPlayerLanguage;
 
         setupConfig(locale);
     }
 
     /**
-     * Setup the messages_[lang].conf file
+     * Setup the messages_[lang].conf file. Messages missing from it, like the ones added after the file was copied,
+     * are taken from the messages shipped with the plugin.
      */
     private void setupConfig(Locale locale) {
-        File messagesFile = new File(totalEconomy.getConfigDir(), "messages_" + locale.getLanguage() + ".conf");
-        ConfigurationLoader<CommentedConfigurationNode> loader = HoconConfigurationLoader.builder().setFile(messagesFile).build();
+        String language = locale.getLanguage();
+        File messagesFile = new File(totalEconomy.getConfigDir(), "messages_" + language + ".conf");
+        MessageBundle shippedFallbackBundle = loadAssetBundle(FALLBACK_LANGUAGE, null).orElse(null);
+        MessageBundle shippedBundle = shippedFallbackBundle;
+
+        if (!language.equals(FALLBACK_LANGUAGE)) {
+            shippedBundle = loadAssetBundle(language, shippedFallbackBundle).orElse(shippedFallbackBundle);
+        }
 
         try {
             if (!messagesFile.exists()) {
-                Asset defaultMessagesAsset = totalEconomy.getPluginContainer().getAsset("messages_en.conf").get();
-                Optional<Asset> optMessagesAsset = totalEconomy.getPluginContainer().getAsset("messages_" + locale.getLanguage() + ".conf");
+                Asset defaultMessagesAsset = totalEconomy.getPluginContainer().getAsset("messages_" + FALLBACK_LANGUAGE + ".conf").get();
+                Optional<Asset> optMessagesAsset = totalEconomy.getPluginContainer().getAsset("messages_" + language + ".conf");
 
                 optMessagesAsset.orElse(defaultMessagesAsset).copyToFile(messagesFile.toPath());
             }
 
-            messagesConfig = loader.load();
+            ConfigurationLoader<CommentedConfigurationNode> loader = HoconConfigurationLoader.builder().setFile(messagesFile).build();
+
+            defaultBundle = new MessageBundle(language, loader.load(), shippedBundle);
         } catch (IOException e) {
             logger.warn("[TE] Error loading/creating the messages configuration file!", e);
+
+            defaultBundle = new MessageBundle(language, SimpleConfigurationNode.root(), shippedBundle);
+        }
+
+        bundles.put(language, defaultBundle);
+
+        if (!language.equals(FALLBACK_LANGUAGE) && shippedFallbackBundle != null) {
+            bundles.put(FALLBACK_LANGUAGE, loadBundle(FALLBACK_LANGUAGE, null).orElse(shippedFallbackBundle));
         }
     }
 
     /**
-     * Get a message from the messages_[lang].conf file and deserialize it for printing
+     * Load the messages of a language other than the server wide one. Uses messages_[lang].conf from the config
+     * directory if it exists, on top of the one shipped with the plugin. Nothing is copied to the config directory.
+     *
+     * @param language The language to load
+     * @param fallback Bundle to use for keys missing from both files
+     * @return Optional The bundle, empty if there are no messages for the language
+     */
+    private Optional<MessageBundle> loadBundle(String language, MessageBundle fallback) {
+        File messagesFile = new File(totalEconomy.getConfigDir(), "messages_" + language + ".conf");
+        MessageBundle shippedBundle = loadAssetBundle(language, fallback).orElse(fallback);
+
+        if (!messagesFile.exists()) {
+            return Optional.ofNullable(shippedBundle);
+        }
+
+        try {
+            return Optional.of(new MessageBundle(language, HoconConfigurationLoader.builder().setFile(messagesFile).build().load(), shippedBundle));
+        } catch (IOException e) {
+            logger.warn("[TE] Error loading the messages for language " + language + "!", e);
+        }
+
+        return Optional.ofNullable(shippedBundle);
+    }
+
+    /**
+     * Load the messages of a language shipped with the plugin.
+     *
+     * @param language The language to load
+     * @param fallback Bundle to use for missing keys
+     * @return Optional The bundle, empty if the plugin has no messages for the language
+     */
+    private Optional<MessageBundle> loadAssetBundle(String language, MessageBundle fallback) {
+        Optional<Asset> optMessagesAsset = totalEconomy.getPluginContainer().getAsset("messages_" + language + ".conf");
+
+        if (!optMessagesAsset.isPresent()) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(new MessageBundle(language, HoconConfigurationLoader.builder().setURL(optMessagesAsset.get().getUrl()).build().load(), fallback));
+        } catch (IOException e) {
+            logger.warn("[TE] Error loading the shipped messages for language " + language + "!", e);
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Get the bundle a message receiver should get their messages from. Falls back to the server wide language when
+     * per player languages are disabled or there are no messages for the receiver's language.
+     */
+    private MessageBundle getBundle(CommandSource receiver) {
+        if (!perPlayerLanguage || !(receiver instanceof Player)) {
+            return defaultBundle;
+        }
+
+        String language = receiver.getLocale().getLanguage();
+        MessageBundle bundle = bundles.get(language);
+
+        if (bundle == null) {
+            bundle = loadBundle(language, bundles.getOrDefault(FALLBACK_LANGUAGE, defaultBundle)).orElse(defaultBundle);
+            bundles.put(language, bundle);
+        }
+
+        return bundle;
+    }
+
+    /**
+     * Get a message from the messages_[lang].conf file ready for printing
      *
      * @param messageKey The key to grab a value from
-     * @return Text The deserialized message
+     * @return Text The message
      */
     public Text getMessage(String messageKey) {
-        String message = messagesConfig.getNode(messageKey).getString("Message not found (" + locale + "): " + messageKey);
-
-        return TextSerializers.FORMATTING_CODE.deserialize(message);
+        return defaultBundle.getTemplate(messageKey).render();
     }
 
     /**
-     * Get a message from the messages_[lang].conf file, replace value placeholders, and deserialize it for printing
+     * Get a message from the messages_[lang].conf file with its value placeholders replaced, ready for printing
      *
      * @param messageKey The key to grab a value from
      * @param values Map of values that will replace value placeholders (ex. {amount}, {name})
-     * @return Text The deserialized message
+     * @return Text The message
      */
     public Text getMessage(String messageKey, Map<String, String> values) {
-        StrSubstitutor sub = new StrSubstitutor(values, "{", "}");
-        String message = sub.replace(messagesConfig.getNode(messageKey).getString("Message not found (" + locale + "): " + messageKey));
+        return defaultBundle.getTemplate(messageKey).render(values);
+    }
+
+    /**
+     * Get a message in the language of the receiver ready for printing
+     *
+     * @param receiver The source the message will be sent to
+     * @param messageKey The key to grab a value from
+     * @return Text The message
+     */
+    public Text getMessage(CommandSource receiver, String messageKey) {
+        return getBundle(receiver).getTemplate(messageKey).render();
+    }
 
-        return TextSerializers.FORMATTING_CODE.deserialize(message);
+    /**
+     * Get a message in the language of the receiver with its value placeholders replaced, ready for printing
+     *
+     * @param receiver The source the message will be sent to
+     * @param messageKey The key to grab a value from
+     * @param values Map of values that will replace value placeholders (ex. {amount}, {name})
+     * @return Text The message
+     */
+    public Text getMessage(CommandSource receiver, String messageKey, Map<String, String> values) {
+        return getBundle(receiver).getTemplate(messageKey).render(values);
     }
 }
@@ -0,0 +1,241 @@
+/*
+ * This file is part of Total Economy, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Eric Grandt <https://www.ericgrandt.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.erigitic.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColor;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.text.format.TextFormat;
+import org.spongepowered.api.text.format.TextStyle;
+import org.spongepowered.api.text.format.TextStyles;
+import org.spongepowered.api.text.serializer.TextSerializers;
+
+/**
+ * A message compiled once from its formatting code string. The text between placeholders is deserialized up front and
+ * every placeholder (ex. {amount}) remembers the formatting that is active at its position, so rendering only has
+ * to fill in the values.
+ */
+public class MessageTemplate {
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\{([^{}]+)}");
+
+    private final Text[] fragments;
+    private final String[] slotNames;
+    private final TextFormat[] slotFormats;
+
+    // Messages without placeholders are only built once
+    private final Text constant;
+
+    private MessageTemplate(Text[] fragments, String[] slotNames, TextFormat[] slotFormats) {
+        this.fragments = fragments;
+        this.slotNames = slotNames;
+        this.slotFormats = slotFormats;
+
+        constant = slotNames.length == 0 ? fragments[0] : null;
+    }
+
+    /**
+     * Compile a message using '&' formatting codes.
+     *
+     * @param message The raw message
+     * @return MessageTemplate The compiled message
+     */
+    public static MessageTemplate compile(String message) {
+        List<Text> fragments = new ArrayList<>();
+        List<String> slotNames = new ArrayList<>();
+        List<TextFormat> slotFormats = new ArrayList<>();
+
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(message);
+        String activeCodes = "";
+        int start = 0;
+
+        while (matcher.find()) {
+            String fragment = message.substring(start, matcher.start());
+
+            fragments.add(deserialize(activeCodes, fragment));
+            activeCodes = updateActiveCodes(activeCodes, fragment);
+
+            slotNames.add(matcher.group(1));
+            slotFormats.add(toFormat(activeCodes));
+
+            start = matcher.end();
+        }
+
+        fragments.add(deserialize(activeCodes, message.substring(start)));
+
+        return new MessageTemplate(fragments.toArray(new Text[0]), slotNames.toArray(new String[0]), slotFormats.toArray(new TextFormat[0]));
+    }
+
+    /**
+     * Render a message that has no placeholders, or leave its placeholders unfilled.
+     *
+     * @return Text The message
+     */
+    public Text render() {
+        if (constant != null) {
+            return constant;
+        }
+
+        return render(null);
+    }
+
+    /**
+     * Render the message, replacing placeholders with their values. Placeholders without a value are left as they are.
+     *
+     * @param values Map of values that will replace value placeholders (ex. {amount}, {name})
+     * @return Text The message
+     */
+    public Text render(Map<String, String> values) {
+        if (constant != null) {
+            return constant;
+        }
+
+        Text.Builder builder = Text.builder().append(fragments[0]);
+
+        for (int i = 0; i < slotNames.length; i++) {
+            String value = values != null ? values.get(slotNames[i]) : null;
+
+            if (value == null) {
+                value = "{" + slotNames[i] + "}";
+            }
+
+            builder.append(Text.of(slotFormats[i], value)).append(fragments[i + 1]);
+        }
+
+        return builder.build();
+    }
+
+    private static Text deserialize(String activeCodes, String fragment) {
+        if (fragment.isEmpty()) {
+            return Text.EMPTY;
+        }
+
+        return TextSerializers.FORMATTING_CODE.deserialize(activeCodes + fragment);
+    }
+
+    /**
+     * Apply the formatting codes found in a piece of a message to the codes active before it. A color or reset code
+     * clears all previous formatting, style codes are added on top.
+     */
+    private static String updateActiveCodes(String activeCodes, String fragment) {
+        for (int i = 0; i < fragment.length() - 1; i++) {
+            if (fragment.charAt(i) != '&') {
+                continue;
+            }
+
+            char code = Character.toLowerCase(fragment.charAt(i + 1));
+
+            if ((code >= '0' && code <= '9') || (code >= 'a' && code <= 'f')) {
+                activeCodes = "&" + code;
+                i++;
+            } else if (code >= 'k' && code <= 'o') {
+                activeCodes += "&" + code;
+                i++;
+            } else if (code == 'r') {
+                activeCodes = "";
+                i++;
+            }
+        }
+
+        return activeCodes;
+    }
+
+    private static TextFormat toFormat(String activeCodes) {
+        TextFormat format = TextFormat.NONE;
+
+        for (int i = 1; i < activeCodes.length(); i += 2) {
+            char code = activeCodes.charAt(i);
+            TextStyle style = getStyle(code);
+
+            if (style != null) {
+                format = format.style(format.getStyle().and(style));
+            } else {
+                format = format.color(getColor(code));
+            }
+        }
+
+        return format;
+    }
+
+    private static TextStyle getStyle(char code) {
+        switch (code) {
+            case 'k':
+                return TextStyles.OBFUSCATED;
+            case 'l':
+                return TextStyles.BOLD;
+            case 'm':
+                return TextStyles.STRIKETHROUGH;
+            case 'n':
+                return TextStyles.UNDERLINE;
+            case 'o':
+                return TextStyles.ITALIC;
+            default:
+                return null;
+        }
+    }
+
+    private static TextColor getColor(char code) {
+        switch (code) {
+            case '0':
+                return TextColors.BLACK;
+            case '1':
+                return TextColors.DARK_BLUE;
+            case '2':
+                return TextColors.DARK_GREEN;
+            case '3':
+                return TextColors.DARK_AQUA;
+            case '4':
+                return TextColors.DARK_RED;
+            case '5':
+                return TextColors.DARK_PURPLE;
+            case '6':
+                return TextColors.GOLD;
+            case '7':
+                return TextColors.GRAY;
+            case '8':
+                return TextColors.DARK_GRAY;
+            case '9':
+                return TextColors.BLUE;
+            case 'a':
+                return TextColors.GREEN;
+            case 'b':
+                return TextColors.AQUA;
+            case 'c':
+                return TextColors.RED;
+            case 'd':
+                return TextColors.LIGHT_PURPLE;
+            case 'e':
+                return TextColors.YELLOW;
+            default:
+                return TextColors.WHITE;
+        }
+    }
+}